@@ -0,0 +1,192 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 每日汇总表：插入、服务器合并和删除后与按跑步记录直接汇总的结果一致，重建后结果不变
+ */
+@RunWith(AndroidJUnit4.class)
+public class DailyStatsTest {
+
+    private static final String DB_NAME = "daily_stats_test.db";
+    private static final int USER_ID = 4;
+    private static final int OTHER_USER_ID = 6;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    private static String dateOf(int month, int day, int hour) {
+        return String.format(Locale.CHINA, "2024-%02d-%02d %02d:00", month, day, hour);
+    }
+
+    private static DatabaseHelper.RunningRecord serverRecord(int serverId, int userId, String date, Random random) {
+        DatabaseHelper.RunningRecord record = new DatabaseHelper.RunningRecord();
+        record.serverId = serverId;
+        record.userId = userId;
+        record.date = date;
+        record.distance = 3000 + random.nextInt(2000) + random.nextInt(100) / 100.0;
+        record.duration = 1200 + random.nextInt(600);
+        record.steps = 4000 + random.nextInt(2000);
+        record.calories = 200 + random.nextInt(100);
+        record.pace = 6.0;
+        record.isSynced = true;
+        return record;
+    }
+
+    @Test
+    public void rollupsFollowInsertMergeAndDelete() {
+        Random random = new Random(11);
+        // 本地记录，同一天两条
+        helper.insertRunningRecord(USER_ID, dateOf(3, 4, 7), 3000, 1200, 4000, 210, 6.6, null, null);
+        helper.insertRunningRecord(USER_ID, dateOf(3, 4, 19), 5000, 1800, 6500, 330, 6.0, null, null);
+        helper.insertRunningRecord(OTHER_USER_ID, dateOf(3, 4, 8), 2000, 900, 2600, 150, 7.5, null, null);
+
+        // 服务器记录：批量合并和逐条写入
+        List<DatabaseHelper.RunningRecord> records = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            records.add(serverRecord(100 + i, USER_ID, dateOf(1 + i % 3, 1 + i % 28, 6 + i % 12), random));
+        }
+        helper.mergeFromServer(records);
+        helper.insertOrUpdateFromServer(serverRecord(500, OTHER_USER_ID, dateOf(3, 5, 7), random));
+        assertConsistent();
+
+        // 修改汇总字段和日期（移到另一天）、只改同步字段
+        records.get(0).distance += 250;
+        records.get(0).calories += 20;
+        records.get(1).date = dateOf(5, 1, 7);
+        records.get(2).taskId = 3;
+        helper.mergeFromServer(records);
+        helper.insertOrUpdateFromServer(serverRecord(500, OTHER_USER_ID, dateOf(3, 6, 7), random));
+        assertConsistent();
+
+        // 增量删除、对照删除、删除本地记录
+        helper.deleteRecordsByServerIds(USER_ID, Collections.singletonList(110));
+        List<Integer> remaining = new ArrayList<>();
+        for (DatabaseHelper.RunningRecord record : records) {
+            if (record.serverId % 7 != 0 && record.serverId != 110) remaining.add(record.serverId);
+        }
+        helper.reconcileServerDeletions(USER_ID, remaining, null);
+        helper.getWritableDatabase().delete(DatabaseHelper.TABLE_RUNNING_RECORDS,
+                DatabaseHelper.RECORD_USER_ID + "=? AND " + DatabaseHelper.RECORD_SERVER_ID + " IS NULL",
+                new String[]{String.valueOf(OTHER_USER_ID)});
+        assertConsistent();
+
+        // 某天的记录全部删除后不留空行
+        assertEquals(0, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_DAILY_STATS +
+                " WHERE " + DatabaseHelper.DAILY_RUNS + "<=0"));
+        assertEquals(0, helper.getStatsTotals(OTHER_USER_ID, "2024-03-04", "2024-03-05").runs);
+    }
+
+    @Test
+    public void rebuildMatchesIncrementalRollups() {
+        Random random = new Random(3);
+        List<DatabaseHelper.RunningRecord> records = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            records.add(serverRecord(1000 + i, i % 3 == 0 ? OTHER_USER_ID : USER_ID,
+                    dateOf(1 + i % 6, 1 + i % 28, 6 + i % 12), random));
+        }
+        helper.mergeFromServer(records);
+        DatabaseHelper.StatsTotals before = helper.getStatsTotals(USER_ID, null, null);
+
+        // 模拟汇总表与记录不一致，重建后恢复
+        helper.getWritableDatabase().execSQL("DELETE FROM " + DatabaseHelper.TABLE_DAILY_STATS +
+                " WHERE " + DatabaseHelper.DAILY_DAY + " < '2024-03-01'");
+        helper.rebuildDailyStats();
+        DatabaseHelper.StatsTotals after = helper.getStatsTotals(USER_ID, null, null);
+        assertEquals(before.runs, after.runs);
+        assertEquals(before.distance, after.distance, 0.01);
+        assertEquals(before.duration, after.duration);
+        assertEquals(before.steps, after.steps);
+        assertEquals(before.calories, after.calories);
+        assertConsistent();
+    }
+
+    @Test
+    public void windowsSelectDays() {
+        helper.insertRunningRecord(USER_ID, "2024-03-17 23:30", 1000, 400, 1300, 70, 6.6, null, null);
+        helper.insertRunningRecord(USER_ID, "2024-03-18 06:10", 2000, 700, 2600, 140, 5.8, null, null);
+        helper.insertRunningRecord(USER_ID, "2024-03-24 21:00", 3000, 1000, 3900, 210, 5.5, null, null);
+        helper.insertRunningRecord(USER_ID, "2024-03-25 07:00", 4000, 1400, 5200, 280, 5.8, null, null);
+        helper.insertRunningRecord(OTHER_USER_ID, "2024-03-20 07:00", 5000, 1700, 6500, 350, 5.6, null, null);
+
+        // 一周 [03-18, 03-25)
+        DatabaseHelper.StatsTotals week = helper.getStatsTotals(USER_ID, "2024-03-18", "2024-03-25");
+        assertEquals(2, week.runs);
+        assertEquals(5000, week.distance, 0.01);
+        assertEquals(350, week.calories);
+
+        assertEquals(4, helper.getStatsTotals(USER_ID, null, null).runs);
+        assertEquals(3, helper.getStatsTotals(USER_ID, "2024-03-18", null).runs);
+        assertEquals(1, helper.getStatsTotals(USER_ID, null, "2024-03-18").runs);
+        // 不指定用户时统计所有用户
+        assertEquals(3, helper.getStatsTotals(0, "2024-03-18", "2024-03-25").runs);
+    }
+
+    /**
+     * 每个用户每天的汇总与直接按跑步记录汇总一致
+     */
+    private void assertConsistent() {
+        String day = "substr(" + DatabaseHelper.RECORD_DATE + ", 1, 10)";
+        Cursor expected = helper.getReadableDatabase().rawQuery("SELECT " + DatabaseHelper.RECORD_USER_ID + ", " +
+                day + ", COUNT(*), TOTAL(" + DatabaseHelper.RECORD_DISTANCE + "), TOTAL(" +
+                DatabaseHelper.RECORD_DURATION + "), TOTAL(" + DatabaseHelper.RECORD_STEPS + "), TOTAL(" +
+                DatabaseHelper.RECORD_CALORIES + ") FROM " + DatabaseHelper.TABLE_RUNNING_RECORDS +
+                " GROUP BY 1, 2", null);
+        try {
+            while (expected.moveToNext()) {
+                String from = expected.getString(1);
+                // "~" 排在数字之后，[from, from~) 正好是这一天
+                DatabaseHelper.StatsTotals totals = helper.getStatsTotals(expected.getInt(0), from, from + "~");
+                String message = "用户" + expected.getInt(0) + " " + from;
+                assertEquals(message, expected.getInt(2), totals.runs);
+                assertEquals(message, expected.getDouble(3), totals.distance, 0.01);
+                assertEquals(message, expected.getLong(4), totals.duration);
+                assertEquals(message, expected.getLong(5), totals.steps);
+                assertEquals(message, expected.getLong(6), totals.calories);
+            }
+            assertEquals(expected.getCount(), count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_DAILY_STATS));
+        } finally {
+            expected.close();
+        }
+    }
+
+    private long count(String sql) {
+        Cursor cursor = helper.getReadableDatabase().rawQuery(sql, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 数据库升级不丢失跑步记录
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest {
+
+    private static final String DB_NAME = "migration_test.db";
+    private static final String LEGACY_TRACK = "30.500000,114.300000;30.500100,114.300100;30.500200,114.300300;";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion1KeepsRecordsAndMovesTracks() {
+        // v1：跑步记录表没有同步字段，轨迹为文本
+        SQLiteDatabase old = context.openOrCreateDatabase(DB_NAME, Context.MODE_PRIVATE, null);
+        old.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY AUTOINCREMENT, username VARCHAR(50) NOT NULL UNIQUE, " +
+                "password VARCHAR(100) NOT NULL, nickname VARCHAR(50), weight DECIMAL(5,2), " +
+                "created_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+        old.execSQL("CREATE TABLE running_records (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL, " +
+                "date DATETIME NOT NULL, distance DECIMAL(10,2) DEFAULT 0, duration INTEGER DEFAULT 0, " +
+                "steps INTEGER DEFAULT 0, calories INTEGER DEFAULT 0, pace DECIMAL(5,2) DEFAULT 0, track TEXT, " +
+                "created_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+        old.execSQL("INSERT INTO users (username, password) VALUES ('default', '123456')");
+        old.execSQL("INSERT INTO running_records (user_id, date, distance, duration, steps, calories, pace, track) " +
+                "VALUES (1, '2023-05-01 07:00', 3200, 1200, 4100, 230, 6.25, '" + LEGACY_TRACK + "')");
+        old.setVersion(1);
+        old.close();
+
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        try {
+            List<DatabaseHelper.RunningRecord> records = helper.getRunningRecordsByUserId(1);
+            assertEquals(1, records.size());
+            DatabaseHelper.RunningRecord record = records.get(0);
+            assertEquals(3200, record.distance, 0.01);
+            assertEquals(4100, record.steps);
+            assertNull(record.track);
+
+            TrackBuffer track = new TrackBuffer();
+            assertEquals(3, TrackCodec.decodeInto(helper.loadTrack(record.id), track));
+            assertEquals(30.5002, track.getLatitude(2), 1e-6);
+            assertEquals(1, helper.getUnsyncedCount());
+
+            // v8 由日期和时长推算起止时间
+            assertEquals(TimeRange.parseDate("2023-05-01 07:00"), record.endTime);
+            assertEquals(record.endTime - 1200 * 1000L, record.startTime);
+            assertEquals(TimeRange.offsetMinutes(record.endTime), record.tzOffset);
+            assertEquals(1, helper.getRunningRecordsBetween(1,
+                    TimeRange.thisMonth(record.startTime)).size());
+
+            // v7 按已有记录填充每日汇总表
+            DatabaseHelper.StatsTotals totals = helper.getStatsTotals(1, "2023-05-01", "2023-05-02");
+            assertEquals(1, totals.runs);
+            assertEquals(3200, totals.distance, 0.01);
+            assertEquals(230, totals.calories);
+        } finally {
+            helper.close();
+        }
+    }
+
+    @Test
+    public void upgradeSkipsMalformedLegacyTracks() {
+        // 服务器原样保存的轨迹文本：JSON、乱码，以及夹杂无法解析片段的旧版文本
+        String[] tracks = {
+                "[{\"lat\":30.5",
+                "abc",
+                "30.500000,114.300000;30.1,114.2,x;abc;-,1;30.500200,114.300300;",
+        };
+        SQLiteDatabase old = context.openOrCreateDatabase(DB_NAME, Context.MODE_PRIVATE, null);
+        old.execSQL("CREATE TABLE running_records (id INTEGER PRIMARY KEY AUTOINCREMENT, user_id INTEGER NOT NULL, " +
+                "date DATETIME NOT NULL, distance DECIMAL(10,2) DEFAULT 0, duration INTEGER DEFAULT 0, " +
+                "steps INTEGER DEFAULT 0, calories INTEGER DEFAULT 0, pace DECIMAL(5,2) DEFAULT 0, track TEXT, " +
+                "created_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+        for (int i = 0; i < tracks.length; i++) {
+            old.execSQL("INSERT INTO running_records (user_id, date, distance, track) VALUES (1, ?, 3000, ?)",
+                    new Object[]{"2023-05-0" + (i + 1) + " 07:00", tracks[i]});
+        }
+        old.setVersion(1);
+        old.close();
+
+        // 升级不抛异常，记录全部保留，只丢弃无法解析的片段
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        try {
+            List<DatabaseHelper.RunningRecord> records = helper.getRunningRecordsByUserId(1);
+            assertEquals(tracks.length, records.size());
+            int[] expectedPoints = {0, 0, 2};
+            for (DatabaseHelper.RunningRecord record : records) {
+                int index = Integer.parseInt(record.date.substring(9, 10)) - 1;
+                TrackBuffer track = new TrackBuffer();
+                assertEquals(record.date, expectedPoints[index],
+                        TrackCodec.decodeInto(helper.loadTrack(record.id), track));
+            }
+        } finally {
+            helper.close();
+        }
+        assertNull(TrackCodec.fromTransportString(null));
+        assertEquals(0, TrackCodec.decodeInto(TrackCodec.fromTransportString("abc"), new TrackBuffer()));
+    }
+
+    @Test
+    public void deletingRecordRemovesTrackAndSplits() {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        try {
+            long id = helper.insertRunningRecord(1, "2024-03-01 07:00", 1500, 500, 1500, 100, 5.5,
+                    TrackCodec.fromLegacyText(LEGACY_TRACK),
+                    java.util.Collections.singletonList(new SplitTracker.Split(1000, 0, 1000, 330_000, 990)));
+            assertNotNull(helper.loadTrack((int) id));
+            assertEquals(1, helper.getSplits((int) id).size());
+
+            helper.getWritableDatabase().delete(DatabaseHelper.TABLE_RUNNING_RECORDS,
+                    DatabaseHelper.RECORD_ID + "=?", new String[]{String.valueOf(id)});
+            assertNull(helper.loadTrack((int) id));
+            assertTrue(helper.getSplits((int) id).isEmpty());
+
+            Cursor cursor = helper.getReadableDatabase().rawQuery(
+                    "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_RUN_TRACKS, null);
+            cursor.moveToFirst();
+            assertEquals(0, cursor.getInt(0));
+            cursor.close();
+        } finally {
+            helper.close();
+        }
+    }
+}
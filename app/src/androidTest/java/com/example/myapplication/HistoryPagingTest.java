@@ -0,0 +1,79 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 历史记录键集分页：逐页读取覆盖全部记录，不重复不遗漏（包括日期相同的记录）
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryPagingTest {
+
+    private static final String DB_NAME = "history_paging_test.db";
+    private static final int RECORDS = 95;
+    private static final int PAGE = 20;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        for (int i = 0; i < RECORDS; i++) {
+            // 每 3 条同一分钟，检验同日期记录跨页时的顺序
+            String date = String.format(Locale.CHINA, "2024-04-%02d 07:%02d", 1 + i / 60, (i / 3) % 60);
+            helper.insertRunningRecord(1, date, 1000 + i, 600, 1000, 50, 6.0, null, null);
+        }
+        // 其他用户的记录不应出现
+        helper.insertRunningRecord(2, "2024-04-01 08:00", 5000, 1800, 6000, 300, 6.0, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void pagesCoverEveryRecordOnceInOrder() {
+        Set<Integer> seen = new HashSet<>();
+        String afterDate = null;
+        int afterId = 0;
+        String lastDate = null;
+        int pages = 0;
+        while (true) {
+            List<DatabaseHelper.RunningRecord> page = helper.getRunningRecordsPage(1, afterDate, afterId, PAGE);
+            if (page.isEmpty()) break;
+            pages++;
+            for (DatabaseHelper.RunningRecord record : page) {
+                assertEquals(1, record.userId);
+                assertTrue("重复记录 " + record.id, seen.add(record.id));
+                if (lastDate != null) {
+                    assertTrue(record.date.compareTo(lastDate) <= 0);
+                }
+                lastDate = record.date;
+            }
+            DatabaseHelper.RunningRecord last = page.get(page.size() - 1);
+            afterDate = last.date;
+            afterId = last.id;
+        }
+        assertEquals(RECORDS, seen.size());
+        assertEquals((RECORDS + PAGE - 1) / PAGE, pages);
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * 历史记录增量同步：对本地模拟服务器同步，没有变化时传输字节数和写入行数接近 0，并发触发合并为一个请求
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistorySyncTest {
+
+    private static final String DB_NAME = "history_sync_test.db";
+    private static final String PREFS_NAME = "history_sync_test";
+    private static final int USER_ID = 8;
+    private static final int RECORDS = 150;
+
+    private Context context;
+    private MockWebServer server;
+    private FakeRecordServer records;
+    private DatabaseHelper helper;
+    private HistorySyncManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+
+        records = new FakeRecordServer();
+        Random random = new Random(23);
+        for (int i = 1; i <= RECORDS; i++) {
+            records.put(i, random);
+        }
+        server = new MockWebServer();
+        server.setDispatcher(records);
+        server.start();
+
+        helper = new DatabaseHelper(context, DB_NAME);
+        manager = new HistorySyncManager(prefs, new RunRepository(helper),
+                new HistorySyncClient(new OkHttpClient(), server.url("/").toString(), null));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Test
+    public void unchangedHistoryTransfersAndWritesNothing() throws Exception {
+        HistorySyncManager.Result first = sync(true);
+        assertTrue(first.success);
+        assertEquals(RECORDS, first.inserted);
+        assertEquals(RECORDS, helper.getRunningRecordsByUserId(USER_ID).size());
+        assertTrue(first.bytes > 0);
+
+        // 没有变化：304，不传输记录也不写数据库
+        HistorySyncManager.Result unchanged = sync(true);
+        assertTrue(unchanged.notModified);
+        assertEquals(0, unchanged.bytes);
+        assertEquals(0, unchanged.getRowsWritten());
+
+        // 一条修改、一条删除、一条新增：只传输这几条
+        Random random = new Random(5);
+        records.put(10, random);
+        records.delete(20);
+        records.put(RECORDS + 1, random);
+        HistorySyncManager.Result delta = sync(true);
+        assertEquals(1, delta.inserted);
+        assertEquals(1, delta.updated);
+        assertEquals(1, delta.deleted);
+        assertTrue("增量 " + delta.bytes + " 字节, 全量 " + first.bytes + " 字节",
+                delta.bytes * 20 < first.bytes);
+        assertNull(helper.getRecordByServerId(20));
+        assertEquals(RECORDS, helper.getRunningRecordsByUserId(USER_ID).size());
+
+        // 距上次同步太近，非强制同步不发请求
+        int requests = server.getRequestCount();
+        HistorySyncManager.Result skipped = sync(false);
+        assertTrue(skipped.skipped);
+        assertEquals(requests, server.getRequestCount());
+    }
+
+    @Test
+    public void snapshotServerWritesNothingWhenUnchanged() throws Exception {
+        // 不支持增量的服务器：忽略 updatedSince 和 If-None-Match，每次返回完整快照
+        records.supportsDelta = false;
+        HistorySyncManager.Result first = sync(true);
+        assertEquals(RECORDS, first.inserted);
+
+        HistorySyncManager.Result again = sync(true);
+        assertTrue(again.notModified);
+        assertEquals(0, again.getRowsWritten());
+
+        records.delete(30);
+        HistorySyncManager.Result deleted = sync(true);
+        assertEquals(1, deleted.deleted);
+        assertEquals(0, deleted.inserted + deleted.updated);
+    }
+
+    @Test
+    public void concurrentTriggersShareOneRequest() throws Exception {
+        int before = server.getRequestCount();
+        CountDownLatch latch = new CountDownLatch(3);
+        List<HistorySyncManager.Result> results = new ArrayList<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < 3; i++) {
+                manager.sync(USER_ID, true, result -> {
+                    results.add(result);
+                    latch.countDown();
+                });
+            }
+            assertTrue(manager.isSyncing(USER_ID));
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount() - before);
+        assertSame(results.get(0), results.get(1));
+        assertSame(results.get(0), results.get(2));
+        assertEquals(RECORDS, results.get(0).inserted);
+    }
+
+    private HistorySyncManager.Result sync(boolean force) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        HistorySyncManager.Result[] holder = new HistorySyncManager.Result[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                manager.sync(USER_ID, force, result -> {
+                    holder[0] = result;
+                    latch.countDown();
+                }));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return holder[0];
+    }
+
+    @Test
+    public void fullDeltaPagesKeepFetchingUntilCaughtUp() throws Exception {
+        // 首次同步的记录超过一页：200 + 200 + 0 条
+        Random random = new Random(11);
+        for (int i = RECORDS + 1; i <= 400; i++) {
+            records.put(i, random);
+        }
+        int before = server.getRequestCount();
+        HistorySyncManager.Result first = sync(true);
+        assertTrue(first.success);
+        assertEquals(400, first.inserted);
+        assertEquals(3, server.getRequestCount() - before);
+        assertEquals(400, helper.getRunningRecordsByUserId(USER_ID).size());
+
+        // 250 条修改和一条删除，跨两页增量返回，全部写入后才保存水位
+        for (int i = 1; i <= 250; i++) {
+            records.put(i, random);
+        }
+        records.delete(300);
+        before = server.getRequestCount();
+        HistorySyncManager.Result delta = sync(true);
+        assertEquals(250, delta.updated);
+        assertEquals(1, delta.deleted);
+        assertEquals(0, delta.inserted);
+        assertEquals(2, server.getRequestCount() - before);
+        assertNull(helper.getRecordByServerId(300));
+        assertEquals(399, helper.getRunningRecordsByUserId(USER_ID).size());
+
+        HistorySyncManager.Result unchanged = sync(true);
+        assertTrue(unchanged.notModified);
+        assertEquals(0, unchanged.getRowsWritten());
+    }
+
+    /**
+     * 模拟服务器：每次修改递增版本号，ETag 为当前版本，updatedSince 之后的修改和删除作为增量返回。
+     * 增量按版本从旧到新最多返回 size 条，截断时水位为本页最后一条的版本；完整快照返回最新的 size 条
+     */
+    private static class FakeRecordServer extends Dispatcher {
+        volatile boolean supportsDelta = true;
+        private final Map<Integer, JsonObject> byId = new LinkedHashMap<>();
+        private final Map<Integer, Long> versions = new LinkedHashMap<>();
+        private final Map<Integer, Long> deletions = new LinkedHashMap<>();
+        private long version;
+
+        synchronized void put(int id, Random random) {
+            JsonObject dto = new JsonObject();
+            dto.addProperty("id", id);
+            dto.addProperty("userId", USER_ID);
+            dto.addProperty("date", String.format(Locale.CHINA, "2024-%02d-%02d 07:%02d",
+                    1 + id % 12, 1 + id % 28, id % 60));
+            dto.addProperty("distance", 3000 + random.nextInt(2000));
+            dto.addProperty("duration", 1200 + random.nextInt(600));
+            dto.addProperty("steps", 4000 + random.nextInt(2000));
+            dto.addProperty("calories", 200 + random.nextInt(100));
+            dto.addProperty("pace", 6.0);
+            dto.addProperty("isValid", 1);
+            dto.addProperty("track", TrackCodec.toLegacyText(TrackCodec.encode(randomTrack(random))));
+            byId.put(id, dto);
+            versions.put(id, ++version);
+            deletions.remove(id);
+        }
+
+        synchronized void delete(int id) {
+            byId.remove(id);
+            versions.remove(id);
+            deletions.put(id, ++version);
+        }
+
+        private static TrackBuffer randomTrack(Random random) {
+            TrackBuffer track = new TrackBuffer();
+            double lat = 30.5, lng = 114.3;
+            long time = 1_700_000_000_000L;
+            for (int i = 0; i < 200; i++) {
+                lat += (random.nextDouble() - 0.5) * 4e-5;
+                lng += (random.nextDouble() - 0.5) * 4e-5;
+                time += 3000;
+                track.add(lat, lng, time);
+            }
+            return track;
+        }
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            String etag = "\"v" + version + "\"";
+            String since = request.getRequestUrl().queryParameter("updatedSince");
+            if (supportsDelta && etag.equals(request.getHeader("If-None-Match"))) {
+                return new MockResponse().setResponseCode(304).setHeader("ETag", etag);
+            }
+            long sinceVersion = supportsDelta && since != null ? Long.parseLong(since) : -1;
+            int size = Integer.parseInt(request.getRequestUrl().queryParameter("size"));
+            List<Integer> changed = new ArrayList<>();
+            for (Map.Entry<Integer, Long> entry : versions.entrySet()) {
+                if (entry.getValue() > sinceVersion) {
+                    changed.add(entry.getKey());
+                }
+            }
+            Comparator<Integer> byVersion = Comparator.comparing(versions::get);
+            changed.sort(supportsDelta ? byVersion : byVersion.reversed());
+            long watermark = version;
+            if (changed.size() > size) {
+                changed = changed.subList(0, size);
+                watermark = versions.get(changed.get(size - 1));
+            }
+            JsonArray list = new JsonArray();
+            for (int id : changed) {
+                list.add(byId.get(id));
+            }
+            JsonObject data = new JsonObject();
+            data.add("records", list);
+            if (supportsDelta) {
+                JsonArray deleted = new JsonArray();
+                for (Map.Entry<Integer, Long> entry : deletions.entrySet()) {
+                    if (sinceVersion >= 0 && entry.getValue() > sinceVersion && entry.getValue() <= watermark) {
+                        deleted.add(entry.getKey());
+                    }
+                }
+                data.add("deletedIds", deleted);
+                data.addProperty("watermark", String.valueOf(watermark));
+            }
+            JsonObject body = new JsonObject();
+            body.addProperty("code", 200);
+            body.add("data", data);
+            MockResponse response = new MockResponse().setBody(body.toString());
+            if (supportsDelta) {
+                response.setHeader("ETag", etag);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.widget.EditText;
+import android.widget.RadioButton;
+
+import androidx.fragment.app.Fragment;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.android.material.bottomnavigation.BottomNavigationView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 主线程不访问数据库
+ *
+ * 在主线程上开启 StrictMode 磁盘读写检测，依次打开历史、统计、工具页、处理跑步结束回调并提交问卷，
+ * 调用栈中含 SQLite 或 DatabaseHelper 的违规即失败（地图、SharedPreferences 等其他磁盘访问不在此检查）。
+ * 测试注入一个用户，不依赖设备上的登录状态；penaltyListener 需要 API 28 以上。
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainThreadDiskIoTest {
+
+    private static final String SURVEY_MARKER = "StrictMode 主线程磁盘检测";
+    /** 注入的测试用户，tearDown 时删除其记录 */
+    private static final int TEST_USER_ID = 90_020;
+
+    private Context context;
+    private StrictMode.ThreadPolicy oldPolicy;
+    private List<RunDataManager.RunRecord> cachedRecords;
+    private final List<String> violations = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        cachedRecords = new RunDataManager(context).getRecords();
+        CurrentUser.inject(TEST_USER_ID);
+        deleteTestRecords();
+        // 历史、统计页有数据可加载
+        long end = TimeRange.parseDate("2024-03-20 07:30");
+        DatabaseHelper.getInstance(context).insertRunningRecord(TEST_USER_ID, TimeRange.formatDate(end),
+                end - 1250_000, end, 3200, 1200, 4100, 210, 6.25, null, splits());
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            oldPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyListener(Runnable::run, this::onViolation)
+                    .build());
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (oldPolicy != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> StrictMode.setThreadPolicy(oldPolicy));
+        }
+        if (context != null) {
+            CurrentUser.inject(-1);
+            DatabaseHelper.getInstance(context).getWritableDatabase().delete(DatabaseHelper.TABLE_SURVEY_RESULTS,
+                    DatabaseHelper.SURVEY_SUGGESTION + "=?", new String[]{SURVEY_MARKER});
+            deleteTestRecords();
+            // 还原 onRunStopped 写入的 SharedPreferences 缓存
+            RunDataManager dataManager = new RunDataManager(context);
+            dataManager.clearRecords();
+            List<RunDataManager.RunRecord> records = new ArrayList<>(cachedRecords);
+            Collections.reverse(records);
+            for (RunDataManager.RunRecord record : records) {
+                dataManager.saveRecord(record);
+            }
+        }
+    }
+
+    private void onViolation(Violation violation) {
+        for (StackTraceElement frame : violation.getStackTrace()) {
+            String cls = frame.getClassName();
+            if (cls.startsWith("android.database.sqlite.") || cls.startsWith(DatabaseHelper.class.getName())) {
+                violations.add(violation + " @ " + cls + "." + frame.getMethodName());
+                return;
+            }
+        }
+    }
+
+    private void deleteTestRecords() {
+        DatabaseHelper.getInstance(context).getWritableDatabase().delete(DatabaseHelper.TABLE_RUNNING_RECORDS,
+                DatabaseHelper.RECORD_USER_ID + "=?", new String[]{String.valueOf(TEST_USER_ID)});
+    }
+
+    private static List<SplitTracker.Split> splits() {
+        return Arrays.asList(
+                new SplitTracker.Split(1000, 1, 1000, 375_000, 1280),
+                new SplitTracker.Split(1000, 2, 1000, 370_000, 1290),
+                new SplitTracker.Split(1000, 3, 1000, 368_000, 1300),
+                new SplitTracker.Split(1000, 4, 200, 87_000, 230));
+    }
+
+    @Test
+    public void tabsDoNotTouchDatabaseOnMainThread() throws Exception {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            int[] tabs = {R.id.nav_history, R.id.nav_stats, R.id.nav_tools, R.id.nav_history};
+            for (int tab : tabs) {
+                scenario.onActivity(activity -> {
+                    BottomNavigationView nav = activity.findViewById(R.id.bottom_nav);
+                    nav.setSelectedItemId(tab);
+                });
+                drainRepository();
+            }
+        }
+        assertTrue("主线程访问数据库: " + violations, violations.isEmpty());
+    }
+
+    @Test
+    public void runStopDoesNotTouchDatabaseOnMainThread() throws Exception {
+        long end = System.currentTimeMillis();
+        RunningService.RunResult result = new RunningService.RunResult(TimeRange.formatDate(end),
+                3200, 1200, 4100, 210, 6.25, null, splits());
+        result.startTime = end - 1250_000;
+        result.endTime = end;
+        // 服务在跟踪线程上入库后才回调页面，这里在测试线程上入库
+        result.userId = TEST_USER_ID;
+        result.localId = DatabaseHelper.getInstance(context).insertRunningRecord(result.userId, result.date,
+                result.startTime, result.endTime, result.distance, result.duration, result.steps,
+                result.calories, result.pace, result.track, result.splits);
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            // 默认显示跑步页，按停止后服务在主线程回调 onRunStopped（上传、缓存、提示）
+            scenario.onActivity(activity -> {
+                activity.getSupportFragmentManager().executePendingTransactions();
+                Fragment fragment = activity.getSupportFragmentManager().findFragmentById(R.id.fragment_container);
+                assertTrue(fragment instanceof RunFragment);
+                ((RunFragment) fragment).onRunStopped(activity.getApplicationContext(), result);
+            });
+            drainRepository();
+        }
+        assertEquals(2, DatabaseHelper.getInstance(context).getRunningRecordsByUserId(TEST_USER_ID).size());
+        assertTrue("主线程访问数据库: " + violations, violations.isEmpty());
+    }
+
+    @Test
+    public void surveySubmitDoesNotTouchDatabaseOnMainThread() throws Exception {
+        try (ActivityScenario<SurveyActivity> scenario = ActivityScenario.launch(SurveyActivity.class)) {
+            scenario.onActivity(activity -> {
+                ((RadioButton) activity.findViewById(R.id.rb_freq_1)).setChecked(true);
+                ((RadioButton) activity.findViewById(R.id.rb_purpose_1)).setChecked(true);
+                ((EditText) activity.findViewById(R.id.et_suggestion)).setText(SURVEY_MARKER);
+                activity.findViewById(R.id.btn_submit_survey).performClick();
+            });
+            drainRepository();
+        }
+        assertTrue("主线程访问数据库: " + violations, violations.isEmpty());
+    }
+
+    /**
+     * 等待 I/O 线程上已提交的任务执行完，并等主线程处理完回调
+     */
+    private void drainRepository() throws InterruptedException {
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        CountDownLatch latch = new CountDownLatch(1);
+        RunRepository.getInstance(context).execute(db -> null, result -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * 查询方法的查询计划
+ *
+ * 通过游标工厂记录每个公开查询方法实际执行的 SQL，再用 EXPLAIN QUERY PLAN 检查：
+ * 必须走预期的索引，不能出现不带索引的全表扫描，也不能为 ORDER BY 建临时 B 树。
+ * 新增查询或修改索引导致退化为全表扫描时，这里会失败。
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private static final String DB_NAME = "query_plan_test.db";
+    /** 不带索引的全表扫描，如 "SCAN TABLE running_records" 或 "SCAN running_records"（随 SQLite 版本不同） */
+    private static final Pattern FULL_SCAN = Pattern.compile("^SCAN (TABLE )?\\w+$");
+    private static final String TEMP_SORT = "USE TEMP B-TREE";
+
+    private Context context;
+    private DatabaseHelper helper;
+    private final List<String> executed = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME, (db, driver, editTable, query) -> {
+            // SQLiteQuery.toString() 为 "SQLiteQuery: " + SQL
+            String sql = query.toString();
+            executed.add(sql.substring(sql.indexOf(':') + 1).trim());
+            return new SQLiteCursor(driver, editTable, query);
+        });
+        for (int i = 0; i < 20; i++) {
+            helper.insertRunningRecord(1, "2024-03-" + (10 + i) + " 07:00", 3000, 1200, 4000, 200, 6.6,
+                    null, null);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void historyQueriesUseUserDateIndex() {
+        executed.clear();
+        helper.getRunningRecordsByUserId(1);
+        assertIndexed("getRunningRecordsByUserId", "idx_records_user_date");
+
+        executed.clear();
+        helper.getRunningRecords(1);
+        assertIndexed("getRunningRecords", "idx_records_user_date");
+
+        executed.clear();
+        helper.getRunningRecordsPage(1, null, 0, 20);
+        assertIndexed("getRunningRecordsPage(第一页)", "idx_records_user_date");
+
+        executed.clear();
+        helper.getRunningRecordsPage(1, "2024-03-20 07:00", 11, 20);
+        assertIndexed("getRunningRecordsPage(后续页)", "idx_records_user_date");
+    }
+
+    @Test
+    public void timeRangeQueriesUseUserStartIndex() {
+        executed.clear();
+        helper.getRunningRecordsBetween(1, 1710000000000L, 1711000000000L);
+        assertIndexed("getRunningRecordsBetween", "idx_records_user_start");
+
+        executed.clear();
+        helper.getRunningRecordsThisWeek(1);
+        assertIndexed("getRunningRecordsThisWeek", "idx_records_user_start");
+
+        executed.clear();
+        helper.getRunningRecordsThisSemester(1);
+        assertIndexed("getRunningRecordsThisSemester", "idx_records_user_start");
+    }
+
+    @Test
+    public void syncQueriesUseServerIdAndUnsyncedIndexes() {
+        executed.clear();
+        helper.getRecordByServerId(42);
+        assertIndexed("getRecordByServerId", "idx_records_server_id");
+
+        executed.clear();
+        helper.getUnsyncedRecords();
+        assertIndexed("getUnsyncedRecords", "idx_records_unsynced");
+
+        executed.clear();
+        helper.getUnsyncedCount();
+        assertIndexed("getUnsyncedCount", "idx_records_unsynced");
+    }
+
+    @Test
+    public void detailQueriesUseKeys() {
+        executed.clear();
+        helper.loadTrack(1);
+        assertIndexed("loadTrack", "PRIMARY KEY");
+
+        executed.clear();
+        helper.getSplits(1);
+        assertIndexed("getSplits", "idx_splits_run");
+
+        executed.clear();
+        helper.getDefaultUser();
+        assertIndexed("getDefaultUser", "PRIMARY KEY");
+
+        executed.clear();
+        helper.getSurveyResults(1);
+        assertIndexed("getSurveyResults", "idx_survey_user_created");
+    }
+
+    @Test
+    public void statsQueriesUseDailyStatsKey() {
+        executed.clear();
+        helper.getStatsTotals(1, null, null);
+        assertIndexed("getStatsTotals(全部)", "PRIMARY KEY");
+
+        executed.clear();
+        helper.getStatsTotals(1, "2024-03-18", "2024-03-25");
+        assertIndexed("getStatsTotals(本周)", "PRIMARY KEY");
+    }
+
+    @Test
+    public void allRecordsIsTheOnlyFullScan() {
+        // 统计页读取全部记录，不按用户过滤，全表扫描是预期的
+        executed.clear();
+        helper.getAllRunningRecords();
+        List<String> plan = explainExecuted();
+        assertFalse(plan.isEmpty());
+    }
+
+    /**
+     * 检查刚执行的查询：计划中出现指定索引，且没有无索引全表扫描和临时排序
+     */
+    private void assertIndexed(String method, String index) {
+        List<String> plan = explainExecuted();
+        assertFalse(method + " 没有执行查询", plan.isEmpty());
+        boolean usesIndex = false;
+        for (String detail : plan) {
+            assertFalse(method + " 全表扫描: " + plan, FULL_SCAN.matcher(detail).matches());
+            assertFalse(method + " 临时排序: " + plan, detail.contains(TEMP_SORT));
+            if (detail.contains(index)) usesIndex = true;
+        }
+        assertTrue(method + " 没有使用 " + index + ": " + plan, usesIndex);
+    }
+
+    private List<String> explainExecuted() {
+        List<String> statements = new ArrayList<>(executed);
+        List<String> plan = new ArrayList<>();
+        SQLiteDatabase db = helper.getReadableDatabase();
+        for (String sql : statements) {
+            // 参数不绑定（按 NULL 处理），不影响查询计划
+            Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+            try {
+                int detail = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    plan.add(cursor.getString(detail));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 跑步记录查询投影的基准测试
+ *
+ * 5000 条记录（每条轨迹约 600 个点），对比旧实现（轨迹与汇总同表，SELECT * + 每行 getColumnIndexOrThrow，
+ * 这里用关联轨迹表模拟）与汇总投影（不含轨迹、列索引每个游标解析一次）的 CursorWindow 填充次数和查询映射耗时。
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecordProjectionBenchmarkTest {
+
+    private static final String TAG = "RecordProjectionBench";
+    private static final String DB_NAME = "projection_bench.db";
+    private static final int ROWS = 5000;
+    private static final int POINTS_PER_TRACK = 600;
+    private static final int USER_ID = 7;
+    private static final int ROUNDS = 5;
+    /** 旧版表结构：轨迹与汇总字段在同一行 */
+    private static final String LEGACY_TABLE = DatabaseHelper.TABLE_RUNNING_RECORDS + " LEFT JOIN "
+            + DatabaseHelper.TABLE_RUN_TRACKS + " ON " + DatabaseHelper.TRACK_RUN_ID + "="
+            + DatabaseHelper.TABLE_RUNNING_RECORDS + "." + DatabaseHelper.RECORD_ID;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        Random random = new Random(16);
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_RUNNING_RECORDS + " (" +
+                DatabaseHelper.RECORD_USER_ID + ", " + DatabaseHelper.RECORD_DATE + ", " +
+                DatabaseHelper.RECORD_DISTANCE + ", " + DatabaseHelper.RECORD_DURATION + ", " +
+                DatabaseHelper.RECORD_STEPS + ", " + DatabaseHelper.RECORD_CALORIES + ", " +
+                DatabaseHelper.RECORD_PACE + ") VALUES (?,?,?,?,?,?,?)");
+        SQLiteStatement insertTrack = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_RUN_TRACKS + " (" +
+                DatabaseHelper.TRACK_RUN_ID + ", " + DatabaseHelper.RECORD_TRACK + ") VALUES (?,?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                insert.clearBindings();
+                insert.bindLong(1, USER_ID);
+                insert.bindString(2, String.format(Locale.CHINA, "2024-%02d-%02d %02d:%02d",
+                        1 + i % 12, 1 + i % 28, i % 24, i % 60));
+                insert.bindDouble(3, 3000 + random.nextInt(2000));
+                insert.bindLong(4, 1200 + random.nextInt(600));
+                insert.bindLong(5, 4000 + random.nextInt(2000));
+                insert.bindLong(6, 200 + random.nextInt(100));
+                insert.bindDouble(7, 5 + random.nextDouble() * 2);
+                long id = insert.executeInsert();
+                insertTrack.clearBindings();
+                insertTrack.bindLong(1, id);
+                insertTrack.bindBlob(2, TrackCodec.encode(randomTrack(random)));
+                insertTrack.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+            insertTrack.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    private static TrackBuffer randomTrack(Random random) {
+        TrackBuffer track = new TrackBuffer();
+        double lat = 30.5 + random.nextDouble() * 0.01;
+        double lng = 114.3 + random.nextDouble() * 0.01;
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < POINTS_PER_TRACK; i++) {
+            lat += (random.nextDouble() - 0.5) * 4e-5;
+            lng += (random.nextDouble() - 0.5) * 4e-5;
+            time += 3000;
+            track.add(lat, lng, time);
+        }
+        return track;
+    }
+
+    @Test
+    public void loadTrackReadsSingleRow() {
+        List<DatabaseHelper.RunningRecord> records = helper.getRunningRecordsByUserId(USER_ID);
+        assertNull(records.get(0).track);
+        TrackBuffer track = new TrackBuffer();
+        assertEquals(POINTS_PER_TRACK, TrackCodec.decodeInto(helper.loadTrack(records.get(0).id), track));
+    }
+
+    @Test
+    public void summaryProjectionAvoidsTrackWindows() {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        String where = DatabaseHelper.RECORD_USER_ID + "=?";
+        String[] args = { String.valueOf(USER_ID) };
+        String order = DatabaseHelper.RECORD_DATE + " DESC";
+
+        int legacyWindows = countWindows(db.query(LEGACY_TABLE, null,
+                where, args, null, null, order));
+        int summaryWindows = countWindows(db.query(DatabaseHelper.TABLE_RUNNING_RECORDS,
+                DatabaseHelper.RecordProjection.SUMMARY.getColumns(), where, args, null, null, order));
+        Log.i(TAG, String.format(Locale.US, "CursorWindow 填充: SELECT * %d 次, 汇总投影 %d 次",
+                legacyWindows, summaryWindows));
+        assertTrue(summaryWindows < legacyWindows);
+
+        long legacyByUser = Long.MAX_VALUE, legacyAll = Long.MAX_VALUE;
+        long byUser = Long.MAX_VALUE, all = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = SystemClock.elapsedRealtimeNanos();
+            int n1 = legacyQuery(db, where, args, order);
+            long t1 = SystemClock.elapsedRealtimeNanos();
+            int n2 = legacyQuery(db, null, null, order);
+            long t2 = SystemClock.elapsedRealtimeNanos();
+            List<DatabaseHelper.RunningRecord> r1 = helper.getRunningRecordsByUserId(USER_ID);
+            long t3 = SystemClock.elapsedRealtimeNanos();
+            List<DatabaseHelper.RunningRecord> r2 = helper.getAllRunningRecords();
+            long t4 = SystemClock.elapsedRealtimeNanos();
+            assertEquals(ROWS, n1);
+            assertEquals(ROWS, n2);
+            assertEquals(ROWS, r1.size());
+            assertEquals(ROWS, r2.size());
+            legacyByUser = Math.min(legacyByUser, t1 - t0);
+            legacyAll = Math.min(legacyAll, t2 - t1);
+            byUser = Math.min(byUser, t3 - t2);
+            all = Math.min(all, t4 - t3);
+        }
+        Log.i(TAG, String.format(Locale.US, "getRunningRecordsByUserId: 旧 %.1fms, 新 %.1fms",
+                legacyByUser / 1e6, byUser / 1e6));
+        Log.i(TAG, String.format(Locale.US, "getAllRunningRecords: 旧 %.1fms, 新 %.1fms",
+                legacyAll / 1e6, all / 1e6));
+        assertTrue(byUser < legacyByUser);
+        assertTrue(all < legacyAll);
+    }
+
+    /**
+     * 遍历游标，统计 CursorWindow 被填充的次数（窗口起始位置变化一次计一次）
+     */
+    private static int countWindows(Cursor cursor) {
+        int windows = 0;
+        int lastStart = -1;
+        try {
+            while (cursor.moveToNext()) {
+                int start = ((AbstractWindowedCursor) cursor).getWindow().getStartPosition();
+                if (start != lastStart) {
+                    windows++;
+                    lastStart = start;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return windows;
+    }
+
+    /**
+     * 旧实现：SELECT * 并在每行按列名查找索引
+     */
+    private static int legacyQuery(SQLiteDatabase db, String where, String[] args, String order) {
+        Cursor cursor = db.query(LEGACY_TABLE, null, where, args, null, null, order);
+        int count = 0;
+        try {
+            while (cursor.moveToNext()) {
+                DatabaseHelper.RunningRecord record = new DatabaseHelper.RunningRecord();
+                record.id = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_ID));
+                record.userId = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_USER_ID));
+                record.date = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_DATE));
+                record.distance = cursor.getDouble(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_DISTANCE));
+                record.duration = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_DURATION));
+                record.steps = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_STEPS));
+                record.calories = cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_CALORIES));
+                record.pace = cursor.getDouble(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_PACE));
+                record.track = cursor.getBlob(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_TRACK));
+                record.createdAt = cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.RECORD_CREATED_AT));
+                int serverIdIndex = cursor.getColumnIndex(DatabaseHelper.RECORD_SERVER_ID);
+                if (serverIdIndex >= 0 && !cursor.isNull(serverIdIndex)) {
+                    record.serverId = cursor.getInt(serverIdIndex);
+                }
+                int syncedIndex = cursor.getColumnIndex(DatabaseHelper.RECORD_IS_SYNCED);
+                if (syncedIndex >= 0) {
+                    record.isSynced = cursor.getInt(syncedIndex) == 1;
+                }
+                int semesterIndex = cursor.getColumnIndex(DatabaseHelper.RECORD_SEMESTER_ID);
+                if (semesterIndex >= 0 && !cursor.isNull(semesterIndex)) {
+                    record.semesterId = cursor.getInt(semesterIndex);
+                }
+                int taskIndex = cursor.getColumnIndex(DatabaseHelper.RECORD_TASK_ID);
+                if (taskIndex >= 0 && !cursor.isNull(taskIndex)) {
+                    record.taskId = cursor.getInt(taskIndex);
+                }
+                int validIndex = cursor.getColumnIndex(DatabaseHelper.RECORD_IS_VALID);
+                if (validIndex >= 0 && !cursor.isNull(validIndex)) {
+                    record.isValid = cursor.getInt(validIndex);
+                }
+                count++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return count;
+    }
+}
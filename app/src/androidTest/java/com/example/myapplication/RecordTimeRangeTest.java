@@ -0,0 +1,103 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 起止时间列：各写入路径都填充起止时间，按时间范围查询的边界和顺序
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecordTimeRangeTest {
+
+    private static final String DB_NAME = "time_range_test.db";
+    private static final int USER_ID = 2;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    private static DatabaseHelper.RunningRecord serverRecord(int serverId, String date, int duration) {
+        DatabaseHelper.RunningRecord record = new DatabaseHelper.RunningRecord();
+        record.serverId = serverId;
+        record.userId = USER_ID;
+        record.date = date;
+        record.distance = 3000;
+        record.duration = duration;
+        record.isSynced = true;
+        return record;
+    }
+
+    @Test
+    public void everyWritePathFillsTimes() {
+        // 跑步结束时记录的精确起止时间（含暂停，比时长长）
+        long end = TimeRange.parseDate("2024-03-20 07:30") + 25_000;
+        long start = end - 1500_000;
+        long localId = helper.insertRunningRecord(USER_ID, TimeRange.formatDate(end), start, end,
+                3000, 1200, 4000, 200, 6.6, null, null);
+        helper.mergeFromServer(Collections.singletonList(serverRecord(71, "2024-03-21 18:00", 1800)));
+        helper.insertOrUpdateFromServer(serverRecord(72, "2024-03-22 06:45", 900));
+
+        List<DatabaseHelper.RunningRecord> records = helper.getRunningRecordsByUserId(USER_ID);
+        assertEquals(3, records.size());
+        for (DatabaseHelper.RunningRecord record : records) {
+            assertTrue(record.startTime > 0);
+            assertEquals(TimeRange.offsetMinutes(record.endTime), record.tzOffset);
+            if (record.id == localId) {
+                assertEquals(start, record.startTime);
+                assertEquals(end, record.endTime);
+            } else {
+                assertEquals(TimeRange.parseDate(record.date), record.endTime);
+                assertEquals(record.endTime - record.duration * 1000L, record.startTime);
+            }
+        }
+
+        // 服务器再次返回相同记录，起止时间不变，不算更新
+        DatabaseHelper.MergeResult again = helper.mergeFromServer(
+                Collections.singletonList(serverRecord(71, "2024-03-21 18:00", 1800)));
+        assertEquals(1, again.unchanged);
+    }
+
+    @Test
+    public void betweenUsesHalfOpenRangeOnStartTime() {
+        helper.insertRunningRecord(USER_ID, "2024-03-17 23:50", 1000, 1200, 1300, 70, 6.6, null, null);
+        helper.insertRunningRecord(USER_ID, "2024-03-18 07:00", 2000, 600, 2600, 140, 5.8, null, null);
+        helper.insertRunningRecord(USER_ID, "2024-03-24 23:59", 3000, 900, 3900, 210, 5.5, null, null);
+        helper.insertRunningRecord(USER_ID, "2024-03-25 07:00", 4000, 1400, 5200, 280, 5.8, null, null);
+        helper.insertRunningRecord(USER_ID + 1, "2024-03-20 07:00", 5000, 1700, 6500, 350, 5.6, null, null);
+
+        long from = TimeRange.parseDate("2024-03-18 00:00");
+        long to = TimeRange.parseDate("2024-03-25 00:00");
+        List<DatabaseHelper.RunningRecord> week = helper.getRunningRecordsBetween(USER_ID, from, to);
+        // 03-17 23:50 结束、跑了 20 分钟的记录从 23:30 开始，不在本周
+        assertEquals(2, week.size());
+        assertEquals("2024-03-24 23:59", week.get(0).date);
+        assertEquals("2024-03-18 07:00", week.get(1).date);
+
+        assertEquals(4, helper.getRunningRecordsBetween(USER_ID, 0, Long.MAX_VALUE).size());
+        assertTrue(helper.getRunningRecordsBetween(USER_ID, to, to).isEmpty());
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 服务器记录批量合并：新增/更新/未变化计数，以及 1000 条记录与逐条 insertOrUpdateFromServer 的耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class ServerMergeTest {
+
+    private static final String TAG = "ServerMergeTest";
+    private static final String LEGACY_DB = "merge_legacy.db";
+    private static final String BULK_DB = "merge_bulk.db";
+    private static final int RECORDS = 1000;
+    private static final int POINTS_PER_TRACK = 100;
+
+    private Context context;
+    private DatabaseHelper legacy;
+    private DatabaseHelper bulk;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(LEGACY_DB);
+        context.deleteDatabase(BULK_DB);
+        legacy = new DatabaseHelper(context, LEGACY_DB);
+        bulk = new DatabaseHelper(context, BULK_DB);
+    }
+
+    @After
+    public void tearDown() {
+        legacy.close();
+        bulk.close();
+        context.deleteDatabase(LEGACY_DB);
+        context.deleteDatabase(BULK_DB);
+    }
+
+    private static List<DatabaseHelper.RunningRecord> serverRecords(int count, long seed) {
+        Random random = new Random(seed);
+        List<DatabaseHelper.RunningRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            DatabaseHelper.RunningRecord record = new DatabaseHelper.RunningRecord();
+            record.serverId = 1000 + i;
+            record.userId = 3;
+            record.date = String.format(Locale.CHINA, "2024-%02d-%02d %02d:%02d",
+                    1 + i % 12, 1 + i % 28, i % 24, i % 60);
+            record.distance = 3000 + random.nextInt(2000);
+            record.duration = 1200 + random.nextInt(600);
+            record.steps = 4000 + random.nextInt(2000);
+            record.calories = 200 + random.nextInt(100);
+            record.pace = 5 + random.nextInt(200) / 100.0;
+            record.isSynced = true;
+            record.isValid = 1;
+            record.track = TrackCodec.encode(randomTrack(random));
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static TrackBuffer randomTrack(Random random) {
+        TrackBuffer track = new TrackBuffer();
+        double lat = 30.5 + random.nextDouble() * 0.01;
+        double lng = 114.3 + random.nextDouble() * 0.01;
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < POINTS_PER_TRACK; i++) {
+            lat += (random.nextDouble() - 0.5) * 4e-5;
+            lng += (random.nextDouble() - 0.5) * 4e-5;
+            time += 3000;
+            track.add(lat, lng, time);
+        }
+        return track;
+    }
+
+    @Test
+    public void mergeReportsInsertedUpdatedUnchanged() {
+        List<DatabaseHelper.RunningRecord> records = serverRecords(5, 1);
+        DatabaseHelper.MergeResult first = bulk.mergeFromServer(records);
+        assertEquals(5, first.inserted);
+        assertEquals(0, first.updated);
+
+        DatabaseHelper.MergeResult again = bulk.mergeFromServer(records);
+        assertEquals(0, again.inserted);
+        assertEquals(0, again.updated);
+        assertEquals(5, again.unchanged);
+
+        // 一条改汇总字段，一条只改轨迹，一条缺服务器ID
+        records.get(0).distance += 100;
+        records.get(0).taskId = 9;
+        records.get(1).track = TrackCodec.encode(randomTrack(new Random(2)));
+        DatabaseHelper.RunningRecord invalid = new DatabaseHelper.RunningRecord();
+        invalid.date = "2024-05-01 07:00";
+        records.add(invalid);
+        DatabaseHelper.MergeResult changed = bulk.mergeFromServer(records);
+        assertEquals(0, changed.inserted);
+        assertEquals(2, changed.updated);
+        assertEquals(3, changed.unchanged);
+        assertEquals(1, changed.skipped);
+
+        DatabaseHelper.RunningRecord stored = bulk.getRecordByServerId(records.get(0).serverId);
+        assertEquals(records.get(0).distance, stored.distance, 1e-6);
+        assertEquals(Integer.valueOf(9), stored.taskId);
+        assertTrue(stored.isSynced);
+        DatabaseHelper.RunningRecord withTrack = bulk.getRecordByServerId(records.get(1).serverId);
+        assertTrue(Arrays.equals(records.get(1).track, bulk.loadTrack(withTrack.id)));
+        assertEquals(0, bulk.getUnsyncedCount());
+    }
+
+    @Test
+    public void bulkMergeIsOrderOfMagnitudeFaster() {
+        List<DatabaseHelper.RunningRecord> records = serverRecords(RECORDS, 21);
+
+        long t0 = SystemClock.elapsedRealtimeNanos();
+        for (DatabaseHelper.RunningRecord record : records) {
+            legacy.insertOrUpdateFromServer(record);
+        }
+        long t1 = SystemClock.elapsedRealtimeNanos();
+        DatabaseHelper.MergeResult inserted = bulk.mergeFromServer(records);
+        long t2 = SystemClock.elapsedRealtimeNanos();
+        assertEquals(RECORDS, inserted.inserted);
+        assertEquals(RECORDS, bulk.getRunningRecordsByUserId(3).size());
+        Log.i(TAG, String.format(Locale.US, "首次合并 %d 条: 逐条 %.1fms, 批量 %.1fms",
+                RECORDS, (t1 - t0) / 1e6, (t2 - t1) / 1e6));
+        assertTrue("批量合并应至少快 10 倍", (t1 - t0) >= 10 * (t2 - t1));
+
+        // 再次拉取：十分之一有变化
+        for (int i = 0; i < RECORDS; i += 10) {
+            records.get(i).calories += 1;
+        }
+        long t3 = SystemClock.elapsedRealtimeNanos();
+        for (DatabaseHelper.RunningRecord record : records) {
+            legacy.insertOrUpdateFromServer(record);
+        }
+        long t4 = SystemClock.elapsedRealtimeNanos();
+        DatabaseHelper.MergeResult merged = bulk.mergeFromServer(records);
+        long t5 = SystemClock.elapsedRealtimeNanos();
+        assertEquals(RECORDS / 10, merged.updated);
+        assertEquals(RECORDS - RECORDS / 10, merged.unchanged);
+        Log.i(TAG, String.format(Locale.US, "再次合并 %d 条（%s）: 逐条 %.1fms, 批量 %.1fms",
+                RECORDS, merged, (t4 - t3) / 1e6, (t5 - t4) / 1e6));
+        assertTrue("批量合并应至少快 10 倍", (t4 - t3) >= 10 * (t5 - t4));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对照服务器删除本地记录：5 万条记录一次对照，只删除拉取范围内服务器上已不存在的记录
+ */
+@RunWith(AndroidJUnit4.class)
+public class ServerReconcileTest {
+
+    private static final String TAG = "ServerReconcileTest";
+    private static final String DB_NAME = "reconcile_test.db";
+    private static final int RECORDS = 50_000;
+    private static final int USER_ID = 5;
+    /** 服务器上每 100 条删除 1 条 */
+    private static final int DELETED_EVERY = 100;
+    private static final int OTHER_USER_SERVER_ID = RECORDS + 100;
+    private static final long BASE_TIME = 1_600_000_000_000L;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_RUNNING_RECORDS + " (" +
+                DatabaseHelper.RECORD_USER_ID + ", " + DatabaseHelper.RECORD_DATE + ", " +
+                DatabaseHelper.RECORD_DISTANCE + ", " + DatabaseHelper.RECORD_SERVER_ID + ", " +
+                DatabaseHelper.RECORD_IS_SYNCED + ") VALUES (?,?,3000,?,1)");
+        db.beginTransaction();
+        try {
+            // server_id 与日期同序：server_id 越大日期越新
+            for (int i = 0; i < RECORDS; i++) {
+                insertSynced(insert, USER_ID, dateOf(i), i + 1);
+            }
+            // 其他用户的已同步记录不参与对照
+            insertSynced(insert, USER_ID + 1, dateOf(RECORDS / 2), OTHER_USER_SERVER_ID);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+        // 未上传的本地记录不参与对照
+        helper.insertRunningRecord(USER_ID, dateOf(RECORDS), 1000, 300, 1000, 50, 5.0, null, null);
+    }
+
+    private static void insertSynced(SQLiteStatement insert, int userId, String date, int serverId) {
+        insert.bindLong(1, userId);
+        insert.bindString(2, date);
+        insert.bindLong(3, serverId);
+        insert.executeInsert();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    /** 第 i 条记录的日期，每条间隔 10 分钟 */
+    private static String dateOf(int i) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.CHINA);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(BASE_TIME + i * 600_000L));
+    }
+
+    /** 服务器上仍存在的ID（从 fromIndex 开始），每 DELETED_EVERY 条缺一条 */
+    private static List<Integer> serverIds(int fromIndex) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = fromIndex; i < RECORDS; i++) {
+            if (i % DELETED_EVERY != 0) {
+                ids.add(i + 1);
+            }
+        }
+        return ids;
+    }
+
+    private long count(String where) {
+        Cursor cursor = helper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " +
+                DatabaseHelper.TABLE_RUNNING_RECORDS + " WHERE " + where, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void fullHistoryReconcilesFiftyThousandRecords() {
+        List<Integer> ids = serverIds(0);
+        long t0 = SystemClock.elapsedRealtimeNanos();
+        int deleted = helper.reconcileServerDeletions(USER_ID, ids, null);
+        long t1 = SystemClock.elapsedRealtimeNanos();
+        Log.i(TAG, String.format(Locale.US, "对照 %d 条服务器ID: 删除 %d 条, %.1fms",
+                ids.size(), deleted, (t1 - t0) / 1e6));
+        assertEquals(RECORDS / DELETED_EVERY, deleted);
+        // 未同步的记录保留，其他用户的记录保留
+        assertEquals(1, count(DatabaseHelper.RECORD_IS_SYNCED + "=0"));
+        assertEquals(1, count(DatabaseHelper.RECORD_USER_ID + "=" + (USER_ID + 1)));
+
+        // 再次对照没有可删除的记录
+        assertEquals(0, helper.reconcileServerDeletions(USER_ID, ids, null));
+    }
+
+    @Test
+    public void partialPageOnlyDeletesInsideFetchedWindow() {
+        // 只拉取了最近 200 条（第 RECORDS-200 条在服务器上已删除，本页最早一条是下一条）
+        int fromIndex = RECORDS - 200;
+        String oldestDate = dateOf(fromIndex + 1);
+        List<Integer> ids = serverIds(fromIndex + 1);
+        // 与本页最早日期相同、但不在本页的记录（在下一页）
+        helper.getWritableDatabase().execSQL("INSERT INTO " + DatabaseHelper.TABLE_RUNNING_RECORDS + " (" +
+                DatabaseHelper.RECORD_USER_ID + ", " + DatabaseHelper.RECORD_DATE + ", " +
+                DatabaseHelper.RECORD_SERVER_ID + ", " + DatabaseHelper.RECORD_IS_SYNCED + ") VALUES (?,?,?,1)",
+                new Object[]{USER_ID, oldestDate, RECORDS + 200});
+
+        int deleted = helper.reconcileServerDeletions(USER_ID, ids, oldestDate);
+        // 范围内只缺第 RECORDS-100 条；更早的缺失记录和同日期的记录保留
+        assertEquals(1, deleted);
+        assertEquals(0, count(DatabaseHelper.RECORD_SERVER_ID + "=" + (RECORDS - 100 + 1)));
+        assertEquals(1, count(DatabaseHelper.RECORD_SERVER_ID + "=" + (fromIndex + 1)));
+        assertEquals(1, count(DatabaseHelper.RECORD_SERVER_ID + "=" + (RECORDS + 200)));
+        assertEquals(RECORDS, count(DatabaseHelper.RECORD_USER_ID + "=" + USER_ID
+                + " AND " + DatabaseHelper.RECORD_IS_SYNCED + "=1"));
+
+        // 服务器返回空列表时不删除
+        assertEquals(0, helper.reconcileServerDeletions(USER_ID, new ArrayList<>(), null));
+    }
+}
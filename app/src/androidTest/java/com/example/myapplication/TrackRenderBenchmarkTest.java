@@ -0,0 +1,174 @@
+package com.example.myapplication;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.amap.api.maps.AMap;
+import com.amap.api.maps.MapView;
+import com.amap.api.maps.MapsInitializer;
+import com.amap.api.maps.model.LatLng;
+import com.amap.api.maps.model.Polyline;
+import com.amap.api.maps.model.PolylineOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * 轨迹绘制的基准测试
+ *
+ * 轨迹已有 1k / 10k / 50k 个点时，每来一个新点在主线程上更新地图的耗时：
+ * 增量绘制（{@link TrackPolylineRenderer}，只更新活动尾段）对比旧实现（整条轨迹一个 Polyline，每次 setPoints）。
+ * 结果输出到 logcat（TAG TrackRenderBench），并作为 instrumentation 状态上报（am instrument -r 可见）。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrackRenderBenchmarkTest {
+
+    private static final String TAG = "TrackRenderBench";
+    private static final int[] SIZES = {1_000, 10_000, 50_000};
+    /** 每个规模测量的更新次数（每次一个新点） */
+    private static final int UPDATES = 200;
+
+    private Instrumentation instrumentation;
+    private MapView mapView;
+    private AMap aMap;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        instrumentation.runOnMainSync(() -> {
+            MapsInitializer.updatePrivacyShow(context, true, true);
+            MapsInitializer.updatePrivacyAgree(context, true);
+            mapView = new MapView(context);
+            mapView.onCreate(null);
+            mapView.onResume();
+            aMap = mapView.getMap();
+        });
+        assertNotNull(aMap);
+    }
+
+    @After
+    public void tearDown() {
+        if (mapView != null) {
+            instrumentation.runOnMainSync(() -> {
+                mapView.onPause();
+                mapView.onDestroy();
+            });
+        }
+    }
+
+    private static double latitude(int i) {
+        return 30.5 + i * 2e-6;
+    }
+
+    private static double longitude(int i) {
+        return 114.3 + Math.sin(i / 300.0) * 1e-3;
+    }
+
+    @Test
+    public void updateTimeAtTrackLengths() {
+        StringBuilder report = new StringBuilder();
+        double lastIncremental = 0;
+        double lastFullRedraw = 0;
+        for (int size : SIZES) {
+            double[] incremental = measureIncremental(size);
+            double[] fullRedraw = measureFullRedraw(size);
+            String line = String.format(Locale.US,
+                    "%6d 点: 增量 平均 %.3fms p95 %.3fms | 整条 setPoints 平均 %.3fms p95 %.3fms",
+                    size, incremental[0], incremental[1], fullRedraw[0], fullRedraw[1]);
+            Log.i(TAG, line);
+            report.append(line).append('\n');
+            lastIncremental = incremental[0];
+            lastFullRedraw = fullRedraw[0];
+        }
+        Bundle status = new Bundle();
+        status.putString(Instrumentation.REPORT_KEY_STREAMRESULT, report.toString());
+        instrumentation.sendStatus(0, status);
+        // 增量绘制的耗时与轨迹长度无关，最长的轨迹上应明显快于整条重绘
+        assertTrue(report.toString(), lastIncremental < lastFullRedraw);
+    }
+
+    /**
+     * 先一次绘制 size - UPDATES 个点（不计时），再逐点更新并计时
+     * @return 平均和 p95 耗时（毫秒）
+     */
+    private double[] measureIncremental(int size) {
+        TrackBuffer track = new TrackBuffer();
+        int initial = size - UPDATES;
+        for (int i = 0; i < initial; i++) {
+            track.add(latitude(i), longitude(i), i * 500L);
+        }
+        TrackPolylineRenderer renderer = new TrackPolylineRenderer(aMap);
+        instrumentation.runOnMainSync(() -> renderer.render(track, null));
+        long[] nanos = new long[UPDATES];
+        for (int u = 0; u < UPDATES; u++) {
+            int i = initial + u;
+            track.add(latitude(i), longitude(i), i * 500L);
+            LatLng current = new LatLng(latitude(i), longitude(i));
+            int index = u;
+            instrumentation.runOnMainSync(() -> {
+                long begin = SystemClock.elapsedRealtimeNanos();
+                renderer.render(track, current);
+                nanos[index] = SystemClock.elapsedRealtimeNanos() - begin;
+            });
+        }
+        instrumentation.runOnMainSync(renderer::clear);
+        return summarize(nanos);
+    }
+
+    /**
+     * 旧实现：整条轨迹一个 Polyline，每个新点都 setPoints 整个列表
+     */
+    private double[] measureFullRedraw(int size) {
+        List<LatLng> points = new ArrayList<>(size);
+        int initial = size - UPDATES;
+        for (int i = 0; i < initial; i++) {
+            points.add(new LatLng(latitude(i), longitude(i)));
+        }
+        Polyline[] polyline = new Polyline[1];
+        instrumentation.runOnMainSync(() -> polyline[0] = aMap.addPolyline(new PolylineOptions()
+                .addAll(points).width(14).color(Color.argb(200, 220, 50, 50)).geodesic(true)));
+        long[] nanos = new long[UPDATES];
+        for (int u = 0; u < UPDATES; u++) {
+            int i = initial + u;
+            int index = u;
+            instrumentation.runOnMainSync(() -> {
+                long begin = SystemClock.elapsedRealtimeNanos();
+                points.add(new LatLng(latitude(i), longitude(i)));
+                polyline[0].setPoints(points);
+                nanos[index] = SystemClock.elapsedRealtimeNanos() - begin;
+            });
+        }
+        instrumentation.runOnMainSync(() -> polyline[0].remove());
+        return summarize(nanos);
+    }
+
+    private static double[] summarize(long[] nanos) {
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return new double[] {
+                total / 1e6 / nanos.length,
+                sorted[(int) (sorted.length * 0.95)] / 1e6
+        };
+    }
+}
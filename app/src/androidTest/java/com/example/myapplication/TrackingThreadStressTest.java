@@ -0,0 +1,100 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.ServiceTestRule;
+
+import com.amap.api.location.AMapLocation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * 主线程饱和时的定位点处理延迟
+ *
+ * 主线程上连续执行 300ms 的忙等任务（模拟布局、地图绘制、GC 停顿），同时注入模拟定位点，
+ * 测量每个点从回调到在跟踪线程处理完毕的延迟。
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrackingThreadStressTest {
+
+    private static final String TAG = "TrackingThreadStress";
+    private static final int FIXES = 100;
+    private static final long MAIN_THREAD_BLOCK_MS = 300;
+
+    @Rule
+    public final ServiceTestRule serviceRule = new ServiceTestRule();
+
+    @Test
+    public void fixLatencyStaysBoundedWhileMainThreadIsSaturated() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        IBinder binder = serviceRule.bindService(new Intent(context, RunningService.class));
+        RunningService service = ((RunningService.RunningBinder) binder).getService();
+        service.startRunning();
+
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+        AtomicBoolean saturate = new AtomicBoolean(true);
+        Runnable hog = new Runnable() {
+            @Override
+            public void run() {
+                long end = SystemClock.uptimeMillis() + MAIN_THREAD_BLOCK_MS;
+                while (SystemClock.uptimeMillis() < end) {
+                    // 忙等
+                }
+                if (saturate.get()) mainHandler.post(this);
+            }
+        };
+        mainHandler.post(hog);
+
+        long[] latencyNanos = new long[FIXES];
+        try {
+            for (int i = 0; i < FIXES; i++) {
+                AMapLocation fix = new AMapLocation("gps");
+                fix.setErrorCode(AMapLocation.LOCATION_SUCCESS);
+                fix.setLatitude(30.5 + i * 2.7e-5);
+                fix.setLongitude(114.36);
+                fix.setAccuracy(5f);
+                fix.setSpeed(3f);
+                fix.setTime(System.currentTimeMillis());
+
+                int before = service.processedFixCount;
+                long begin = SystemClock.elapsedRealtimeNanos();
+                service.onLocationChanged(fix);
+                while (service.processedFixCount == before) {
+                    assertTrue("定位点超过 2 秒未处理",
+                            SystemClock.elapsedRealtimeNanos() - begin < 2_000_000_000L);
+                    Thread.sleep(0, 100_000);
+                }
+                latencyNanos[i] = SystemClock.elapsedRealtimeNanos() - begin;
+                Thread.sleep(50);
+            }
+        } finally {
+            saturate.set(false);
+            service.stopRunning(result -> { });
+        }
+
+        Arrays.sort(latencyNanos);
+        double p50 = latencyNanos[FIXES / 2] / 1e6;
+        double p99 = latencyNanos[FIXES * 99 / 100] / 1e6;
+        double max = latencyNanos[FIXES - 1] / 1e6;
+        Log.i(TAG, String.format(Locale.US, "定位点处理延迟: p50=%.2fms, p99=%.2fms, max=%.2fms", p50, p99, max));
+
+        // 主线程每次阻塞 300ms，若定位点在主线程处理，p99 会接近阻塞时长
+        assertTrue("p99 延迟过高: " + p99 + "ms", p99 < 50);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.myapplication;
+
+/**
+ * 自适应定位采样
+ *
+ * 根据速度、定位精度、暂停状态和屏幕状态决定定位间隔和定位模式：
+ * 跑得越慢间隔越长（保持相邻点间距大致不变）；精度好时只用 GPS，精度变差时加上网络辅助；
+ * 暂停时切换为网络定位并拉长间隔，GPS 射频关闭；熄屏时不需要刷新地图，间隔按系数放大。
+ *
+ * 决策变化时 {@link #onFix}、{@link #setPaused} 等方法返回 true，由调用方重新设置定位参数。
+ * 同时统计每次跑步的定位回调次数和 GPS 工作时长。不涉及 Android API，可在 JVM 上回放测试。
+ */
+public class AdaptiveSamplingController {
+
+    /** 定位模式，对应 AMapLocationMode 的三种模式 */
+    public enum Mode {
+        /** GPS + 网络（Hight_Accuracy） */
+        HIGH_ACCURACY,
+        /** 仅 GPS（Device_Sensors） */
+        DEVICE_SENSORS,
+        /** 仅网络（Battery_Saving），GPS 关闭 */
+        BATTERY_SAVING;
+
+        public boolean usesGps() {
+            return this != BATTERY_SAVING;
+        }
+    }
+
+    /** 用户可选的采样档位 */
+    public enum Profile {
+        PRECISION("精确", 1000, 2000, 3.0, 1.0, 5000, false),
+        BALANCED("均衡", 1000, 4000, 5.0, 1.5, 10000, true),
+        BATTERY_SAVER("省电", 2000, 6000, 8.0, 2.0, 20000, true);
+
+        public final String label;
+        final long minInterval;
+        final long maxInterval;
+        /** 目标点间距（米） */
+        final double targetSpacing;
+        /** 熄屏时的间隔放大系数 */
+        final double screenOffFactor;
+        final long pausedInterval;
+        /** 精度良好时是否允许只用 GPS */
+        final boolean allowGpsOnly;
+
+        Profile(String label, long minInterval, long maxInterval, double targetSpacing,
+                double screenOffFactor, long pausedInterval, boolean allowGpsOnly) {
+            this.label = label;
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            this.targetSpacing = targetSpacing;
+            this.screenOffFactor = screenOffFactor;
+            this.pausedInterval = pausedInterval;
+            this.allowGpsOnly = allowGpsOnly;
+        }
+
+        public static Profile fromName(String name) {
+            for (Profile p : values()) {
+                if (p.name().equals(name)) return p;
+            }
+            return BALANCED;
+        }
+    }
+
+    private static final float GOOD_ACCURACY = 12f;
+    private static final float POOR_ACCURACY = 20f;
+    private static final float MOVING_SPEED = 0.5f;
+    private static final double SMOOTHING = 0.3;
+    /** 同一决策的最短保持时间，避免频繁重设定位参数 */
+    private static final long MIN_DWELL_MS = 10_000;
+    /** 间隔变化小于该比例时不调整 */
+    private static final double MIN_INTERVAL_CHANGE = 0.25;
+    /** 仅 GPS 模式下超过该时长没有定位点（如进入室内）则恢复网络辅助 */
+    private static final long GPS_ONLY_TIMEOUT_MS = 5_000;
+    private static final long INTERVAL_STEP_MS = 500;
+
+    private Profile profile;
+    private boolean paused = false;
+    private boolean screenOn = true;
+
+    private boolean hasFix = false;
+    private double speedEma, accuracyEma;
+    private long lastFixTime;
+
+    private Mode mode = Mode.HIGH_ACCURACY;
+    private long interval;
+    private long lastChangeTime;
+
+    // 统计
+    private int callbackCount;
+    private long gpsMillis;
+    private long modeSince;
+
+    public AdaptiveSamplingController(Profile profile) {
+        this.profile = profile;
+        this.interval = profile.minInterval;
+    }
+
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * 跑步开始：以最高精度、最短间隔开始，尽快拿到第一个点
+     */
+    public void startRun(long now) {
+        paused = false;
+        hasFix = false;
+        mode = Mode.HIGH_ACCURACY;
+        interval = profile.minInterval;
+        lastChangeTime = now;
+        lastFixTime = now;
+        callbackCount = 0;
+        gpsMillis = 0;
+        modeSince = now;
+    }
+
+    /**
+     * 跑步结束：结算 GPS 工作时长
+     */
+    public void stopRun(long now) {
+        accountMode(now);
+    }
+
+    /**
+     * 收到定位回调
+     *
+     * @return 决策是否变化
+     */
+    public boolean onFix(float speed, float accuracy, long now) {
+        callbackCount++;
+        if (paused) return false;
+        lastFixTime = now;
+        if (!hasFix) {
+            hasFix = true;
+            speedEma = speed;
+            accuracyEma = accuracy;
+        } else {
+            speedEma += SMOOTHING * (speed - speedEma);
+            accuracyEma += SMOOTHING * (accuracy - accuracyEma);
+        }
+        return evaluate(now, false);
+    }
+
+    /**
+     * 定时检查（每秒），处理仅 GPS 模式下长时间没有定位点的情况
+     *
+     * @return 决策是否变化
+     */
+    public boolean onTick(long now) {
+        if (!paused && mode == Mode.DEVICE_SENSORS && now - lastFixTime > interval + GPS_ONLY_TIMEOUT_MS) {
+            return apply(Mode.HIGH_ACCURACY, profile.minInterval, now);
+        }
+        return false;
+    }
+
+    public boolean setPaused(boolean paused, long now) {
+        if (this.paused == paused) return false;
+        this.paused = paused;
+        lastFixTime = now;
+        return evaluate(now, true);
+    }
+
+    public boolean setScreenOn(boolean screenOn, long now) {
+        if (this.screenOn == screenOn) return false;
+        this.screenOn = screenOn;
+        // 亮屏时立即恢复，熄屏时等下一个点再放宽
+        return screenOn && evaluate(now, true);
+    }
+
+    private boolean evaluate(long now, boolean force) {
+        if (paused) {
+            return apply(Mode.BATTERY_SAVING, profile.pausedInterval, now);
+        }
+        if (!hasFix) {
+            return apply(Mode.HIGH_ACCURACY, profile.minInterval, now);
+        }
+
+        Mode nextMode = mode == Mode.BATTERY_SAVING ? Mode.HIGH_ACCURACY : mode;
+        if (!profile.allowGpsOnly || accuracyEma > POOR_ACCURACY) {
+            nextMode = Mode.HIGH_ACCURACY;
+        } else if (accuracyEma <= GOOD_ACCURACY) {
+            nextMode = Mode.DEVICE_SENSORS;
+        }
+
+        long nextInterval;
+        if (accuracyEma > POOR_ACCURACY) {
+            // 精度差时加密采样，尽快恢复
+            nextInterval = profile.minInterval;
+        } else {
+            double maxInterval = profile.maxInterval;
+            double target = speedEma < MOVING_SPEED ? maxInterval : profile.targetSpacing * 1000 / speedEma;
+            if (!screenOn) {
+                target *= profile.screenOffFactor;
+                maxInterval *= profile.screenOffFactor;
+            }
+            target = Math.max(profile.minInterval, Math.min(maxInterval, target));
+            nextInterval = Math.round(target / INTERVAL_STEP_MS) * INTERVAL_STEP_MS;
+        }
+
+        if (nextMode == mode) {
+            if (Math.abs(nextInterval - interval) < interval * MIN_INTERVAL_CHANGE) return false;
+            if (!force && now - lastChangeTime < MIN_DWELL_MS) return false;
+        }
+        return apply(nextMode, nextInterval, now);
+    }
+
+    private boolean apply(Mode nextMode, long nextInterval, long now) {
+        if (nextMode == mode && nextInterval == interval) return false;
+        if (nextMode != mode) {
+            accountMode(now);
+        }
+        mode = nextMode;
+        interval = nextInterval;
+        lastChangeTime = now;
+        return true;
+    }
+
+    private void accountMode(long now) {
+        if (mode.usesGps()) {
+            gpsMillis += now - modeSince;
+        }
+        modeSince = now;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public int getCallbackCount() {
+        return callbackCount;
+    }
+
+    /** GPS 工作时长（毫秒），跑步结束后调用 {@link #stopRun} 结算 */
+    public long getGpsMillis() {
+        return gpsMillis;
+    }
+}
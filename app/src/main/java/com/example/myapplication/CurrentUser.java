@@ -0,0 +1,62 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.annotation.VisibleForTesting;
+
+import com.example.myapplication.api.AuthManager;
+import com.example.myapplication.api.UserInfo;
+
+/**
+ * 当前登录用户
+ *
+ * 各页面通过这里取当前用户ID；测试可注入一个用户，不依赖设备上已保存的登录状态。
+ */
+public final class CurrentUser {
+
+    /** 测试注入的用户ID，不大于 0 时使用 AuthManager 的登录状态 */
+    private static volatile int injectedUserId = -1;
+
+    private CurrentUser() {
+    }
+
+    public static boolean isLoggedIn(Context context) {
+        return injectedUserId > 0 || AuthManager.getInstance(context).isLoggedIn();
+    }
+
+    /**
+     * 当前登录用户ID，未登录时返回 -1
+     */
+    public static int getId(Context context) {
+        if (injectedUserId > 0) {
+            return injectedUserId;
+        }
+        AuthManager authManager = AuthManager.getInstance(context);
+        if (authManager.isLoggedIn()) {
+            UserInfo user = authManager.getCurrentUser();
+            if (user != null && user.getId() != null) {
+                return user.getId();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 当前登录用户的 JWT 令牌，未登录或测试注入的用户返回 null
+     */
+    public static String getToken(Context context) {
+        if (injectedUserId > 0) {
+            return null;
+        }
+        AuthManager authManager = AuthManager.getInstance(context);
+        return authManager.isLoggedIn() ? authManager.getToken() : null;
+    }
+
+    /**
+     * 注入当前用户，传 -1 恢复使用 AuthManager
+     */
+    @VisibleForTesting
+    static void inject(int userId) {
+        injectedUserId = userId;
+    }
+}
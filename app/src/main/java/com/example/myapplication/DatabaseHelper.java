@@ -4,20 +4,29 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "running_app.db";
-    private static final int DATABASE_VERSION = 2; // 升级版本以支持同步字段
+    private static final int DATABASE_VERSION = 8; // 3: 轨迹改为二进制BLOB存储 4: 分段表 5: 轨迹单独存表 6: 索引 7: 每日汇总表 8: 起止时间列
 
     // 表名
     public static final String TABLE_USERS = "users";
     public static final String TABLE_RUNNING_RECORDS = "running_records";
     public static final String TABLE_SURVEY_RESULTS = "survey_results";
+    public static final String TABLE_RUN_SPLITS = "run_splits";
+    public static final String TABLE_RUN_TRACKS = "run_tracks";
+    public static final String TABLE_DAILY_STATS = "run_daily_stats";
+    /** 对照服务器删除时暂存服务器ID的临时表（只在当前连接的事务内使用） */
+    private static final String TEMP_SERVER_IDS = "temp.server_ids";
 
     // 用户表字段
     public static final String USER_ID = "id";
@@ -36,6 +45,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String RECORD_STEPS = "steps";
     public static final String RECORD_CALORIES = "calories";
     public static final String RECORD_PACE = "pace";
+    /** 轨迹列，v5 起在 {@link #TABLE_RUN_TRACKS} 表中 */
     public static final String RECORD_TRACK = "track";
     public static final String RECORD_CREATED_AT = "created_at";
     // 同步相关字段
@@ -44,6 +54,34 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String RECORD_SEMESTER_ID = "semester_id";
     public static final String RECORD_TASK_ID = "task_id";
     public static final String RECORD_IS_VALID = "is_valid";
+    // 起止时间（epoch 毫秒）和结束时本地时区偏移（分钟），按时间范围查询使用
+    public static final String RECORD_START_TIME = "start_time";
+    public static final String RECORD_END_TIME = "end_time";
+    public static final String RECORD_TZ_OFFSET = "tz_offset";
+
+    // 轨迹表字段（轨迹列名同 RECORD_TRACK）
+    public static final String TRACK_RUN_ID = "run_id";
+
+    // 每日汇总表字段（按用户和日期，由触发器随跑步记录维护）
+    public static final String DAILY_USER_ID = "user_id";
+    /** 日期 yyyy-MM-dd，即记录日期的前 10 个字符 */
+    public static final String DAILY_DAY = "day";
+    public static final String DAILY_RUNS = "runs";
+    public static final String DAILY_DISTANCE = "distance";
+    public static final String DAILY_DURATION = "duration";
+    public static final String DAILY_STEPS = "steps";
+    public static final String DAILY_CALORIES = "calories";
+
+    // 分段表字段
+    public static final String SPLIT_ID = "id";
+    public static final String SPLIT_RUN_ID = "run_id";
+    public static final String SPLIT_LENGTH = "split_length";
+    public static final String SPLIT_INDEX = "split_index";
+    public static final String SPLIT_DISTANCE = "distance";
+    public static final String SPLIT_DURATION = "duration_ms";
+    public static final String SPLIT_PACE = "pace";
+    public static final String SPLIT_STEPS = "steps";
+    public static final String SPLIT_CADENCE = "cadence";
 
     // 问卷表字段
     public static final String SURVEY_ID = "id";
@@ -64,7 +102,54 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     private DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /** 指定数据库文件名（测试用独立数据库） */
+    DatabaseHelper(Context context, String name) {
+        this(context, name, null);
+    }
+
+    /** 指定数据库文件名和游标工厂（查询计划测试用来记录执行的 SQL） */
+    DatabaseHelper(Context context, String name, CursorFactory factory) {
+        super(context, name, factory, DATABASE_VERSION);
+    }
+
+    /**
+     * 跑步记录查询投影
+     *
+     * 查询只取需要的列：列表和统计不需要轨迹，不取 track 列可以避免把大块轨迹数据读进 CursorWindow
+     * （窗口装满后要重新执行查询填充下一个窗口）。未包含的字段在 {@link RunningRecord} 中保持默认值。
+     * 轨迹在单独的表中，只有 {@link #FULL} 会关联读取。
+     */
+    public enum RecordProjection {
+        /** 列表、统计用的汇总字段，不含轨迹 */
+        SUMMARY(RECORD_ID, RECORD_USER_ID, RECORD_DATE, RECORD_DISTANCE, RECORD_DURATION,
+                RECORD_STEPS, RECORD_CALORIES, RECORD_PACE, RECORD_CREATED_AT,
+                RECORD_SERVER_ID, RECORD_IS_SYNCED, RECORD_START_TIME, RECORD_END_TIME, RECORD_TZ_OFFSET),
+        /** 汇总字段加同步状态，不含轨迹 */
+        SYNC(RECORD_ID, RECORD_USER_ID, RECORD_DATE, RECORD_DISTANCE, RECORD_DURATION,
+                RECORD_STEPS, RECORD_CALORIES, RECORD_PACE, RECORD_CREATED_AT,
+                RECORD_SERVER_ID, RECORD_IS_SYNCED, RECORD_SEMESTER_ID, RECORD_TASK_ID, RECORD_IS_VALID,
+                RECORD_START_TIME, RECORD_END_TIME, RECORD_TZ_OFFSET),
+        /** 全部字段，包括轨迹（上传时使用） */
+        FULL(RECORD_ID, RECORD_USER_ID, RECORD_DATE, RECORD_DISTANCE, RECORD_DURATION,
+                RECORD_STEPS, RECORD_CALORIES, RECORD_PACE, RECORD_CREATED_AT,
+                RECORD_SERVER_ID, RECORD_IS_SYNCED, RECORD_SEMESTER_ID, RECORD_TASK_ID, RECORD_IS_VALID,
+                RECORD_START_TIME, RECORD_END_TIME, RECORD_TZ_OFFSET, RECORD_TRACK);
+
+        final String[] columns;
+        /** 是否需要关联轨迹表 */
+        final boolean withTrack;
+
+        RecordProjection(String... columns) {
+            this.columns = columns;
+            this.withTrack = Arrays.asList(columns).contains(RECORD_TRACK);
+        }
+
+        public String[] getColumns() {
+            return columns.clone();
+        }
     }
 
     @Override
@@ -78,8 +163,42 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 USER_WEIGHT + " DECIMAL(5,2), " +
                 USER_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP)";
 
-        // 创建跑步记录表（包含同步字段）
-        String createRecordsTable = "CREATE TABLE " + TABLE_RUNNING_RECORDS + " (" +
+        // 创建问卷调查表
+        String createSurveyTable = "CREATE TABLE " + TABLE_SURVEY_RESULTS + " (" +
+                SURVEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                SURVEY_USER_ID + " INTEGER NOT NULL, " +
+                SURVEY_FREQUENCY + " VARCHAR(50), " +
+                SURVEY_PURPOSE + " VARCHAR(50), " +
+                SURVEY_SATISFACTION + " INTEGER, " +
+                SURVEY_SUGGESTION + " TEXT, " +
+                SURVEY_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY (" + SURVEY_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + USER_ID + "))";
+
+        db.execSQL(createUsersTable);
+        createRecordsTable(db, TABLE_RUNNING_RECORDS);
+        db.execSQL(createSurveyTable);
+        createSplitsTable(db);
+        createTracksTable(db);
+        createRecordTriggers(db);
+        createIndexes(db);
+        createDailyStatsTable(db);
+        createDailyStatsTriggers(db);
+        createTimeIndex(db);
+
+        // 插入默认用户
+        ContentValues defaultUser = new ContentValues();
+        defaultUser.put(USER_USERNAME, "default");
+        defaultUser.put(USER_PASSWORD, "123456");
+        defaultUser.put(USER_NICKNAME, "跑步达人");
+        defaultUser.put(USER_WEIGHT, 70.0);
+        db.insert(TABLE_USERS, null, defaultUser);
+    }
+
+    /**
+     * 跑步记录表（汇总字段和同步字段），轨迹在 {@link #TABLE_RUN_TRACKS} 中
+     */
+    private void createRecordsTable(SQLiteDatabase db, String table) {
+        db.execSQL("CREATE TABLE " + table + " (" +
                 RECORD_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 RECORD_USER_ID + " INTEGER NOT NULL, " +
                 RECORD_DATE + " DATETIME NOT NULL, " +
@@ -88,17 +207,122 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 RECORD_STEPS + " INTEGER DEFAULT 0, " +
                 RECORD_CALORIES + " INTEGER DEFAULT 0, " +
                 RECORD_PACE + " DECIMAL(5,2) DEFAULT 0, " +
-                RECORD_TRACK + " TEXT, " +
                 RECORD_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP, " +
                 RECORD_SERVER_ID + " INTEGER DEFAULT NULL, " +
                 RECORD_IS_SYNCED + " INTEGER DEFAULT 0, " +
                 RECORD_SEMESTER_ID + " INTEGER DEFAULT NULL, " +
                 RECORD_TASK_ID + " INTEGER DEFAULT NULL, " +
                 RECORD_IS_VALID + " INTEGER DEFAULT 1, " +
-                "FOREIGN KEY (" + RECORD_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + USER_ID + "))";
+                RECORD_START_TIME + " INTEGER DEFAULT NULL, " +
+                RECORD_END_TIME + " INTEGER DEFAULT NULL, " +
+                RECORD_TZ_OFFSET + " INTEGER DEFAULT NULL, " +
+                "FOREIGN KEY (" + RECORD_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + USER_ID + "))");
+    }
 
-        // 创建问卷调查表
-        String createSurveyTable = "CREATE TABLE " + TABLE_SURVEY_RESULTS + " (" +
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // 逐版本迁移，保留用户数据（onUpgrade 已在事务中执行）
+        if (oldVersion < 2) {
+            migrateFromVersion1(db);
+        }
+        if (oldVersion < 3) {
+            migrateTracksToBinary(db);
+        }
+        if (oldVersion < 4) {
+            createSplitsTable(db);
+        }
+        if (oldVersion < 5) {
+            moveTracksToTable(db);
+        }
+        if (oldVersion < 6) {
+            removeDuplicateServerIds(db);
+            createIndexes(db);
+        }
+        if (oldVersion < 7) {
+            createDailyStatsTable(db);
+            createDailyStatsTriggers(db);
+            rebuildDailyStats(db);
+        }
+        if (oldVersion < 8) {
+            List<String> columns = getColumns(db, TABLE_RUNNING_RECORDS);
+            addColumnIfMissing(db, columns, RECORD_START_TIME, "INTEGER DEFAULT NULL");
+            addColumnIfMissing(db, columns, RECORD_END_TIME, "INTEGER DEFAULT NULL");
+            addColumnIfMissing(db, columns, RECORD_TZ_OFFSET, "INTEGER DEFAULT NULL");
+            fillRecordTimes(db);
+            createTimeIndex(db);
+        }
+    }
+
+    /**
+     * 按时间范围查询（本周、本学期等）：按用户过滤、按开始时间范围扫描，结果按开始时间倒序不需要额外排序
+     */
+    private void createTimeIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_records_user_start ON " + TABLE_RUNNING_RECORDS +
+                "(" + RECORD_USER_ID + ", " + RECORD_START_TIME + ")");
+    }
+
+    /**
+     * v7 → v8：由日期字符串（结束时间，本地时间，精确到分钟）和时长推算已有记录的起止时间。
+     * 日期无法解析的记录保持 NULL，不出现在按时间范围的查询结果中
+     */
+    private void fillRecordTimes(SQLiteDatabase db) {
+        SimpleDateFormat format = TimeRange.newDateFormat();
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_RUNNING_RECORDS + " SET " +
+                RECORD_START_TIME + "=?, " + RECORD_END_TIME + "=?, " + RECORD_TZ_OFFSET + "=? WHERE " +
+                RECORD_ID + "=?");
+        Cursor cursor = db.rawQuery("SELECT " + RECORD_ID + ", " + RECORD_DATE + ", " + RECORD_DURATION +
+                " FROM " + TABLE_RUNNING_RECORDS + " WHERE " + RECORD_START_TIME + " IS NULL", null);
+        try {
+            while (cursor.moveToNext()) {
+                long end = TimeRange.parseDate(format, cursor.getString(1));
+                if (end < 0) continue;
+                update.clearBindings();
+                bindTimes(update, 1, end - cursor.getInt(2) * 1000L, end);
+                update.bindLong(4, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    /**
+     * 二级索引，对应各查询方法（QueryPlanTest 验证查询计划）：
+     * 历史列表按用户过滤、按日期倒序；同步时按服务器ID查找；未同步记录用部分索引，只包含 is_synced=0 的行
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_records_user_date ON " + TABLE_RUNNING_RECORDS +
+                "(" + RECORD_USER_ID + ", " + RECORD_DATE + " DESC)");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_records_server_id ON " + TABLE_RUNNING_RECORDS +
+                "(" + RECORD_SERVER_ID + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_records_unsynced ON " + TABLE_RUNNING_RECORDS +
+                "(" + RECORD_DATE + ") WHERE " + RECORD_IS_SYNCED + "=0");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_survey_user_created ON " + TABLE_SURVEY_RESULTS +
+                "(" + SURVEY_USER_ID + ", " + SURVEY_CREATED_AT + " DESC)");
+    }
+
+    /**
+     * 建唯一索引前去掉重复的服务器ID，每个服务器ID保留最新的一条（分段和轨迹由触发器一并删除）
+     */
+    private void removeDuplicateServerIds(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_RUNNING_RECORDS + " WHERE " + RECORD_SERVER_ID + " IS NOT NULL" +
+                " AND " + RECORD_ID + " NOT IN (SELECT MAX(" + RECORD_ID + ") FROM " + TABLE_RUNNING_RECORDS +
+                " WHERE " + RECORD_SERVER_ID + " IS NOT NULL GROUP BY " + RECORD_SERVER_ID + ")");
+    }
+
+    /**
+     * v1 → v2：补建缺少的表，给跑步记录表补上同步字段
+     */
+    private void migrateFromVersion1(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_USERS + " (" +
+                USER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                USER_USERNAME + " VARCHAR(50) NOT NULL UNIQUE, " +
+                USER_PASSWORD + " VARCHAR(100) NOT NULL, " +
+                USER_NICKNAME + " VARCHAR(50), " +
+                USER_WEIGHT + " DECIMAL(5,2), " +
+                USER_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_SURVEY_RESULTS + " (" +
                 SURVEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
                 SURVEY_USER_ID + " INTEGER NOT NULL, " +
                 SURVEY_FREQUENCY + " VARCHAR(50), " +
@@ -106,27 +330,209 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 SURVEY_SATISFACTION + " INTEGER, " +
                 SURVEY_SUGGESTION + " TEXT, " +
                 SURVEY_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP, " +
-                "FOREIGN KEY (" + SURVEY_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + USER_ID + "))";
+                "FOREIGN KEY (" + SURVEY_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + USER_ID + "))");
+        if (getColumns(db, TABLE_RUNNING_RECORDS).isEmpty()) {
+            // 旧版本还没有跑步记录表：按 v4 的结构建表（含 track 列），由后续步骤迁移
+            createRecordsTable(db, TABLE_RUNNING_RECORDS);
+            db.execSQL("ALTER TABLE " + TABLE_RUNNING_RECORDS + " ADD COLUMN " + RECORD_TRACK + " BLOB");
+            return;
+        }
+        List<String> columns = getColumns(db, TABLE_RUNNING_RECORDS);
+        addColumnIfMissing(db, columns, RECORD_TRACK, "BLOB");
+        addColumnIfMissing(db, columns, RECORD_SERVER_ID, "INTEGER DEFAULT NULL");
+        addColumnIfMissing(db, columns, RECORD_IS_SYNCED, "INTEGER DEFAULT 0");
+        addColumnIfMissing(db, columns, RECORD_SEMESTER_ID, "INTEGER DEFAULT NULL");
+        addColumnIfMissing(db, columns, RECORD_TASK_ID, "INTEGER DEFAULT NULL");
+        addColumnIfMissing(db, columns, RECORD_IS_VALID, "INTEGER DEFAULT 1");
+    }
 
-        db.execSQL(createUsersTable);
-        db.execSQL(createRecordsTable);
-        db.execSQL(createSurveyTable);
+    private static void addColumnIfMissing(SQLiteDatabase db, List<String> columns, String column, String definition) {
+        if (!columns.contains(column)) {
+            db.execSQL("ALTER TABLE " + TABLE_RUNNING_RECORDS + " ADD COLUMN " + column + " " + definition);
+        }
+    }
 
-        // 插入默认用户
-        ContentValues defaultUser = new ContentValues();
-        defaultUser.put(USER_USERNAME, "default");
-        defaultUser.put(USER_PASSWORD, "123456");
-        defaultUser.put(USER_NICKNAME, "跑步达人");
-        defaultUser.put(USER_WEIGHT, 70.0);
-        db.insert(TABLE_USERS, null, defaultUser);
+    private static List<String> getColumns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(nameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SURVEY_RESULTS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_RUNNING_RECORDS);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-        onCreate(db);
+    /**
+     * v4 → v5：轨迹移到单独的表。SQLite 不支持删除列，跑步记录表按新结构重建后复制数据，记录ID不变
+     */
+    private void moveTracksToTable(SQLiteDatabase db) {
+        createTracksTable(db);
+        db.execSQL("INSERT INTO " + TABLE_RUN_TRACKS + " (" + TRACK_RUN_ID + ", " + RECORD_TRACK + ")" +
+                " SELECT " + RECORD_ID + ", " + RECORD_TRACK + " FROM " + TABLE_RUNNING_RECORDS +
+                " WHERE " + RECORD_TRACK + " IS NOT NULL");
+
+        String temp = TABLE_RUNNING_RECORDS + "_new";
+        createRecordsTable(db, temp);
+        // 只复制新旧两表都有的列（更早版本升级上来的表可能缺少 created_at 等列）
+        List<String> oldColumns = getColumns(db, TABLE_RUNNING_RECORDS);
+        StringBuilder columns = new StringBuilder();
+        for (String column : getColumns(db, temp)) {
+            if (!oldColumns.contains(column)) continue;
+            if (columns.length() > 0) columns.append(", ");
+            columns.append(column);
+        }
+        db.execSQL("INSERT INTO " + temp + " (" + columns + ") SELECT " + columns +
+                " FROM " + TABLE_RUNNING_RECORDS);
+        // 删除旧表时其上的触发器一并删除，重命名后重新创建
+        db.execSQL("DROP TABLE " + TABLE_RUNNING_RECORDS);
+        db.execSQL("ALTER TABLE " + temp + " RENAME TO " + TABLE_RUNNING_RECORDS);
+        createRecordTriggers(db);
+    }
+
+    /**
+     * 轨迹表：每条跑步记录一行，只有需要绘制或上传轨迹时才读取
+     */
+    private void createTracksTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_RUN_TRACKS + " (" +
+                TRACK_RUN_ID + " INTEGER PRIMARY KEY, " +
+                RECORD_TRACK + " BLOB, " +
+                "FOREIGN KEY (" + TRACK_RUN_ID + ") REFERENCES " + TABLE_RUNNING_RECORDS + "(" + RECORD_ID + "))");
+    }
+
+    /**
+     * 外键约束没有启用，删除跑步记录时由触发器删除对应的分段和轨迹
+     */
+    private void createRecordTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_records_delete_splits AFTER DELETE ON " + TABLE_RUNNING_RECORDS +
+                " BEGIN DELETE FROM " + TABLE_RUN_SPLITS + " WHERE " + SPLIT_RUN_ID + "=OLD." + RECORD_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_records_delete_track AFTER DELETE ON " + TABLE_RUNNING_RECORDS +
+                " BEGIN DELETE FROM " + TABLE_RUN_TRACKS + " WHERE " + TRACK_RUN_ID + "=OLD." + RECORD_ID + "; END");
+    }
+
+    /**
+     * 每日汇总表：每个用户每天一行，统计页面只需要读取时间范围内的几行，不需要扫描全部跑步记录
+     */
+    private void createDailyStatsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DAILY_STATS + " (" +
+                DAILY_USER_ID + " INTEGER NOT NULL, " +
+                DAILY_DAY + " TEXT NOT NULL, " +
+                DAILY_RUNS + " INTEGER NOT NULL DEFAULT 0, " +
+                DAILY_DISTANCE + " REAL NOT NULL DEFAULT 0, " +
+                DAILY_DURATION + " INTEGER NOT NULL DEFAULT 0, " +
+                DAILY_STEPS + " INTEGER NOT NULL DEFAULT 0, " +
+                DAILY_CALORIES + " INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (" + DAILY_USER_ID + ", " + DAILY_DAY + ")) WITHOUT ROWID");
+    }
+
+    /**
+     * 跑步记录的插入、删除和汇总字段的修改由触发器同步到每日汇总表，与修改记录在同一事务中完成
+     * （insertRunningRecord、insertOrUpdateFromServer、mergeFromServer 和各删除方法都不需要单独维护）。
+     * 修改时先从旧日期减去旧值，再加到新日期上；某天的记录全部删除后删除该行
+     */
+    private void createDailyStatsTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_daily_stats_insert AFTER INSERT ON " + TABLE_RUNNING_RECORDS +
+                " BEGIN " + addToDailyStats("NEW") + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_daily_stats_delete AFTER DELETE ON " + TABLE_RUNNING_RECORDS +
+                " BEGIN " + removeFromDailyStats("OLD") + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_daily_stats_update AFTER UPDATE OF " +
+                RECORD_USER_ID + ", " + RECORD_DATE + ", " + RECORD_DISTANCE + ", " + RECORD_DURATION + ", " +
+                RECORD_STEPS + ", " + RECORD_CALORIES + " ON " + TABLE_RUNNING_RECORDS +
+                " BEGIN " + removeFromDailyStats("OLD") + " " + addToDailyStats("NEW") + " END");
+    }
+
+    private static String dailyStatsKey(String row) {
+        return DAILY_USER_ID + "=" + row + "." + RECORD_USER_ID +
+                " AND " + DAILY_DAY + "=substr(" + row + "." + RECORD_DATE + ", 1, 10)";
+    }
+
+    private static String addToDailyStats(String row) {
+        return "INSERT OR IGNORE INTO " + TABLE_DAILY_STATS + " (" + DAILY_USER_ID + ", " + DAILY_DAY + ")" +
+                " VALUES (" + row + "." + RECORD_USER_ID + ", substr(" + row + "." + RECORD_DATE + ", 1, 10)); " +
+                "UPDATE " + TABLE_DAILY_STATS + " SET " + DAILY_RUNS + "=" + DAILY_RUNS + "+1" +
+                dailyStatsDelta(row, "+") + " WHERE " + dailyStatsKey(row) + ";";
+    }
+
+    private static String removeFromDailyStats(String row) {
+        return "UPDATE " + TABLE_DAILY_STATS + " SET " + DAILY_RUNS + "=" + DAILY_RUNS + "-1" +
+                dailyStatsDelta(row, "-") + " WHERE " + dailyStatsKey(row) + "; " +
+                "DELETE FROM " + TABLE_DAILY_STATS + " WHERE " + dailyStatsKey(row) +
+                " AND " + DAILY_RUNS + "<=0;";
+    }
+
+    private static String dailyStatsDelta(String row, String op) {
+        return ", " + DAILY_DISTANCE + "=" + DAILY_DISTANCE + op + "IFNULL(" + row + "." + RECORD_DISTANCE + ", 0)" +
+                ", " + DAILY_DURATION + "=" + DAILY_DURATION + op + "IFNULL(" + row + "." + RECORD_DURATION + ", 0)" +
+                ", " + DAILY_STEPS + "=" + DAILY_STEPS + op + "IFNULL(" + row + "." + RECORD_STEPS + ", 0)" +
+                ", " + DAILY_CALORIES + "=" + DAILY_CALORIES + op + "IFNULL(" + row + "." + RECORD_CALORIES + ", 0)";
+    }
+
+    /**
+     * 按跑步记录重新计算每日汇总表（升级到 v7 时填充已有数据；也可用于修复累计的浮点误差）
+     */
+    public void rebuildDailyStats() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildDailyStats(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void rebuildDailyStats(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM " + TABLE_DAILY_STATS);
+        db.execSQL("INSERT INTO " + TABLE_DAILY_STATS + " (" + DAILY_USER_ID + ", " + DAILY_DAY + ", " +
+                DAILY_RUNS + ", " + DAILY_DISTANCE + ", " + DAILY_DURATION + ", " + DAILY_STEPS + ", " +
+                DAILY_CALORIES + ") SELECT " + RECORD_USER_ID + ", substr(" + RECORD_DATE + ", 1, 10), COUNT(*), " +
+                "TOTAL(" + RECORD_DISTANCE + "), TOTAL(" + RECORD_DURATION + "), TOTAL(" + RECORD_STEPS + "), " +
+                "TOTAL(" + RECORD_CALORIES + ") FROM " + TABLE_RUNNING_RECORDS +
+                " GROUP BY " + RECORD_USER_ID + ", substr(" + RECORD_DATE + ", 1, 10)");
+    }
+
+    /**
+     * 分段表：按跑步记录ID建索引，历史页面查询分段不需要读取和解析轨迹
+     */
+    private void createSplitsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_RUN_SPLITS + " (" +
+                SPLIT_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                SPLIT_RUN_ID + " INTEGER NOT NULL, " +
+                SPLIT_LENGTH + " REAL NOT NULL, " +
+                SPLIT_INDEX + " INTEGER NOT NULL, " +
+                SPLIT_DISTANCE + " REAL NOT NULL, " +
+                SPLIT_DURATION + " INTEGER NOT NULL, " +
+                SPLIT_PACE + " REAL DEFAULT 0, " +
+                SPLIT_STEPS + " INTEGER DEFAULT 0, " +
+                SPLIT_CADENCE + " REAL DEFAULT 0, " +
+                "FOREIGN KEY (" + SPLIT_RUN_ID + ") REFERENCES " + TABLE_RUNNING_RECORDS + "(" + RECORD_ID + "))");
+        db.execSQL("CREATE UNIQUE INDEX idx_splits_run ON " + TABLE_RUN_SPLITS + "(" +
+                SPLIT_RUN_ID + ", " + SPLIT_LENGTH + ", " + SPLIT_INDEX + ")");
+    }
+
+    /**
+     * 将旧版 "lat,lng;" 文本轨迹转换为二进制格式（onUpgrade 已在事务中执行）
+     */
+    private void migrateTracksToBinary(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_RUNNING_RECORDS +
+                " SET " + RECORD_TRACK + "=? WHERE " + RECORD_ID + "=?");
+        Cursor cursor = db.rawQuery("SELECT " + RECORD_ID + ", " + RECORD_TRACK +
+                " FROM " + TABLE_RUNNING_RECORDS + " WHERE typeof(" + RECORD_TRACK + ")='text'", null);
+        try {
+            while (cursor.moveToNext()) {
+                byte[] data = TrackCodec.fromLegacyText(cursor.getString(1));
+                update.clearBindings();
+                update.bindBlob(1, data);
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
     }
 
     // ==================== 用户相关操作 ====================
@@ -154,63 +560,227 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     // ==================== 跑步记录相关操作 ====================
     public long insertRunningRecord(int userId, String date, double distance, 
-            int duration, int steps, int calories, double pace, String track) {
+            int duration, int steps, int calories, double pace, byte[] track) {
+        return insertRunningRecord(userId, date, distance, duration, steps, calories, pace, track, null);
+    }
+
+    /**
+     * 插入跑步记录及其分段（同一事务），起止时间由日期（结束时间，精确到分钟）和时长推算
+     */
+    public long insertRunningRecord(int userId, String date, double distance,
+            int duration, int steps, int calories, double pace, byte[] track,
+            List<SplitTracker.Split> splits) {
+        long end = TimeRange.parseDate(date);
+        return insertRunningRecord(userId, date, end < 0 ? 0 : end - duration * 1000L, end < 0 ? 0 : end,
+                distance, duration, steps, calories, pace, track, splits);
+    }
+
+    /**
+     * @param startTime 开始时间（epoch 毫秒），0 表示未知
+     * @param endTime   结束时间（epoch 毫秒），0 表示未知
+     */
+    public long insertRunningRecord(int userId, String date, long startTime, long endTime, double distance,
+            int duration, int steps, int calories, double pace, byte[] track,
+            List<SplitTracker.Split> splits) {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(RECORD_USER_ID, userId);
         values.put(RECORD_DATE, date);
+        if (endTime > 0) {
+            values.put(RECORD_START_TIME, startTime);
+            values.put(RECORD_END_TIME, endTime);
+            values.put(RECORD_TZ_OFFSET, TimeRange.offsetMinutes(endTime));
+        }
         values.put(RECORD_DISTANCE, distance);
         values.put(RECORD_DURATION, duration);
         values.put(RECORD_STEPS, steps);
         values.put(RECORD_CALORIES, calories);
         values.put(RECORD_PACE, pace);
+        db.beginTransaction();
+        try {
+            long id = db.insert(TABLE_RUNNING_RECORDS, null, values);
+            if (id != -1) {
+                saveTrack(db, id, track);
+            }
+            if (id != -1 && splits != null && !splits.isEmpty()) {
+                insertSplits(db, id, splits);
+            }
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private void saveTrack(SQLiteDatabase db, long runId, byte[] track) {
+        if (track == null) return;
+        ContentValues values = new ContentValues();
+        values.put(TRACK_RUN_ID, runId);
         values.put(RECORD_TRACK, track);
-        return db.insert(TABLE_RUNNING_RECORDS, null, values);
+        db.insertWithOnConflict(TABLE_RUN_TRACKS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
     }
 
-    public List<RunningRecord> getRunningRecords(int userId) {
-        List<RunningRecord> records = new ArrayList<>();
+    /**
+     * 读取一次跑步的轨迹（二进制格式，见 {@link TrackCodec}），没有轨迹时返回 null。
+     * 列表和统计查询不读取轨迹，只有绘制或上传时调用
+     */
+    public byte[] loadTrack(int runId) {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_RUNNING_RECORDS, null, 
-                RECORD_USER_ID + "=?", new String[]{String.valueOf(userId)}, 
-                null, null, RECORD_DATE + " DESC");
-        
-        while (cursor.moveToNext()) {
-            records.add(cursorToRunningRecord(cursor));
+        Cursor cursor = db.query(TABLE_RUN_TRACKS, new String[]{RECORD_TRACK},
+                TRACK_RUN_ID + "=?", new String[]{String.valueOf(runId)}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        } finally {
+            cursor.close();
         }
-        cursor.close();
-        return records;
     }
 
-    public List<RunningRecord> getAllRunningRecords() {
-        // 获取所有记录（不按用户过滤，用于调试）
-        List<RunningRecord> records = new ArrayList<>();
+    private void insertSplits(SQLiteDatabase db, long runId, List<SplitTracker.Split> splits) {
+        SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_RUN_SPLITS + " (" +
+                SPLIT_RUN_ID + ", " + SPLIT_LENGTH + ", " + SPLIT_INDEX + ", " + SPLIT_DISTANCE + ", " +
+                SPLIT_DURATION + ", " + SPLIT_PACE + ", " + SPLIT_STEPS + ", " + SPLIT_CADENCE +
+                ") VALUES (?,?,?,?,?,?,?,?)");
+        try {
+            for (SplitTracker.Split split : splits) {
+                insert.clearBindings();
+                insert.bindLong(1, runId);
+                insert.bindDouble(2, split.length);
+                insert.bindLong(3, split.index);
+                insert.bindDouble(4, split.distance);
+                insert.bindLong(5, split.durationMs);
+                insert.bindDouble(6, split.getPace());
+                insert.bindLong(7, split.steps);
+                insert.bindDouble(8, split.getCadence());
+                insert.executeInsert();
+            }
+        } finally {
+            insert.close();
+        }
+    }
+
+    /**
+     * 查询一次跑步的分段，按分段长度、序号排列（走 run_id 索引，不读取轨迹）
+     */
+    public List<SplitTracker.Split> getSplits(int runId) {
+        List<SplitTracker.Split> splits = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_RUNNING_RECORDS, null, 
-                null, null, 
-                null, null, RECORD_DATE + " DESC");
-        
-        while (cursor.moveToNext()) {
-            records.add(cursorToRunningRecord(cursor));
+        Cursor cursor = db.query(TABLE_RUN_SPLITS,
+                new String[]{SPLIT_LENGTH, SPLIT_INDEX, SPLIT_DISTANCE, SPLIT_DURATION, SPLIT_STEPS},
+                SPLIT_RUN_ID + "=?", new String[]{String.valueOf(runId)},
+                null, null, SPLIT_LENGTH + ", " + SPLIT_INDEX);
+        try {
+            while (cursor.moveToNext()) {
+                splits.add(new SplitTracker.Split(cursor.getDouble(0), cursor.getInt(1),
+                        cursor.getDouble(2), cursor.getLong(3), cursor.getInt(4)));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
-        return records;
+        return splits;
+    }
+
+    /**
+     * 获取用户的跑步记录（汇总字段，不含轨迹）
+     */
+    public List<RunningRecord> getRunningRecords(int userId) {
+        return queryRecords(RecordProjection.SUMMARY,
+                RECORD_USER_ID + "=?", new String[]{String.valueOf(userId)}, RECORD_DATE + " DESC");
+    }
+
+    /**
+     * 获取所有记录（不按用户过滤，汇总字段，不含轨迹）
+     */
+    public List<RunningRecord> getAllRunningRecords() {
+        return queryRecords(RecordProjection.SUMMARY, null, null, RECORD_DATE + " DESC");
     }
     
     /**
-     * 获取当前登录用户的跑步记录（用户数据隔离）
+     * 获取当前登录用户的跑步记录（用户数据隔离；汇总字段，不含轨迹）
      */
     public List<RunningRecord> getRunningRecordsByUserId(int userId) {
+        return queryRecords(RecordProjection.SUMMARY,
+                RECORD_USER_ID + "=?", new String[]{String.valueOf(userId)}, RECORD_DATE + " DESC");
+    }
+
+    /**
+     * 按开始时间范围 [fromMillis, toMillis) 查询用户的跑步记录，按开始时间倒序（汇总字段，不含轨迹）。
+     * 在 (user_id, start_time) 索引上范围扫描，起止时间未知的记录不包含在内
+     */
+    public List<RunningRecord> getRunningRecordsBetween(int userId, long fromMillis, long toMillis) {
+        return queryRecords(RecordProjection.SUMMARY,
+                RECORD_USER_ID + "=? AND " + RECORD_START_TIME + ">=? AND " + RECORD_START_TIME + "<?",
+                new String[]{String.valueOf(userId), String.valueOf(fromMillis), String.valueOf(toMillis)},
+                RECORD_START_TIME + " DESC");
+    }
+
+    public List<RunningRecord> getRunningRecordsBetween(int userId, TimeRange range) {
+        return getRunningRecordsBetween(userId, range.start, range.end);
+    }
+
+    /**
+     * 本周的跑步记录，见 {@link TimeRange#thisWeek(long)}
+     */
+    public List<RunningRecord> getRunningRecordsThisWeek(int userId) {
+        return getRunningRecordsBetween(userId, TimeRange.thisWeek(System.currentTimeMillis()));
+    }
+
+    /**
+     * 本学期的跑步记录，见 {@link TimeRange#thisSemester(long)}
+     */
+    public List<RunningRecord> getRunningRecordsThisSemester(int userId) {
+        return getRunningRecordsBetween(userId, TimeRange.thisSemester(System.currentTimeMillis()));
+    }
+
+    /**
+     * 历史记录分页（键集分页）：按日期倒序，同一日期按ID正序，与 (user_id, date DESC) 索引的顺序一致。
+     * 下一页从上一页最后一条的 (date, id) 之后开始，直接在索引上定位，不需要 OFFSET 跳过前面的行，
+     * 翻到第几页耗时都相同。
+     *
+     * @param afterDate 上一页最后一条的日期，第一页传 null
+     * @param afterId   上一页最后一条的ID
+     */
+    public List<RunningRecord> getRunningRecordsPage(int userId, String afterDate, int afterId, int limit) {
+        if (afterDate == null) {
+            return queryRecords(RecordProjection.SUMMARY,
+                    RECORD_USER_ID + "=?", new String[]{String.valueOf(userId)},
+                    PAGE_ORDER, String.valueOf(limit));
+        }
+        // 不使用行值比较 (date, id) < (?, ?)：需要 SQLite 3.15（API 26）
+        return queryRecords(RecordProjection.SUMMARY,
+                RECORD_USER_ID + "=? AND " + RECORD_DATE + "<=? AND NOT (" +
+                        RECORD_DATE + "=? AND " + RECORD_ID + "<=?)",
+                new String[]{String.valueOf(userId), afterDate, afterDate, String.valueOf(afterId)},
+                PAGE_ORDER, String.valueOf(limit));
+    }
+
+    private static final String PAGE_ORDER = RECORD_DATE + " DESC, " + RECORD_ID + " ASC";
+
+    /**
+     * 按指定投影查询跑步记录，列索引每个游标只解析一次
+     */
+    public List<RunningRecord> queryRecords(RecordProjection projection, String selection,
+            String[] selectionArgs, String orderBy) {
+        return queryRecords(projection, selection, selectionArgs, orderBy, null);
+    }
+
+    public List<RunningRecord> queryRecords(RecordProjection projection, String selection,
+            String[] selectionArgs, String orderBy, String limit) {
         List<RunningRecord> records = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_RUNNING_RECORDS, null, 
-                RECORD_USER_ID + "=?", new String[]{String.valueOf(userId)}, 
-                null, null, RECORD_DATE + " DESC");
-        
-        while (cursor.moveToNext()) {
-            records.add(cursorToRunningRecord(cursor));
+        String table = projection.withTrack
+                ? TABLE_RUNNING_RECORDS + " LEFT JOIN " + TABLE_RUN_TRACKS +
+                        " ON " + TABLE_RUN_TRACKS + "." + TRACK_RUN_ID + "=" + TABLE_RUNNING_RECORDS + "." + RECORD_ID
+                : TABLE_RUNNING_RECORDS;
+        Cursor cursor = db.query(table, projection.columns,
+                selection, selectionArgs, null, null, orderBy, limit);
+        try {
+            RecordMapper mapper = new RecordMapper(cursor);
+            while (cursor.moveToNext()) {
+                records.add(mapper.map(cursor));
+            }
+        } finally {
+            cursor.close();
         }
-        cursor.close();
         return records;
     }
 
@@ -220,17 +790,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * 获取未同步的跑步记录
      */
     public List<RunningRecord> getUnsyncedRecords() {
-        List<RunningRecord> records = new ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_RUNNING_RECORDS, null,
-                RECORD_IS_SYNCED + "=0", null,
-                null, null, RECORD_DATE + " ASC");
-        
-        while (cursor.moveToNext()) {
-            records.add(cursorToRunningRecord(cursor));
-        }
-        cursor.close();
-        return records;
+        // 上传需要轨迹，使用全部字段
+        return queryRecords(RecordProjection.FULL, RECORD_IS_SYNCED + "=0", null, RECORD_DATE + " ASC");
     }
 
     /**
@@ -241,25 +802,27 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put(RECORD_SERVER_ID, serverId);
         values.put(RECORD_IS_SYNCED, 1);
-        return db.update(TABLE_RUNNING_RECORDS, values,
-                RECORD_ID + "=?", new String[]{String.valueOf(localId)});
+        db.beginTransaction();
+        try {
+            // server_id 唯一：上传完成前已从服务器拉取到同一条记录时，删除拉取的副本，保留本地记录
+            db.delete(TABLE_RUNNING_RECORDS, RECORD_SERVER_ID + "=? AND " + RECORD_ID + "<>?",
+                    new String[]{String.valueOf(serverId), String.valueOf(localId)});
+            int updated = db.update(TABLE_RUNNING_RECORDS, values,
+                    RECORD_ID + "=?", new String[]{String.valueOf(localId)});
+            db.setTransactionSuccessful();
+            return updated;
+        } finally {
+            db.endTransaction();
+        }
     }
 
     /**
      * 按服务器ID查询记录
      */
     public RunningRecord getRecordByServerId(int serverId) {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.query(TABLE_RUNNING_RECORDS, null,
-                RECORD_SERVER_ID + "=?", new String[]{String.valueOf(serverId)},
-                null, null, null);
-        
-        RunningRecord record = null;
-        if (cursor.moveToFirst()) {
-            record = cursorToRunningRecord(cursor);
-        }
-        cursor.close();
-        return record;
+        List<RunningRecord> records = queryRecords(RecordProjection.SYNC,
+                RECORD_SERVER_ID + "=?", new String[]{String.valueOf(serverId)}, null);
+        return records.isEmpty() ? null : records.get(0);
     }
 
     /**
@@ -278,6 +841,49 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return count;
     }
 
+    /**
+     * 从每日汇总表统计日期范围内的跑步次数、距离、时长、步数和卡路里。
+     * 本周、本月、学期等统计只需要按日期范围读取汇总表中对应的几行（主键 (user_id, day) 上的范围查询）
+     *
+     * @param userId  用户ID，小于等于 0 时统计所有用户
+     * @param fromDay 起始日期 yyyy-MM-dd（包含），null 表示不限
+     * @param toDay   结束日期 yyyy-MM-dd（不包含），null 表示不限
+     */
+    public StatsTotals getStatsTotals(int userId, String fromDay, String toDay) {
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        if (userId > 0) {
+            where.append(DAILY_USER_ID).append("=?");
+            args.add(String.valueOf(userId));
+        }
+        if (fromDay != null) {
+            where.append(where.length() > 0 ? " AND " : "").append(DAILY_DAY).append(">=?");
+            args.add(fromDay);
+        }
+        if (toDay != null) {
+            where.append(where.length() > 0 ? " AND " : "").append(DAILY_DAY).append("<?");
+            args.add(toDay);
+        }
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT TOTAL(" + DAILY_RUNS + "), TOTAL(" + DAILY_DISTANCE + "), " +
+                "TOTAL(" + DAILY_DURATION + "), TOTAL(" + DAILY_STEPS + "), TOTAL(" + DAILY_CALORIES + ")" +
+                " FROM " + TABLE_DAILY_STATS + (where.length() > 0 ? " WHERE " + where : ""),
+                args.toArray(new String[0]));
+        StatsTotals totals = new StatsTotals();
+        try {
+            if (cursor.moveToFirst()) {
+                totals.runs = cursor.getInt(0);
+                totals.distance = cursor.getDouble(1);
+                totals.duration = cursor.getLong(2);
+                totals.steps = cursor.getLong(3);
+                totals.calories = cursor.getLong(4);
+            }
+        } finally {
+            cursor.close();
+        }
+        return totals;
+    }
+
     /**
      * 插入或更新记录（用于从服务器同步）
      */
@@ -295,48 +901,254 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(RECORD_STEPS, record.steps);
         values.put(RECORD_CALORIES, record.calories);
         values.put(RECORD_PACE, record.pace);
-        values.put(RECORD_TRACK, record.track);
         values.put(RECORD_SERVER_ID, record.serverId);
         values.put(RECORD_IS_SYNCED, 1);
         values.put(RECORD_SEMESTER_ID, record.semesterId);
         values.put(RECORD_TASK_ID, record.taskId);
         values.put(RECORD_IS_VALID, record.isValid);
+        long end = TimeRange.parseDate(record.date);
+        if (end >= 0) {
+            values.put(RECORD_START_TIME, end - record.duration * 1000L);
+            values.put(RECORD_END_TIME, end);
+            values.put(RECORD_TZ_OFFSET, TimeRange.offsetMinutes(end));
+        }
         
-        if (existing != null) {
-            // 更新现有记录（服务器优先）
-            return db.update(TABLE_RUNNING_RECORDS, values,
-                    RECORD_SERVER_ID + "=?", new String[]{String.valueOf(record.serverId)});
-        } else {
-            // 插入新记录
-            return db.insert(TABLE_RUNNING_RECORDS, null, values);
+        db.beginTransaction();
+        try {
+            long result;
+            long runId;
+            if (existing != null) {
+                // 更新现有记录（服务器优先）
+                result = db.update(TABLE_RUNNING_RECORDS, values,
+                        RECORD_SERVER_ID + "=?", new String[]{String.valueOf(record.serverId)});
+                runId = existing.id;
+            } else {
+                // 插入新记录
+                result = db.insert(TABLE_RUNNING_RECORDS, null, values);
+                runId = result;
+            }
+            if (runId > 0) {
+                saveTrack(db, runId, record.track);
+            }
+            db.setTransactionSuccessful();
+            return result;
+        } finally {
+            db.endTransaction();
         }
     }
     
     /**
-     * 删除本地存在但服务器上已删除的记录
+     * 批量合并服务器记录（同一事务，语句只编译一次）
+     *
+     * 每条记录先 INSERT OR IGNORE（server_id 唯一索引冲突时忽略）；已存在时用 UPDATE 覆盖，
+     * WHERE 中比较各字段，没有变化的行不写入。轨迹同样只在内容不同时替换。
+     * 服务器ID或日期为空的记录跳过。
+     */
+    public MergeResult mergeFromServer(List<RunningRecord> records) {
+        MergeResult result = new MergeResult();
+        if (records == null || records.isEmpty()) return result;
+        SQLiteDatabase db = this.getWritableDatabase();
+        String fields = RECORD_USER_ID + "=?, " + RECORD_DATE + "=?, " + RECORD_DISTANCE + "=?, " +
+                RECORD_DURATION + "=?, " + RECORD_STEPS + "=?, " + RECORD_CALORIES + "=?, " +
+                RECORD_PACE + "=?, " + RECORD_SEMESTER_ID + "=?, " + RECORD_TASK_ID + "=?, " +
+                RECORD_IS_VALID + "=?, " + RECORD_START_TIME + "=?, " + RECORD_END_TIME + "=?, " +
+                RECORD_TZ_OFFSET + "=?";
+        SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO " + TABLE_RUNNING_RECORDS + " (" +
+                RECORD_USER_ID + ", " + RECORD_DATE + ", " + RECORD_DISTANCE + ", " + RECORD_DURATION + ", " +
+                RECORD_STEPS + ", " + RECORD_CALORIES + ", " + RECORD_PACE + ", " + RECORD_SEMESTER_ID + ", " +
+                RECORD_TASK_ID + ", " + RECORD_IS_VALID + ", " + RECORD_START_TIME + ", " + RECORD_END_TIME + ", " +
+                RECORD_TZ_OFFSET + ", " + RECORD_SERVER_ID + ", " + RECORD_IS_SYNCED +
+                ") VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,1)");
+        // 参数 1-13 为新值，14 为服务器ID，15-27 与旧值比较（IS NOT 可以比较 NULL）
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_RUNNING_RECORDS + " SET " + fields +
+                ", " + RECORD_IS_SYNCED + "=1 WHERE " + RECORD_SERVER_ID + "=? AND (" +
+                fields.replace("=?", " IS NOT ?").replace(", ", " OR ") +
+                " OR " + RECORD_IS_SYNCED + " IS NOT 1)");
+        // 参数 1 为轨迹，2 为服务器ID，3 为轨迹（与旧轨迹比较）
+        SQLiteStatement track = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_RUN_TRACKS + " (" +
+                TRACK_RUN_ID + ", " + RECORD_TRACK + ") SELECT r." + RECORD_ID + ", ? FROM " +
+                TABLE_RUNNING_RECORDS + " r LEFT JOIN " + TABLE_RUN_TRACKS + " t ON t." + TRACK_RUN_ID +
+                "=r." + RECORD_ID + " WHERE r." + RECORD_SERVER_ID + "=? AND t." + RECORD_TRACK + " IS NOT ?");
+        SimpleDateFormat format = TimeRange.newDateFormat();
+        db.beginTransaction();
+        try {
+            for (RunningRecord record : records) {
+                if (record.serverId == null || record.date == null) {
+                    result.skipped++;
+                    continue;
+                }
+                long end = TimeRange.parseDate(format, record.date);
+                insert.clearBindings();
+                bindServerFields(insert, 1, record, end);
+                insert.bindLong(SERVER_FIELDS + 1, record.serverId);
+                boolean changed;
+                if (insert.executeInsert() != -1) {
+                    result.inserted++;
+                    changed = true;
+                } else {
+                    update.clearBindings();
+                    bindServerFields(update, 1, record, end);
+                    update.bindLong(SERVER_FIELDS + 1, record.serverId);
+                    bindServerFields(update, SERVER_FIELDS + 2, record, end);
+                    changed = update.executeUpdateDelete() > 0;
+                    if (changed) result.updated++;
+                }
+                if (record.track != null) {
+                    track.clearBindings();
+                    track.bindBlob(1, record.track);
+                    track.bindLong(2, record.serverId);
+                    track.bindBlob(3, record.track);
+                    if (track.executeUpdateDelete() > 0 && !changed) {
+                        result.updated++;
+                        changed = true;
+                    }
+                }
+                if (!changed) result.unchanged++;
+            }
+            db.setTransactionSuccessful();
+            return result;
+        } finally {
+            db.endTransaction();
+            insert.close();
+            update.close();
+            track.close();
+        }
+    }
+
+    /** {@link #bindServerFields} 绑定的参数个数 */
+    private static final int SERVER_FIELDS = 13;
+
+    /**
+     * 从 start 开始依次绑定 user_id, date, distance, duration, steps, calories, pace, semester_id, task_id, is_valid,
+     * start_time, end_time, tz_offset
+     *
+     * @param end 由日期解析出的结束时间，无法解析时为 -1（起止时间绑定为 NULL）
+     */
+    private static void bindServerFields(SQLiteStatement statement, int start, RunningRecord record, long end) {
+        statement.bindLong(start, record.userId);
+        statement.bindString(start + 1, record.date);
+        statement.bindDouble(start + 2, record.distance);
+        statement.bindLong(start + 3, record.duration);
+        statement.bindLong(start + 4, record.steps);
+        statement.bindLong(start + 5, record.calories);
+        statement.bindDouble(start + 6, record.pace);
+        bindNullable(statement, start + 7, record.semesterId);
+        bindNullable(statement, start + 8, record.taskId);
+        bindNullable(statement, start + 9, record.isValid);
+        if (end >= 0) {
+            bindTimes(statement, start + 10, end - record.duration * 1000L, end);
+        } else {
+            statement.bindNull(start + 10);
+            statement.bindNull(start + 11);
+            statement.bindNull(start + 12);
+        }
+    }
+
+    /** 绑定开始时间、结束时间和结束时的时区偏移 */
+    private static void bindTimes(SQLiteStatement statement, int start, long startTime, long endTime) {
+        statement.bindLong(start, startTime);
+        statement.bindLong(start + 1, endTime);
+        statement.bindLong(start + 2, TimeRange.offsetMinutes(endTime));
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, Integer value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindLong(index, value);
+        }
+    }
+
+    /**
+     * 删除本地存在但服务器上已删除的记录（对照用户的全部历史）
      * @param userId 用户ID
      * @param serverIds 服务器上存在的记录ID集合
      */
     public int deleteRecordsNotInServer(int userId, java.util.Set<Integer> serverIds) {
+        return reconcileServerDeletions(userId, serverIds, null);
+    }
+
+    /**
+     * 对照服务器返回的一页记录，删除本地已同步、但服务器上已删除的记录
+     *
+     * 服务器ID先写入临时表，再用 NOT EXISTS 反连接删除，不拼接 NOT IN 字符串，记录数不受 SQL 长度和变量个数限制。
+     * 只处理拉取范围内的记录：服务器分页按日期倒序返回，本页最早日期之前的记录不在本次拉取范围内，不删除；
+     * 与最早日期相同的记录可能在下一页，也不删除。
+     *
+     * @param serverIds 本页中的服务器记录ID，为空时不删除（可能是网络问题）
+     * @param oldestDate 本页最早的日期；已拉取到用户全部历史时传 null，对照全部记录
+     * @return 删除的条数
+     */
+    public int reconcileServerDeletions(int userId, java.util.Collection<Integer> serverIds, String oldestDate) {
+        if (serverIds == null || serverIds.isEmpty()) {
+            return 0;
+        }
         SQLiteDatabase db = this.getWritableDatabase();
-        
-        // 如果服务器返回空列表，不删除本地记录（可能是网络问题）
+        // 临时表只对当前连接可见；事务期间固定使用同一个连接
+        db.beginTransaction();
+        try {
+            db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + TEMP_SERVER_IDS + " (" +
+                    RECORD_SERVER_ID + " INTEGER PRIMARY KEY)");
+            db.execSQL("DELETE FROM " + TEMP_SERVER_IDS);
+            SQLiteStatement stage = db.compileStatement("INSERT OR IGNORE INTO " + TEMP_SERVER_IDS +
+                    " (" + RECORD_SERVER_ID + ") VALUES (?)");
+            try {
+                for (Integer id : serverIds) {
+                    if (id == null) continue;
+                    stage.bindLong(1, id);
+                    stage.executeInsert();
+                }
+            } finally {
+                stage.close();
+            }
+
+            // 删除该用户的、已同步的、但不在服务器列表中的记录（走 user_id, date 索引，反连接查临时表主键）
+            StringBuilder where = new StringBuilder(RECORD_USER_ID + "=? AND " + RECORD_IS_SYNCED + "=1 AND " +
+                    RECORD_SERVER_ID + " IS NOT NULL");
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(userId));
+            if (oldestDate != null) {
+                where.append(" AND " + RECORD_DATE + ">?");
+                args.add(oldestDate);
+            }
+            where.append(" AND NOT EXISTS (SELECT 1 FROM " + TEMP_SERVER_IDS + " s WHERE s." + RECORD_SERVER_ID +
+                    "=" + TABLE_RUNNING_RECORDS + "." + RECORD_SERVER_ID + ")");
+            int deleted = db.delete(TABLE_RUNNING_RECORDS, where.toString(), args.toArray(new String[0]));
+
+            db.execSQL("DELETE FROM " + TEMP_SERVER_IDS);
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 按服务器ID删除用户的记录（增量同步返回的已删除记录）
+     * @return 删除的条数
+     */
+    public int deleteRecordsByServerIds(int userId, java.util.Collection<Integer> serverIds) {
         if (serverIds == null || serverIds.isEmpty()) {
             return 0;
         }
-        
-        // 构建 NOT IN 条件
-        StringBuilder inClause = new StringBuilder();
-        for (Integer id : serverIds) {
-            if (inClause.length() > 0) inClause.append(",");
-            inClause.append(id);
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_RUNNING_RECORDS + " WHERE " +
+                RECORD_SERVER_ID + "=? AND " + RECORD_USER_ID + "=?");
+        db.beginTransaction();
+        try {
+            int deleted = 0;
+            delete.bindLong(2, userId);
+            for (Integer id : serverIds) {
+                if (id == null) continue;
+                delete.bindLong(1, id);
+                deleted += delete.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+            delete.close();
         }
-        
-        // 删除该用户的、已同步的、但不在服务器列表中的记录
-        String whereClause = RECORD_USER_ID + "=? AND " + RECORD_IS_SYNCED + "=1 AND " + 
-                RECORD_SERVER_ID + " IS NOT NULL AND " + RECORD_SERVER_ID + " NOT IN (" + inClause + ")";
-        
-        return db.delete(TABLE_RUNNING_RECORDS, whereClause, new String[]{String.valueOf(userId)});
     }
 
     // ==================== 问卷相关操作 ====================
@@ -378,40 +1190,69 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return user;
     }
 
-    private RunningRecord cursorToRunningRecord(Cursor cursor) {
-        RunningRecord record = new RunningRecord();
-        record.id = cursor.getInt(cursor.getColumnIndexOrThrow(RECORD_ID));
-        record.userId = cursor.getInt(cursor.getColumnIndexOrThrow(RECORD_USER_ID));
-        record.date = cursor.getString(cursor.getColumnIndexOrThrow(RECORD_DATE));
-        record.distance = cursor.getDouble(cursor.getColumnIndexOrThrow(RECORD_DISTANCE));
-        record.duration = cursor.getInt(cursor.getColumnIndexOrThrow(RECORD_DURATION));
-        record.steps = cursor.getInt(cursor.getColumnIndexOrThrow(RECORD_STEPS));
-        record.calories = cursor.getInt(cursor.getColumnIndexOrThrow(RECORD_CALORIES));
-        record.pace = cursor.getDouble(cursor.getColumnIndexOrThrow(RECORD_PACE));
-        record.track = cursor.getString(cursor.getColumnIndexOrThrow(RECORD_TRACK));
-        record.createdAt = cursor.getString(cursor.getColumnIndexOrThrow(RECORD_CREATED_AT));
-        // 同步字段
-        int serverIdIndex = cursor.getColumnIndex(RECORD_SERVER_ID);
-        if (serverIdIndex >= 0 && !cursor.isNull(serverIdIndex)) {
-            record.serverId = cursor.getInt(serverIdIndex);
-        }
-        int syncedIndex = cursor.getColumnIndex(RECORD_IS_SYNCED);
-        if (syncedIndex >= 0) {
-            record.isSynced = cursor.getInt(syncedIndex) == 1;
-        }
-        int semesterIndex = cursor.getColumnIndex(RECORD_SEMESTER_ID);
-        if (semesterIndex >= 0 && !cursor.isNull(semesterIndex)) {
-            record.semesterId = cursor.getInt(semesterIndex);
-        }
-        int taskIndex = cursor.getColumnIndex(RECORD_TASK_ID);
-        if (taskIndex >= 0 && !cursor.isNull(taskIndex)) {
-            record.taskId = cursor.getInt(taskIndex);
+    /**
+     * 跑步记录映射：构造时按游标的列解析一次索引，之后逐行按位置读取。
+     * 投影中不存在的列索引为 -1，对应字段保持默认值。
+     */
+    private static final class RecordMapper {
+        private final int id, userId, date, distance, duration, steps, calories, pace, createdAt;
+        private final int serverId, isSynced, semesterId, taskId, isValid, track;
+        private final int startTime, endTime, tzOffset;
+
+        RecordMapper(Cursor cursor) {
+            id = cursor.getColumnIndex(RECORD_ID);
+            userId = cursor.getColumnIndex(RECORD_USER_ID);
+            date = cursor.getColumnIndex(RECORD_DATE);
+            distance = cursor.getColumnIndex(RECORD_DISTANCE);
+            duration = cursor.getColumnIndex(RECORD_DURATION);
+            steps = cursor.getColumnIndex(RECORD_STEPS);
+            calories = cursor.getColumnIndex(RECORD_CALORIES);
+            pace = cursor.getColumnIndex(RECORD_PACE);
+            createdAt = cursor.getColumnIndex(RECORD_CREATED_AT);
+            serverId = cursor.getColumnIndex(RECORD_SERVER_ID);
+            isSynced = cursor.getColumnIndex(RECORD_IS_SYNCED);
+            semesterId = cursor.getColumnIndex(RECORD_SEMESTER_ID);
+            taskId = cursor.getColumnIndex(RECORD_TASK_ID);
+            isValid = cursor.getColumnIndex(RECORD_IS_VALID);
+            track = cursor.getColumnIndex(RECORD_TRACK);
+            startTime = cursor.getColumnIndex(RECORD_START_TIME);
+            endTime = cursor.getColumnIndex(RECORD_END_TIME);
+            tzOffset = cursor.getColumnIndex(RECORD_TZ_OFFSET);
         }
-        int validIndex = cursor.getColumnIndex(RECORD_IS_VALID);
-        if (validIndex >= 0 && !cursor.isNull(validIndex)) {
-            record.isValid = cursor.getInt(validIndex);
+
+        RunningRecord map(Cursor cursor) {
+            RunningRecord record = new RunningRecord();
+            if (id >= 0) record.id = cursor.getInt(id);
+            if (userId >= 0) record.userId = cursor.getInt(userId);
+            if (date >= 0) record.date = cursor.getString(date);
+            if (distance >= 0) record.distance = cursor.getDouble(distance);
+            if (duration >= 0) record.duration = cursor.getInt(duration);
+            if (steps >= 0) record.steps = cursor.getInt(steps);
+            if (calories >= 0) record.calories = cursor.getInt(calories);
+            if (pace >= 0) record.pace = cursor.getDouble(pace);
+            if (createdAt >= 0) record.createdAt = cursor.getString(createdAt);
+            if (track >= 0) record.track = cursor.getBlob(track);
+            // 同步字段
+            if (serverId >= 0 && !cursor.isNull(serverId)) {
+                record.serverId = cursor.getInt(serverId);
+            }
+            if (isSynced >= 0) {
+                record.isSynced = cursor.getInt(isSynced) == 1;
+            }
+            if (semesterId >= 0 && !cursor.isNull(semesterId)) {
+                record.semesterId = cursor.getInt(semesterId);
+            }
+            if (taskId >= 0 && !cursor.isNull(taskId)) {
+                record.taskId = cursor.getInt(taskId);
+            }
+            if (isValid >= 0 && !cursor.isNull(isValid)) {
+                record.isValid = cursor.getInt(isValid);
+            }
+            if (startTime >= 0) record.startTime = cursor.getLong(startTime);
+            if (endTime >= 0) record.endTime = cursor.getLong(endTime);
+            if (tzOffset >= 0) record.tzOffset = cursor.getInt(tzOffset);
+            return record;
         }
-        return record;
     }
 
     private SurveyResult cursorToSurveyResult(Cursor cursor) {
@@ -445,7 +1286,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         public int steps;
         public int calories;
         public double pace;
-        public String track;
+        /**
+         * 二进制轨迹，见 {@link TrackCodec}；上传时使用 {@link #getTrackForUpload()}。
+         * 只有 {@link RecordProjection#FULL} 查询会读取，其他查询为 null，需要时用 {@link DatabaseHelper#loadTrack(int)} 单独读取
+         */
+        public byte[] track;
         public String createdAt;
         // 同步相关字段
         public Integer serverId;
@@ -453,6 +1298,47 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         public Integer semesterId;
         public Integer taskId;
         public Integer isValid;
+        /** 起止时间（epoch 毫秒），未知时为 0 */
+        public long startTime;
+        public long endTime;
+        /** 结束时本地时区相对 UTC 的偏移（分钟） */
+        public int tzOffset;
+
+        /**
+         * 上传用的旧版 "lat,lng;" 文本，服务器支持二进制格式之前不上传二进制
+         */
+        public String getTrackForUpload() {
+            return TrackCodec.toLegacyText(track);
+        }
+    }
+
+    /**
+     * {@link #mergeFromServer(List)} 的结果
+     */
+    public static class MergeResult {
+        public int inserted;
+        public int updated;
+        public int unchanged;
+        public int skipped;
+
+        @Override
+        public String toString() {
+            return "新增" + inserted + "条, 更新" + updated + "条, 未变化" + unchanged + "条"
+                    + (skipped > 0 ? ", 跳过" + skipped + "条" : "");
+        }
+    }
+
+    /**
+     * {@link #getStatsTotals(int, String, String)} 的结果
+     */
+    public static class StatsTotals {
+        public int runs;
+        /** 米 */
+        public double distance;
+        /** 秒 */
+        public long duration;
+        public long steps;
+        public long calories;
     }
 
     public static class SurveyResult {
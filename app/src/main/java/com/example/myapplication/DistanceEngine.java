@@ -0,0 +1,161 @@
+package com.example.myapplication;
+
+/**
+ * 局部平面距离计算
+ *
+ * 以跑步的第一个点为原点，把经纬度投影到局部东-北平面（米）后按平面距离计算，
+ * 取代对每个定位点调用 {@code Location.distanceBetween}（迭代求解的 Vincenty 公式，且每次要分配 float[1]）。
+ *
+ * 投影使用 WGS84 椭球的子午圈和卯酉圈曲率半径；两个方向每度长度随纬度的变化
+ * 用原点附近的二次多项式拟合，按两点平均纬度取值，计算时不需要三角函数。
+ * 误差：两点都在原点 10 公里范围内、纬度不超过 70° 时，与 Vincenty 的相对误差小于 1e-6（每公里不到 1 毫米），
+ * 由 DistanceEngineTest 验证。校园跑步的范围远小于这个尺度。
+ */
+public class DistanceEngine {
+
+    private static final double WGS84_A = 6378137.0;
+    private static final double WGS84_E2 = 6.69437999014e-3;
+    /** 二次拟合的采样间隔（度），约 11 公里 */
+    private static final double FIT_STEP_DEGREES = 0.1;
+
+    private final double originLat, originLng;
+    /** 每度长度 ≈ c0 + c1·δ + c2·δ²，δ 为相对原点的纬差（度） */
+    private final double lat0, lat1, lat2;
+    private final double lng0, lng1, lng2;
+
+    public DistanceEngine(double originLat, double originLng) {
+        this.originLat = originLat;
+        this.originLng = originLng;
+        double h = FIT_STEP_DEGREES;
+        double latMinus = metersPerDegreeLat(originLat - h);
+        double latPlus = metersPerDegreeLat(originLat + h);
+        this.lat0 = metersPerDegreeLat(originLat);
+        this.lat1 = (latPlus - latMinus) / (2 * h);
+        this.lat2 = (latPlus - 2 * lat0 + latMinus) / (2 * h * h);
+        double lngMinus = metersPerDegreeLng(originLat - h);
+        double lngPlus = metersPerDegreeLng(originLat + h);
+        this.lng0 = metersPerDegreeLng(originLat);
+        this.lng1 = (lngPlus - lngMinus) / (2 * h);
+        this.lng2 = (lngPlus - 2 * lng0 + lngMinus) / (2 * h * h);
+    }
+
+    /**
+     * 纬度方向每度的长度（米），即子午圈曲率半径 M 对应的弧长
+     */
+    public static double metersPerDegreeLat(double latitude) {
+        double s = Math.sin(Math.toRadians(latitude));
+        double w = 1 - WGS84_E2 * s * s;
+        return Math.toRadians(WGS84_A * (1 - WGS84_E2) / (w * Math.sqrt(w)));
+    }
+
+    /**
+     * 经度方向每度的长度（米），即 N·cosφ 对应的弧长
+     */
+    public static double metersPerDegreeLng(double latitude) {
+        double rad = Math.toRadians(latitude);
+        double s = Math.sin(rad);
+        return Math.toRadians(WGS84_A / Math.sqrt(1 - WGS84_E2 * s * s) * Math.cos(rad));
+    }
+
+    public double getOriginLatitude() {
+        return originLat;
+    }
+
+    public double getOriginLongitude() {
+        return originLng;
+    }
+
+    /** 东向坐标（米） */
+    public double toX(double latitude, double longitude) {
+        return (longitude - originLng) * lngScale(latitude - originLat);
+    }
+
+    /** 北向坐标（米），纬度方向的比例变化很小，取原点处的值 */
+    public double toY(double latitude) {
+        return (latitude - originLat) * lat0;
+    }
+
+    /** 由局部坐标反算纬度 */
+    public double toLatitude(double y) {
+        return originLat + y / lat0;
+    }
+
+    /** 由局部坐标反算经度 */
+    public double toLongitude(double x, double latitude) {
+        return originLng + x / lngScale(latitude - originLat);
+    }
+
+    private double latScale(double latOffset) {
+        return lat0 + latOffset * (lat1 + lat2 * latOffset);
+    }
+
+    private double lngScale(double latOffset) {
+        return lng0 + latOffset * (lng1 + lng2 * latOffset);
+    }
+
+    public double distance(double latA, double lngA, double latB, double lngB) {
+        double midOffset = (latA + latB) * 0.5 - originLat;
+        double dx = (lngB - lngA) * lngScale(midOffset);
+        double dy = (latB - latA) * latScale(midOffset);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public double distanceE6(int latE6a, int lngE6a, int latE6b, int lngE6b) {
+        return distance(latE6a / 1e6, lngE6a / 1e6, latE6b / 1e6, lngE6b / 1e6);
+    }
+
+    /**
+     * 轨迹 [from, to) 区间内相邻点距离之和
+     */
+    public double pathLength(TrackView track, int from, int to) {
+        if (to - from < 2) return 0;
+        double total = 0;
+        int prevLat = track.getLatE6(from);
+        int prevLng = track.getLngE6(from);
+        for (int i = from + 1; i < to; i++) {
+            int lat = track.getLatE6(i);
+            int lng = track.getLngE6(i);
+            total += distanceE6(prevLat, prevLng, lat, lng);
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return total;
+    }
+
+    /**
+     * 一次遍历计算累计距离：out[i] 为从第 0 个点到第 i 个点的轨迹长度
+     *
+     * @return 总长度
+     */
+    public double cumulativeE6(int[] latE6, int[] lngE6, int count, double[] out) {
+        if (count <= 0) return 0;
+        double total = 0;
+        out[0] = 0;
+        for (int i = 1; i < count; i++) {
+            total += distanceE6(latE6[i - 1], lngE6[i - 1], latE6[i], lngE6[i]);
+            out[i] = total;
+        }
+        return total;
+    }
+
+    /**
+     * 同 {@link #cumulativeE6}，输入为轨迹视图
+     */
+    public double cumulative(TrackView track, double[] out) {
+        int count = track.size();
+        if (count <= 0) return 0;
+        double total = 0;
+        out[0] = 0;
+        int prevLat = track.getLatE6(0);
+        int prevLng = track.getLngE6(0);
+        for (int i = 1; i < count; i++) {
+            int lat = track.getLatE6(i);
+            int lng = track.getLngE6(i);
+            total += distanceE6(prevLat, prevLng, lat, lng);
+            out[i] = total;
+            prevLat = lat;
+            prevLng = lng;
+        }
+        return total;
+    }
+}
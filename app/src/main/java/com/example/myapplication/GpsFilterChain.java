@@ -0,0 +1,360 @@
+package com.example.myapplication;
+
+/**
+ * GPS 定位点过滤链
+ *
+ * 依次经过：异常点门限 {@link OutlierGate} → 静止检测 {@link StationaryDetector}
+ * → 匀速模型卡尔曼滤波 {@link KalmanFilter}。各级都在以第一个点为原点的
+ * 局部东-北平面（米）中计算，量测噪声取定位精度（accuracy），静止判断参考定位速度（speed）。
+ * 局部平面由 {@link DistanceEngine} 投影。整条链复用同一个 {@link Fix} 对象，处理过程中不分配对象。
+ *
+ * 处理结果通过 {@link #latitude}、{@link #longitude}、{@link #distance} 等字段读取。
+ */
+public class GpsFilterChain {
+
+    /** 接受：位置已更新，{@link #distance} 为与上一输出点的距离 */
+    public static final int ACCEPTED = 0;
+    /** 静止：位置保持不变，不累计距离 */
+    public static final int STATIONARY = 1;
+    /** 丢弃：精度太差或位置跳变 */
+    public static final int REJECTED = 2;
+
+    /** 单点距离上限 = (定位速度 × 比例 + 余量) × 时间间隔 */
+    private static final double SPEED_CAP_RATIO = 1.2;
+    private static final double SPEED_CAP_MARGIN = 0.5;
+
+    /** 在局部平面中传递的定位点，各级可以修改 */
+    public static class Fix {
+        public long time;
+        public double x, y;
+        public float accuracy;
+        public float speed;
+        /** 由静止检测设置 */
+        public boolean stationary;
+        /** 由异常点门限设置：重新定位，滤波器需要重新初始化 */
+        public boolean reset;
+    }
+
+    /** 过滤链中的一级，返回 false 表示丢弃该点 */
+    public interface Stage {
+        boolean apply(Fix fix);
+
+        void reset();
+    }
+
+    private final Stage[] stages;
+    private final KalmanFilter kalman;
+    private final Fix fix = new Fix();
+
+    private DistanceEngine projection;
+    private boolean hasOutput = false;
+    private double outX, outY;
+    private long outTime;
+
+    // 处理结果
+    public double latitude, longitude;
+    public double distance;
+    public double speed;
+
+    public GpsFilterChain() {
+        this(new OutlierGate(), new StationaryDetector(), new KalmanFilter());
+    }
+
+    public GpsFilterChain(OutlierGate gate, StationaryDetector stationary, KalmanFilter kalman) {
+        this.kalman = kalman;
+        this.stages = new Stage[] { gate, stationary, kalman };
+    }
+
+    /**
+     * 处理一个定位点
+     *
+     * @param accuracy 定位精度（米）
+     * @param speed    定位给出的速度（米/秒），没有时传 0
+     * @return {@link #ACCEPTED}、{@link #STATIONARY} 或 {@link #REJECTED}
+     */
+    public int process(double lat, double lng, float accuracy, float speed, long time) {
+        if (projection == null) {
+            projection = new DistanceEngine(lat, lng);
+        }
+        fix.time = time;
+        fix.x = projection.toX(lat, lng);
+        fix.y = projection.toY(lat);
+        fix.accuracy = accuracy;
+        fix.speed = speed;
+        fix.stationary = false;
+        fix.reset = false;
+        for (Stage stage : stages) {
+            if (!stage.apply(fix)) {
+                return REJECTED;
+            }
+        }
+
+        this.speed = kalman.getSpeed();
+        if (fix.stationary && hasOutput) {
+            distance = 0;
+            return STATIONARY;
+        }
+        double x = kalman.getX();
+        double y = kalman.getY();
+        if (hasOutput && !fix.reset) {
+            double dx = x - outX;
+            double dy = y - outY;
+            distance = Math.sqrt(dx * dx + dy * dy);
+            if (fix.speed > 0 && fix.time > outTime) {
+                // 定位速度来自多普勒测量，比位置差分准确；残余的位置噪声只会让距离偏大，按速度封顶
+                double cap = (fix.speed * SPEED_CAP_RATIO + SPEED_CAP_MARGIN) * (fix.time - outTime) / 1000.0;
+                if (distance > cap) distance = cap;
+            }
+        } else {
+            // 第一个点或重新定位后的点不计距离
+            distance = 0;
+        }
+        hasOutput = true;
+        outX = x;
+        outY = y;
+        outTime = fix.time;
+        latitude = projection.toLatitude(y);
+        longitude = projection.toLongitude(x, latitude);
+        return ACCEPTED;
+    }
+
+    /**
+     * 以已知位置作为起点（从跑步日志恢复时使用），下一个点与它之间的距离会被累计
+     */
+    public void seed(double lat, double lng, long time) {
+        reset();
+        projection = new DistanceEngine(lat, lng);
+        fix.time = time;
+        fix.x = 0;
+        fix.y = 0;
+        fix.accuracy = OutlierGate.DEFAULT_MAX_ACCURACY;
+        fix.speed = 0;
+        fix.stationary = false;
+        fix.reset = false;
+        for (Stage stage : stages) {
+            stage.apply(fix);
+        }
+        hasOutput = true;
+        outX = 0;
+        outY = 0;
+        outTime = time;
+        latitude = lat;
+        longitude = lng;
+    }
+
+    public void reset() {
+        for (Stage stage : stages) {
+            stage.reset();
+        }
+        projection = null;
+        hasOutput = false;
+        distance = 0;
+        speed = 0;
+    }
+
+    /**
+     * 异常点门限：丢弃精度太差的点，以及相对上一个接受点隐含速度超过上限的跳变点。
+     * 连续丢弃多次后认为确实发生了位移（如出隧道），接受该点并要求滤波器重新初始化。
+     */
+    public static class OutlierGate implements Stage {
+
+        public static final float DEFAULT_MAX_ACCURACY = 30f;
+        /** 约 43km/h，超过即不是跑步 */
+        public static final double DEFAULT_MAX_SPEED = 12.0;
+        private static final int MAX_CONSECUTIVE_REJECTS = 5;
+
+        private final float maxAccuracy;
+        private final double maxSpeed;
+
+        private boolean hasLast = false;
+        private double lastX, lastY;
+        private long lastTime;
+        private int rejects = 0;
+
+        public OutlierGate() {
+            this(DEFAULT_MAX_ACCURACY, DEFAULT_MAX_SPEED);
+        }
+
+        public OutlierGate(float maxAccuracy, double maxSpeed) {
+            this.maxAccuracy = maxAccuracy;
+            this.maxSpeed = maxSpeed;
+        }
+
+        @Override
+        public boolean apply(Fix fix) {
+            if (fix.accuracy <= 0 || fix.accuracy > maxAccuracy) {
+                return false;
+            }
+            if (hasLast) {
+                long dt = fix.time - lastTime;
+                if (dt <= 0) return false;
+                double dx = fix.x - lastX;
+                double dy = fix.y - lastY;
+                // 扣除定位误差后的位移
+                double moved = Math.max(0, Math.sqrt(dx * dx + dy * dy) - fix.accuracy);
+                if (moved * 1000.0 / dt > maxSpeed) {
+                    if (++rejects < MAX_CONSECUTIVE_REJECTS) {
+                        return false;
+                    }
+                    fix.reset = true;
+                }
+            }
+            rejects = 0;
+            hasLast = true;
+            lastX = fix.x;
+            lastY = fix.y;
+            lastTime = fix.time;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            hasLast = false;
+            rejects = 0;
+        }
+    }
+
+    /**
+     * 静止检测：定位速度低于阈值且相对最后一个移动点的位移在定位误差之内时标记为静止，
+     * 避免原地等待时 GPS 漂移累计出距离。
+     */
+    public static class StationaryDetector implements Stage {
+
+        public static final float DEFAULT_MIN_SPEED = 0.5f;
+        private static final double MIN_DISPLACEMENT = 3.0;
+
+        private final float minSpeed;
+
+        private boolean hasAnchor = false;
+        private double anchorX, anchorY;
+
+        public StationaryDetector() {
+            this(DEFAULT_MIN_SPEED);
+        }
+
+        public StationaryDetector(float minSpeed) {
+            this.minSpeed = minSpeed;
+        }
+
+        @Override
+        public boolean apply(Fix fix) {
+            if (hasAnchor && !fix.reset && fix.speed < minSpeed) {
+                double dx = fix.x - anchorX;
+                double dy = fix.y - anchorY;
+                double radius = Math.max(MIN_DISPLACEMENT, fix.accuracy * 0.5);
+                if (dx * dx + dy * dy < radius * radius) {
+                    fix.stationary = true;
+                    return true;
+                }
+            }
+            hasAnchor = true;
+            anchorX = fix.x;
+            anchorY = fix.y;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            hasAnchor = false;
+        }
+    }
+
+    /**
+     * 匀速模型卡尔曼滤波，状态为东、北两个方向的位置和速度。
+     * 两个方向的过程噪声和量测噪声相同，共用一组 2x2 协方差。
+     * 量测方差取 accuracy²；静止点按零速度处理。
+     */
+    public static class KalmanFilter implements Stage {
+
+        /** 跑步时的加速度噪声（m/s²） */
+        public static final double DEFAULT_ACCELERATION_NOISE = 1.0;
+        /** 初始速度方差：(5 m/s)² */
+        private static final double INITIAL_VELOCITY_VARIANCE = 25.0;
+
+        private final double q;
+
+        private boolean initialized = false;
+        private long lastTime;
+        private double x, y, vx, vy;
+        // 协方差 [[p00, p01], [p01, p11]]
+        private double p00, p01, p11;
+
+        public KalmanFilter() {
+            this(DEFAULT_ACCELERATION_NOISE);
+        }
+
+        public KalmanFilter(double accelerationNoise) {
+            this.q = accelerationNoise * accelerationNoise;
+        }
+
+        @Override
+        public boolean apply(Fix fix) {
+            double r = (double) fix.accuracy * fix.accuracy;
+            if (!initialized || fix.reset) {
+                initialized = true;
+                lastTime = fix.time;
+                x = fix.x;
+                y = fix.y;
+                vx = 0;
+                vy = 0;
+                p00 = r;
+                p01 = 0;
+                p11 = INITIAL_VELOCITY_VARIANCE;
+                return true;
+            }
+
+            // 预测
+            double dt = (fix.time - lastTime) / 1000.0;
+            lastTime = fix.time;
+            if (dt > 0) {
+                x += vx * dt;
+                y += vy * dt;
+                double dt2 = dt * dt;
+                p00 += dt * (2 * p01 + dt * p11) + q * dt2 * dt2 / 4;
+                p01 += dt * p11 + q * dt2 * dt / 2;
+                p11 += q * dt2;
+            }
+
+            if (fix.stationary) {
+                // 零速度修正：位置保持，速度归零
+                vx = 0;
+                vy = 0;
+                p01 = 0;
+                p11 = Math.min(p11, r / 100);
+                return true;
+            }
+
+            // 更新
+            double s = p00 + r;
+            double k0 = p00 / s;
+            double k1 = p01 / s;
+            double ex = fix.x - x;
+            double ey = fix.y - y;
+            x += k0 * ex;
+            y += k0 * ey;
+            vx += k1 * ex;
+            vy += k1 * ey;
+            p11 -= k1 * p01;
+            p01 -= k0 * p01;
+            p00 -= k0 * p00;
+            return true;
+        }
+
+        @Override
+        public void reset() {
+            initialized = false;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getY() {
+            return y;
+        }
+
+        public double getSpeed() {
+            return Math.sqrt(vx * vx + vy * vy);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.myapplication;
 
+import android.content.Context;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.LayoutInflater;
@@ -14,31 +15,42 @@ import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.example.myapplication.api.ApiCallback;
-import com.example.myapplication.api.AuthManager;
-import com.example.myapplication.api.RunningRecordApi;
-import com.example.myapplication.api.RunningRecordDto;
-import com.example.myapplication.api.UserInfo;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class HistoryFragment extends Fragment {
 
     private static final String TAG = "HistoryFragment";
     private static final int DEFAULT_SHOW_COUNT = 3;  // 默认显示3条
+    private static final int PAGE_SIZE = 20;  // 之后每页20条
+    private static final int PREFETCH_DISTANCE = 5;  // 距列表末尾不足5条时加载下一页
     
     private RecyclerView rvHistory;
     private TextView tvEmpty;
     private TextView btnLoadMore;
     private ProgressBar progressBar;
-    private DatabaseHelper dbHelper;
-    private AuthManager authManager;
-    private List<DatabaseHelper.RunningRecord> allRecords = new ArrayList<>();
-    private List<DatabaseHelper.RunningRecord> displayRecords = new ArrayList<>();
-    private boolean isExpanded = false;
+    private RunRepository repository;
+    private HistorySyncManager syncManager;
+    private final RunRepository.TaskGroup tasks = new RunRepository.TaskGroup();
+    // 已加载的记录（按页追加），只保存汇总字段
+    private final List<DatabaseHelper.RunningRecord> displayRecords = new ArrayList<>();
+    private boolean hasMore = false;
+    // 点击过"加载更多"后，滚动到末尾附近自动加载下一页
+    private boolean autoLoad = false;
+    private int currentUserId = -1;
+    // 正在查询下一页；重新加载第一页时递增 loadGeneration，丢弃旧查询的结果
+    private boolean loading = false;
+    private int loadGeneration = 0;
     private HistoryAdapter adapter;
+    // 已展开分段的记录ID，以及已查询过的分段文本
+    private final Set<Integer> expandedIds = new HashSet<>();
+    private final Map<Integer, String> splitTexts = new HashMap<>();
 
     @Nullable
     @Override
@@ -46,19 +58,35 @@ public class HistoryFragment extends Fragment {
         View view = null;
         try {
             view = inflater.inflate(R.layout.fragment_history, container, false);
-            dbHelper = DatabaseHelper.getInstance(requireContext());
-            authManager = AuthManager.getInstance(requireContext());
+            repository = RunRepository.getInstance(requireContext());
+            syncManager = HistorySyncManager.getInstance(requireContext());
             rvHistory = view.findViewById(R.id.rv_history);
             tvEmpty = view.findViewById(R.id.tv_empty);
             btnLoadMore = view.findViewById(R.id.btn_load_more);
             progressBar = view.findViewById(R.id.progress_bar);
             
             if (rvHistory != null) {
-                rvHistory.setLayoutManager(new LinearLayoutManager(requireContext()));
+                LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+                rvHistory.setLayoutManager(layoutManager);
+                adapter = new HistoryAdapter();
+                rvHistory.setAdapter(adapter);
+                rvHistory.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                    @Override
+                    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                        if (autoLoad && hasMore && dy > 0
+                                && layoutManager.findLastVisibleItemPosition() >= displayRecords.size() - PREFETCH_DISTANCE) {
+                            // 滚动回调中不能直接修改适配器
+                            recyclerView.post(() -> loadNextPage());
+                        }
+                    }
+                });
             }
             
             if (btnLoadMore != null) {
-                btnLoadMore.setOnClickListener(v -> toggleExpand());
+                btnLoadMore.setOnClickListener(v -> {
+                    autoLoad = true;
+                    loadNextPage();
+                });
             }
         } catch (Exception e) {
             Log.e(TAG, "onCreateView error", e);
@@ -71,6 +99,15 @@ public class HistoryFragment extends Fragment {
         super.onResume();
         loadData();
     }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        tasks.cancelAll();
+        loading = false;
+        // 可能有未完成的分段查询占位
+        splitTexts.clear();
+    }
     
     private void loadData() {
         // 先显示本地数据
@@ -79,177 +116,171 @@ public class HistoryFragment extends Fragment {
         fetchFromServer();
     }
     
+    /**
+     * 重新加载第一页；已经加载了更多页时保持已加载的条数（如从服务器同步后刷新）
+     */
     private void loadLocalData() {
+        if (repository == null || rvHistory == null) return;
+        // 用户数据隔离：只加载当前登录用户的记录
+        currentUserId = getCurrentUserId();
+        int count = Math.max(DEFAULT_SHOW_COUNT, displayRecords.size());
+        int generation = ++loadGeneration;
+        if (currentUserId <= 0) {
+            loading = false;
+            showFirstPage(new ArrayList<>(), count);
+            return;
+        }
+        loading = true;
+        tasks.add(repository.getRunningRecordsPage(currentUserId, null, 0, count + 1, page -> {
+            if (generation != loadGeneration) return;
+            loading = false;
+            showFirstPage(page, count);
+        }));
+    }
+
+    private void showFirstPage(List<DatabaseHelper.RunningRecord> page, int limit) {
         try {
-            if (dbHelper != null && rvHistory != null) {
-                // 用户数据隔离：只加载当前登录用户的记录
-                int currentUserId = getCurrentUserId();
-                if (currentUserId > 0) {
-                    allRecords = dbHelper.getRunningRecordsByUserId(currentUserId);
-                } else {
-                    allRecords = new ArrayList<>();
-                }
-                if (allRecords == null) allRecords = new ArrayList<>();
-                
-                Log.d(TAG, "从SQLite加载用户" + currentUserId + "的记录数: " + allRecords.size());
-                
-                // 显示空状态提示
-                if (tvEmpty != null) {
-                    tvEmpty.setVisibility(allRecords.isEmpty() ? View.VISIBLE : View.GONE);
-                }
-                rvHistory.setVisibility(allRecords.isEmpty() ? View.GONE : View.VISIBLE);
-                
-                // 更新显示列表
-                updateDisplayRecords();
-                
-                // 显示/隐藏加载更多按钮
-                updateLoadMoreButton();
-                
-                adapter = new HistoryAdapter();
-                rvHistory.setAdapter(adapter);
+            displayRecords.clear();
+            splitTexts.clear();
+            appendPage(page, limit);
+            Log.d(TAG, "从SQLite加载用户" + currentUserId + "的记录: " + displayRecords.size() + "条");
+            
+            // 显示空状态提示
+            if (tvEmpty != null) {
+                tvEmpty.setVisibility(displayRecords.isEmpty() ? View.VISIBLE : View.GONE);
             }
+            rvHistory.setVisibility(displayRecords.isEmpty() ? View.GONE : View.VISIBLE);
+            
+            // 显示/隐藏加载更多按钮
+            updateLoadMoreButton();
+            adapter.notifyDataSetChanged();
         } catch (Exception e) {
             Log.e(TAG, "loadLocalData error", e);
         }
     }
+
+    /**
+     * 把查询到的一页追加到列表。查询时多查一条，用来判断是否还有下一页
+     */
+    private int appendPage(List<DatabaseHelper.RunningRecord> page, int limit) {
+        hasMore = page.size() > limit;
+        if (hasMore) {
+            page = page.subList(0, limit);
+        }
+        displayRecords.addAll(page);
+        return page.size();
+    }
+
+    /**
+     * 从已加载的最后一条之后查询下一页
+     */
+    private void loadNextPage() {
+        if (!hasMore || loading || repository == null || currentUserId <= 0) return;
+        DatabaseHelper.RunningRecord last = displayRecords.get(displayRecords.size() - 1);
+        int generation = loadGeneration;
+        loading = true;
+        tasks.add(repository.getRunningRecordsPage(currentUserId, last.date, last.id, PAGE_SIZE + 1, page -> {
+            if (generation != loadGeneration) return;
+            loading = false;
+            int start = displayRecords.size();
+            int added = appendPage(page, PAGE_SIZE);
+            Log.d(TAG, "加载下一页: " + added + "条, 共" + displayRecords.size() + "条");
+            if (adapter != null && added > 0) {
+                adapter.notifyItemRangeInserted(start, added);
+            }
+            updateLoadMoreButton();
+        }));
+    }
     
     /**
      * 获取当前登录用户ID
      */
     private int getCurrentUserId() {
-        if (authManager != null && authManager.isLoggedIn()) {
-            UserInfo user = authManager.getCurrentUser();
-            if (user != null && user.getId() != null) {
-                return user.getId();
-            }
-        }
-        return -1; // 未登录返回-1
+        Context context = getContext();
+        return context != null ? CurrentUser.getId(context) : -1; // 未登录返回-1
     }
     
+    /**
+     * 与服务器同步（增量；距上次同步太近时跳过），有记录变化时重新加载本地数据
+     */
     private void fetchFromServer() {
-        if (!authManager.isLoggedIn()) {
+        int userId = getCurrentUserId();
+        if (userId <= 0 || syncManager == null) {
             return;
         }
         
-        UserInfo user = authManager.getCurrentUser();
-        Integer userId = user != null ? user.getId() : null;
-        
         if (progressBar != null) {
             progressBar.setVisibility(View.VISIBLE);
         }
         
-        // 获取足够多的记录以确保同步删除正确（增加到200条）
-        RunningRecordApi.getInstance().getRecords(userId, 1, 200, 
-            new ApiCallback<RunningRecordApi.PageResponse<RunningRecordDto>>() {
-                @Override
-                public void onSuccess(RunningRecordApi.PageResponse<RunningRecordDto> data) {
-                    if (progressBar != null) {
-                        progressBar.setVisibility(View.GONE);
-                    }
-                    
-                    if (data != null && data.getRecords() != null) {
-                        // 收集服务器上的所有记录ID
-                        java.util.Set<Integer> serverIds = new java.util.HashSet<>();
-                        for (RunningRecordDto dto : data.getRecords()) {
-                            if (dto.getId() != null) {
-                                serverIds.add(dto.getId());
-                            }
-                            // 更新本地缓存
-                            DatabaseHelper.RunningRecord record = dtoToRecord(dto);
-                            dbHelper.insertOrUpdateFromServer(record);
-                        }
-                        
-                        // 删除本地存在但服务器上已删除的记录
-                        if (userId != null && !serverIds.isEmpty()) {
-                            int deleted = dbHelper.deleteRecordsNotInServer(userId, serverIds);
-                            if (deleted > 0) {
-                                Log.d(TAG, "删除了 " + deleted + " 条服务器已删除的本地记录");
-                            }
-                        }
-                        
-                        // 重新加载本地数据
-                        loadLocalData();
-                        Log.d(TAG, "从服务器同步了 " + data.getRecords().size() + " 条记录");
-                    }
-                }
-
-                @Override
-                public void onError(int code, String message) {
-                    if (progressBar != null) {
-                        progressBar.setVisibility(View.GONE);
-                    }
-                    Log.w(TAG, "从服务器获取数据失败: " + message);
-                }
-
-                @Override
-                public void onNetworkError(Exception e) {
-                    if (progressBar != null) {
-                        progressBar.setVisibility(View.GONE);
-                    }
-                    Log.w(TAG, "网络错误，使用本地缓存: " + e.getMessage());
-                }
-            });
-    }
-    
-    private DatabaseHelper.RunningRecord dtoToRecord(RunningRecordDto dto) {
-        DatabaseHelper.RunningRecord record = new DatabaseHelper.RunningRecord();
-        record.serverId = dto.getId();
-        record.userId = dto.getUserId() != null ? dto.getUserId() : 1;
-        record.date = dto.getDate();
-        record.distance = dto.getDistance() != null ? dto.getDistance() : 0;
-        record.duration = dto.getDuration() != null ? dto.getDuration() : 0;
-        record.steps = dto.getSteps() != null ? dto.getSteps() : 0;
-        record.calories = dto.getCalories() != null ? dto.getCalories() : 0;
-        record.pace = dto.getPace() != null ? dto.getPace() : 0;
-        record.track = dto.getTrack();
-        record.isSynced = true;
-        record.semesterId = dto.getSemesterId();
-        record.taskId = dto.getTaskId();
-        record.isValid = dto.getIsValid();
-        return record;
-    }
-    
-    private void updateDisplayRecords() {
-        displayRecords.clear();
-        if (isExpanded || allRecords.size() <= DEFAULT_SHOW_COUNT) {
-            displayRecords.addAll(allRecords);
-        } else {
-            displayRecords.addAll(allRecords.subList(0, DEFAULT_SHOW_COUNT));
-        }
+        syncManager.sync(userId, false, result -> {
+            // 页面已离开
+            if (getView() == null) return;
+            if (progressBar != null) {
+                progressBar.setVisibility(View.GONE);
+            }
+            if (!result.success) {
+                Log.w(TAG, "从服务器同步失败，使用本地缓存: " + result.error);
+            } else if (result.getRowsWritten() > 0) {
+                Log.d(TAG, "从服务器同步: " + result);
+                loadLocalData();
+            }
+        });
     }
     
     private void updateLoadMoreButton() {
         if (btnLoadMore != null) {
-            if (allRecords.size() > DEFAULT_SHOW_COUNT) {
-                btnLoadMore.setVisibility(View.VISIBLE);
-                int hiddenCount = allRecords.size() - DEFAULT_SHOW_COUNT;
-                if (isExpanded) {
-                    btnLoadMore.setText("▲ 收起历史记录");
-                } else {
-                    btnLoadMore.setText("▼ 查看更早记录 (" + hiddenCount + "条)");
+            btnLoadMore.setVisibility(hasMore ? View.VISIBLE : View.GONE);
+            btnLoadMore.setText("▼ 查看更早记录");
+        }
+    }
+
+    /**
+     * 分段文本：按记录ID查询分段表（只在第一次展开时查询），不读取轨迹。
+     * 查询在 I/O 线程上进行，先显示占位文本，查到后刷新该条目
+     */
+    private String getSplitText(int recordId) {
+        String text = splitTexts.get(recordId);
+        if (text == null) {
+            text = "加载中...";
+            splitTexts.put(recordId, text);
+            tasks.add(repository.getSplits(recordId, splits -> {
+                splitTexts.put(recordId, formatSplits(splits));
+                for (int i = 0; i < displayRecords.size(); i++) {
+                    if (displayRecords.get(i).id == recordId) {
+                        adapter.notifyItemChanged(i);
+                        break;
+                    }
                 }
-            } else {
-                btnLoadMore.setVisibility(View.GONE);
-            }
+            }));
         }
+        return text;
     }
-    
-    private void toggleExpand() {
-        isExpanded = !isExpanded;
-        updateDisplayRecords();
-        updateLoadMoreButton();
-        if (adapter != null) {
-            adapter.notifyDataSetChanged();
+
+    static String formatSplits(List<SplitTracker.Split> splits) {
+        if (splits.isEmpty()) {
+            return "暂无分段数据";
         }
-        
-        // 展开时滚动到底部，收起时滚动到顶部
-        if (rvHistory != null) {
-            if (isExpanded) {
-                rvHistory.scrollToPosition(displayRecords.size() - 1);
+        StringBuilder sb = new StringBuilder();
+        for (SplitTracker.Split split : splits) {
+            if (sb.length() > 0) sb.append('\n');
+            boolean km = split.length == SplitTracker.KILOMETER;
+            if (split.isPartial()) {
+                sb.append(km ? String.format(Locale.CHINA, "最后%.2f公里", split.distance / 1000)
+                        : String.format(Locale.CHINA, "最后%.0f米(每段%.0f米)", split.distance, split.length));
+            } else if (km) {
+                sb.append(String.format(Locale.CHINA, "第%d公里", split.index + 1));
             } else {
-                rvHistory.scrollToPosition(0);
+                sb.append(String.format(Locale.CHINA, "第%d段(%.0f米)", split.index + 1, split.length));
             }
+            long seconds = split.durationMs / 1000;
+            double pace = split.getPace();
+            int paceMin = (int) pace;
+            int paceSec = (int) ((pace - paceMin) * 60);
+            sb.append(String.format(Locale.CHINA, "  用时%d:%02d  配速%d:%02d  步频%.0f",
+                    seconds / 60, seconds % 60, paceMin, paceSec, split.getCadence()));
         }
+        return sb.toString();
     }
 
     class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHolder> {
@@ -277,6 +308,22 @@ public class HistoryFragment extends Fragment {
             
             holder.tvSteps.setText(String.valueOf(record.steps));
             holder.tvCalories.setText(String.valueOf(record.calories));
+
+            // 点击卡片展开/收起分段
+            boolean expanded = expandedIds.contains(record.id);
+            holder.tvSplits.setVisibility(expanded ? View.VISIBLE : View.GONE);
+            if (expanded) {
+                holder.tvSplits.setText(getSplitText(record.id));
+            }
+            holder.itemView.setOnClickListener(v -> {
+                if (!expandedIds.remove(record.id)) {
+                    expandedIds.add(record.id);
+                }
+                int pos = holder.getAdapterPosition();
+                if (pos != RecyclerView.NO_POSITION) {
+                    notifyItemChanged(pos);
+                }
+            });
         }
 
         @Override
@@ -285,7 +332,7 @@ public class HistoryFragment extends Fragment {
         }
 
         class ViewHolder extends RecyclerView.ViewHolder {
-            TextView tvDate, tvDistance, tvDuration, tvPace, tvSteps, tvCalories;
+            TextView tvDate, tvDistance, tvDuration, tvPace, tvSteps, tvCalories, tvSplits;
 
             ViewHolder(View itemView) {
                 super(itemView);
@@ -295,6 +342,7 @@ public class HistoryFragment extends Fragment {
                 tvPace = itemView.findViewById(R.id.tv_pace);
                 tvSteps = itemView.findViewById(R.id.tv_steps);
                 tvCalories = itemView.findViewById(R.id.tv_calories);
+                tvSplits = itemView.findViewById(R.id.tv_splits);
             }
         }
     }
@@ -0,0 +1,157 @@
+package com.example.myapplication;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * 历史记录增量同步的 HTTP 客户端
+ *
+ * 请求 GET {baseUrl}/api/records?userId=&page=1&size=，带上次的水位 updatedSince 和 If-None-Match（上次的 ETag）：
+ * <ul>
+ *   <li>304：自上次以来没有变化，不传输记录</li>
+ *   <li>200 且返回 watermark：增量结果，records 为变化的记录，deletedIds 为已删除的服务器ID。
+ *       变化超过 size 时按版本从旧到新只返回前 size 条，watermark 为本页最后一条的版本，客户端以它继续请求</li>
+ *   <li>200 但没有 watermark（服务器不支持增量，忽略了 updatedSince）：records 是最近一页的完整快照</li>
+ * </ul>
+ * 返回体可以直接是上述对象，也可以包在 {"code":..,"data":{..}} 中。
+ */
+public class HistorySyncClient implements HistorySyncManager.Transport {
+
+    /** 提供登录令牌，没有时返回 null */
+    public interface TokenProvider {
+        String getToken();
+    }
+
+    private final OkHttpClient client;
+    private final HttpUrl recordsUrl;
+    private final TokenProvider tokens;
+
+    public HistorySyncClient(OkHttpClient client, String baseUrl, TokenProvider tokens) {
+        this.client = client;
+        this.recordsUrl = HttpUrl.get(baseUrl).newBuilder().addPathSegments("api/records").build();
+        this.tokens = tokens;
+    }
+
+    @Override
+    public void fetch(HistorySyncManager.Request request, HistorySyncManager.TransportCallback callback) {
+        HttpUrl.Builder url = recordsUrl.newBuilder()
+                .addQueryParameter("userId", String.valueOf(request.userId))
+                .addQueryParameter("page", "1")
+                .addQueryParameter("size", String.valueOf(request.size));
+        if (request.since != null) {
+            url.addQueryParameter("updatedSince", request.since);
+        }
+        Request.Builder builder = new Request.Builder().url(url.build()).get();
+        if (request.etag != null) {
+            builder.header("If-None-Match", request.etag);
+        }
+        String token = tokens != null ? tokens.getToken() : null;
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        client.newCall(builder.build()).enqueue(new okhttp3.Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                callback.onFailure(e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.code() == 304) {
+                        callback.onResponse(HistorySyncManager.Response.notModified(request.etag));
+                        return;
+                    }
+                    if (!response.isSuccessful() || body == null) {
+                        callback.onFailure("HTTP " + response.code());
+                        return;
+                    }
+                    byte[] bytes = body.bytes();
+                    HistorySyncManager.Response result = parse(new String(bytes, "UTF-8"), request.since != null);
+                    result.etag = response.header("ETag");
+                    result.bytes = bytes.length;
+                    callback.onResponse(result);
+                } catch (Exception e) {
+                    callback.onFailure("解析失败: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    static HistorySyncManager.Response parse(String json, boolean askedForDelta) {
+        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+        JsonObject payload = root.has("data") && root.get("data").isJsonObject()
+                ? root.getAsJsonObject("data") : root;
+
+        HistorySyncManager.Response result = new HistorySyncManager.Response();
+        result.records = new ArrayList<>();
+        JsonArray records = payload.has("records") ? payload.getAsJsonArray("records") : new JsonArray();
+        for (JsonElement element : records) {
+            result.records.add(toRecord(element.getAsJsonObject()));
+        }
+        String watermark = getString(payload, "watermark");
+        result.delta = askedForDelta && watermark != null;
+        result.watermark = watermark;
+        if (payload.has("deletedIds")) {
+            List<Integer> deleted = new ArrayList<>();
+            for (JsonElement id : payload.getAsJsonArray("deletedIds")) {
+                deleted.add(id.getAsInt());
+            }
+            result.deletedIds = deleted;
+        }
+        return result;
+    }
+
+    /**
+     * 字段与 RunningRecordDto 一致
+     */
+    private static DatabaseHelper.RunningRecord toRecord(JsonObject dto) {
+        DatabaseHelper.RunningRecord record = new DatabaseHelper.RunningRecord();
+        record.serverId = getInteger(dto, "id");
+        Integer userId = getInteger(dto, "userId");
+        record.userId = userId != null ? userId : 1;
+        record.date = getString(dto, "date");
+        record.distance = getDouble(dto, "distance");
+        Integer duration = getInteger(dto, "duration");
+        record.duration = duration != null ? duration : 0;
+        Integer steps = getInteger(dto, "steps");
+        record.steps = steps != null ? steps : 0;
+        Integer calories = getInteger(dto, "calories");
+        record.calories = calories != null ? calories : 0;
+        record.pace = getDouble(dto, "pace");
+        record.track = TrackCodec.fromTransportString(getString(dto, "track"));
+        record.isSynced = true;
+        record.semesterId = getInteger(dto, "semesterId");
+        record.taskId = getInteger(dto, "taskId");
+        record.isValid = getInteger(dto, "isValid");
+        return record;
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static Integer getInteger(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? null : element.getAsInt();
+    }
+
+    private static double getDouble(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? 0 : element.getAsDouble();
+    }
+}
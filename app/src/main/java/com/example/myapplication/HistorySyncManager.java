@@ -0,0 +1,342 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * 历史记录同步
+ *
+ * 每个用户保存上次同步的水位（updatedSince）、ETag 和最近一页的指纹：
+ * 服务器支持增量时只拉取变化和删除的记录；没有变化时返回 304，不传输记录。
+ * 增量结果满一页时以本页的水位继续请求，全部拉取完才保存水位和 ETag。
+ * 服务器只返回完整快照时，指纹与上次相同则不写数据库，否则批量合并并在拉取范围内对照删除。
+ * 同一用户同时只有一个请求，请求期间再次触发的同步合并到这个请求，完成后一起回调。
+ * 非强制同步距上次成功不足 {@link #MIN_INTERVAL_MS} 时跳过（切换页面不会每次都请求）。
+ */
+public class HistorySyncManager {
+
+    private static final String TAG = "HistorySyncManager";
+    private static final String PREFS_NAME = "history_sync";
+    private static final String KEY_WATERMARK = "watermark_";
+    private static final String KEY_ETAG = "etag_";
+    private static final String KEY_FINGERPRINT = "fingerprint_";
+    private static final String KEY_LAST_SYNC = "last_sync_";
+
+    /** 后端 API 地址（见 README），同步请求直接访问 /api/records */
+    static final String API_BASE_URL = "http://113.44.92.166:8080/";
+
+    /** 每次最多拉取的记录数（完整快照时为最近一页） */
+    static final int FETCH_SIZE = 200;
+    static final long MIN_INTERVAL_MS = 30_000;
+
+    /** 网络请求，回调可以在任意线程 */
+    public interface Transport {
+        void fetch(Request request, TransportCallback callback);
+    }
+
+    public interface TransportCallback {
+        void onResponse(Response response);
+
+        void onFailure(String message);
+    }
+
+    /** 同步完成回调（主线程） */
+    public interface Listener {
+        void onSyncFinished(Result result);
+    }
+
+    public static class Request {
+        public final int userId;
+        public final int size;
+        /** 上次的水位，没有时为全量请求 */
+        public final String since;
+        public final String etag;
+
+        Request(int userId, int size, String since, String etag) {
+            this.userId = userId;
+            this.size = size;
+            this.since = since;
+            this.etag = etag;
+        }
+    }
+
+    public static class Response {
+        /** 304：自上次以来没有变化 */
+        public boolean notModified;
+        /** true 为增量结果；false 为最近一页的完整快照 */
+        public boolean delta;
+        public List<DatabaseHelper.RunningRecord> records;
+        /** 增量结果中已删除的服务器ID */
+        public List<Integer> deletedIds;
+        public String watermark;
+        public String etag;
+        /** 响应体字节数，未知时为 0 */
+        public long bytes;
+
+        static Response notModified(String etag) {
+            Response response = new Response();
+            response.notModified = true;
+            response.etag = etag;
+            return response;
+        }
+    }
+
+    public static class Result {
+        public boolean success;
+        /** 距上次同步太近，没有请求 */
+        public boolean skipped;
+        /** 服务器或指纹表明没有变化，没有写数据库 */
+        public boolean notModified;
+        public int inserted;
+        public int updated;
+        public int deleted;
+        public long bytes;
+        public String error;
+
+        public int getRowsWritten() {
+            return inserted + updated + deleted;
+        }
+
+        @Override
+        public String toString() {
+            if (!success) return "失败: " + error;
+            if (skipped) return "跳过";
+            return String.format(Locale.CHINA, "新增%d条, 更新%d条, 删除%d条, 传输%d字节%s",
+                    inserted, updated, deleted, bytes, notModified ? "（无变化）" : "");
+        }
+    }
+
+    private static HistorySyncManager instance;
+
+    public static synchronized HistorySyncManager getInstance(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            // 服务器不支持增量时 HistorySyncClient 按完整快照处理，与原来的分页接口结果相同
+            HistorySyncClient client = new HistorySyncClient(new OkHttpClient(), API_BASE_URL,
+                    () -> CurrentUser.getToken(app));
+            instance = new HistorySyncManager(app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                    RunRepository.getInstance(app), client);
+        }
+        return instance;
+    }
+
+    private final SharedPreferences prefs;
+    private final RunRepository repository;
+    private final Transport transport;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 进行中的请求及等待结果的回调（仅在主线程访问）
+    private final Map<Integer, List<Listener>> inFlight = new HashMap<>();
+
+    HistorySyncManager(SharedPreferences prefs, RunRepository repository, Transport transport) {
+        this.prefs = prefs;
+        this.repository = repository;
+        this.transport = transport;
+    }
+
+    /**
+     * 同步用户的历史记录（主线程调用）
+     * @param force 忽略最小间隔
+     */
+    public void sync(int userId, boolean force, Listener listener) {
+        List<Listener> waiting = inFlight.get(userId);
+        if (waiting != null) {
+            // 已有请求在进行，等它完成
+            if (listener != null) waiting.add(listener);
+            return;
+        }
+        long sinceLast = System.currentTimeMillis() - prefs.getLong(KEY_LAST_SYNC + userId, 0);
+        if (!force && sinceLast >= 0 && sinceLast < MIN_INTERVAL_MS) {
+            Result result = new Result();
+            result.success = true;
+            result.skipped = true;
+            if (listener != null) listener.onSyncFinished(result);
+            return;
+        }
+
+        waiting = new ArrayList<>();
+        if (listener != null) waiting.add(listener);
+        inFlight.put(userId, waiting);
+        Result result = new Result();
+        result.success = true;
+        fetch(new Request(userId, FETCH_SIZE,
+                prefs.getString(KEY_WATERMARK + userId, null), prefs.getString(KEY_ETAG + userId, null)), result);
+    }
+
+    /**
+     * 请求一页，写入后累加到 result
+     */
+    private void fetch(Request request, Result result) {
+        transport.fetch(request, new TransportCallback() {
+            @Override
+            public void onResponse(Response response) {
+                mainHandler.post(() -> apply(request, response, result));
+            }
+
+            @Override
+            public void onFailure(String message) {
+                mainHandler.post(() -> {
+                    result.success = false;
+                    result.error = message;
+                    finish(request.userId, result);
+                });
+            }
+        });
+    }
+
+    public boolean isSyncing(int userId) {
+        return inFlight.containsKey(userId);
+    }
+
+    private void apply(Request request, Response response, Result total) {
+        boolean more = hasMore(request, response);
+        repository.execute(db -> applyToDatabase(db, request, response, more, total),
+                new RunRepository.Callback<Result>() {
+            @Override
+            public void onResult(Result result) {
+                if (more) {
+                    fetch(new Request(request.userId, request.size, response.watermark, null), result);
+                } else {
+                    finish(request.userId, result);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "同步写入失败", e);
+                total.success = false;
+                total.error = e.getMessage();
+                finish(request.userId, total);
+            }
+        });
+    }
+
+    /**
+     * 带水位的结果满一页时服务器还有变化没有返回，需要以本页的水位继续请求
+     */
+    static boolean hasMore(Request request, Response response) {
+        return !response.notModified && response.watermark != null
+                && response.records != null && response.records.size() >= request.size;
+    }
+
+    /**
+     * 在 I/O 线程上写入数据库，累加到 result；最后一页写入后保存水位和 ETag
+     * @param more 还有后续页：本页不是完整快照，不对照删除，也不保存水位（否则剩下的变化不会再拉取）
+     */
+    private Result applyToDatabase(DatabaseHelper db, Request request, Response response, boolean more,
+                                   Result result) throws Exception {
+        int userId = request.userId;
+        result.bytes += response.bytes;
+        SharedPreferences.Editor editor = prefs.edit();
+
+        if (response.notModified) {
+            result.notModified = true;
+        } else if (response.delta) {
+            DatabaseHelper.MergeResult merged = db.mergeFromServer(response.records);
+            result.inserted += merged.inserted;
+            result.updated += merged.updated;
+            if (response.deletedIds != null) {
+                result.deleted += db.deleteRecordsByServerIds(userId, response.deletedIds);
+            }
+        } else {
+            String fingerprint = fingerprint(response.records);
+            if (fingerprint.equals(prefs.getString(KEY_FINGERPRINT + userId, null))) {
+                result.notModified = true;
+            } else {
+                DatabaseHelper.MergeResult merged = db.mergeFromServer(response.records);
+                result.inserted += merged.inserted;
+                result.updated += merged.updated;
+                if (!more) {
+                    result.deleted += reconcileSnapshot(db, userId, response.records);
+                }
+                editor.putString(KEY_FINGERPRINT + userId, fingerprint);
+            }
+        }
+
+        if (more) {
+            editor.apply();
+            return result;
+        }
+        if (response.watermark != null) {
+            editor.putString(KEY_WATERMARK + userId, response.watermark);
+        }
+        if (response.etag != null) {
+            editor.putString(KEY_ETAG + userId, response.etag);
+        }
+        editor.putLong(KEY_LAST_SYNC + userId, System.currentTimeMillis()).apply();
+        return result;
+    }
+
+    /**
+     * 完整快照：删除本地存在但服务器上已删除的记录。
+     * 不满一页说明已拉取到全部历史，对照全部本地记录；否则只对照本页最早日期之后的记录
+     */
+    private static int reconcileSnapshot(DatabaseHelper db, int userId, List<DatabaseHelper.RunningRecord> records) {
+        List<Integer> serverIds = new ArrayList<>();
+        String oldestDate = null;
+        for (DatabaseHelper.RunningRecord record : records) {
+            if (record.serverId != null) {
+                serverIds.add(record.serverId);
+            }
+            if (record.date != null && (oldestDate == null || record.date.compareTo(oldestDate) < 0)) {
+                oldestDate = record.date;
+            }
+        }
+        boolean complete = records.size() < FETCH_SIZE;
+        if (serverIds.isEmpty() || (!complete && oldestDate == null)) {
+            return 0;
+        }
+        return db.reconcileServerDeletions(userId, serverIds, complete ? null : oldestDate);
+    }
+
+    private void finish(int userId, Result result) {
+        List<Listener> waiting = inFlight.remove(userId);
+        Log.d(TAG, "用户" + userId + "同步: " + result);
+        if (waiting == null) return;
+        for (Listener listener : waiting) {
+            listener.onSyncFinished(result);
+        }
+    }
+
+    /**
+     * 快照内容的摘要：服务器ID、汇总字段和轨迹
+     */
+    static String fingerprint(List<DatabaseHelper.RunningRecord> records) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        for (DatabaseHelper.RunningRecord record : records) {
+            buffer.clear();
+            buffer.putInt(record.serverId != null ? record.serverId : -1)
+                    .putInt(record.userId)
+                    .putDouble(record.distance)
+                    .putInt(record.duration)
+                    .putInt(record.steps)
+                    .putInt(record.calories)
+                    .putDouble(record.pace)
+                    .putInt(record.semesterId != null ? record.semesterId : -1)
+                    .putInt(record.taskId != null ? record.taskId : -1)
+                    .putInt(record.isValid != null ? record.isValid : -1);
+            digest.update(buffer.array(), 0, buffer.position());
+            if (record.date != null) digest.update(record.date.getBytes("UTF-8"));
+            if (record.track != null) digest.update(record.track);
+            digest.update((byte) 0);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
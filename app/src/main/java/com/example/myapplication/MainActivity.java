@@ -38,7 +38,7 @@ public class MainActivity extends AppCompatActivity {
         authManager.init();
         
         // 检查登录状态
-        if (!authManager.isLoggedIn()) {
+        if (!CurrentUser.isLoggedIn(this)) {
             goToLogin();
             return;
         }
@@ -0,0 +1,156 @@
+package com.example.myapplication;
+
+/**
+ * 滚动窗口配速
+ *
+ * 固定容量的环形缓冲区保存 (运动时间, 累计距离) 样本。每个窗口维护一个只向前移动的起点，
+ * 新样本加入时起点顺延，均摊 O(1)；查询时用窗口首尾两个样本直接计算，O(1)。全程不分配对象。
+ *
+ * 时间使用扣除暂停后的运动时间，暂停不会落入任何窗口。
+ * 配速单位为分钟/公里，窗口内距离不足时返回 0 表示暂无有效配速。
+ */
+public class PaceEngine {
+
+    /** 10 秒窗口：即时配速 */
+    public static final long WINDOW_10S = 10_000;
+    /** 30 秒窗口：平滑的当前配速 */
+    public static final long WINDOW_30S = 30_000;
+    /** 最近 1 公里 */
+    public static final double WINDOW_1KM = 1000;
+
+    private static final int DEFAULT_CAPACITY = 2048;
+    /** 窗口内距离少于该值时不计算配速，避免静止时配速无穷大 */
+    private static final double MIN_WINDOW_DISTANCE = 5;
+    /** 低于该速度（米/秒）的区间不计入平均移动配速 */
+    private static final double MOVING_SPEED = 0.5;
+    /** 相邻样本间隔超过该值（如信号中断）时不计入平均移动配速 */
+    private static final long MAX_MOVING_GAP_MS = 10_000;
+
+    private final int mask;
+    private final long[] times;
+    private final double[] distances;
+    /** 已加入的样本总数，最新样本序号为 count - 1 */
+    private long count = 0;
+
+    private final long[] timeWindows;
+    private final long[] timeWindowStart;
+    private final double[] distanceWindows;
+    private final long[] distanceWindowStart;
+
+    private long movingTime = 0;
+    private double movingDistance = 0;
+
+    public PaceEngine() {
+        this(DEFAULT_CAPACITY, new long[] { WINDOW_10S, WINDOW_30S }, new double[] { WINDOW_1KM });
+    }
+
+    /**
+     * @param capacity        缓冲区容量，向上取整为 2 的幂；需覆盖最长窗口内的样本数，否则窗口退化为缓冲区覆盖的范围
+     * @param timeWindows     时间窗口（毫秒）
+     * @param distanceWindows 距离窗口（米）
+     */
+    public PaceEngine(int capacity, long[] timeWindows, double[] distanceWindows) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mask = size - 1;
+        times = new long[size];
+        distances = new double[size];
+        this.timeWindows = timeWindows.clone();
+        this.timeWindowStart = new long[timeWindows.length];
+        this.distanceWindows = distanceWindows.clone();
+        this.distanceWindowStart = new long[distanceWindows.length];
+    }
+
+    public void reset() {
+        count = 0;
+        movingTime = 0;
+        movingDistance = 0;
+        for (int i = 0; i < timeWindowStart.length; i++) timeWindowStart[i] = 0;
+        for (int i = 0; i < distanceWindowStart.length; i++) distanceWindowStart[i] = 0;
+    }
+
+    /**
+     * 加入一个样本
+     *
+     * @param movingTimeMs       扣除暂停后的运动时间，单调不减
+     * @param cumulativeDistance 累计距离（米），单调不减
+     */
+    public void add(long movingTimeMs, double cumulativeDistance) {
+        if (count > 0) {
+            int last = (int) ((count - 1) & mask);
+            long dt = movingTimeMs - times[last];
+            double dd = cumulativeDistance - distances[last];
+            if (dt <= 0) return;
+            if (dt <= MAX_MOVING_GAP_MS && dd * 1000 >= MOVING_SPEED * dt) {
+                movingTime += dt;
+                movingDistance += dd;
+            }
+        }
+        int slot = (int) (count & mask);
+        times[slot] = movingTimeMs;
+        distances[slot] = cumulativeDistance;
+        count++;
+
+        long oldest = Math.max(0, count - times.length);
+        for (int w = 0; w < timeWindows.length; w++) {
+            long start = Math.max(timeWindowStart[w], oldest);
+            long limit = movingTimeMs - timeWindows[w];
+            // 起点取窗口内最早的样本之前一个，使窗口覆盖完整时长
+            while (start + 1 < count && times[(int) ((start + 1) & mask)] <= limit) start++;
+            timeWindowStart[w] = start;
+        }
+        for (int w = 0; w < distanceWindows.length; w++) {
+            long start = Math.max(distanceWindowStart[w], oldest);
+            double limit = cumulativeDistance - distanceWindows[w];
+            while (start + 1 < count && distances[(int) ((start + 1) & mask)] <= limit) start++;
+            distanceWindowStart[w] = start;
+        }
+    }
+
+    /**
+     * 第 index 个时间窗口的配速
+     */
+    public double getTimeWindowPace(int index) {
+        return paceSince(timeWindowStart[index]);
+    }
+
+    /**
+     * 第 index 个距离窗口的配速；跑步距离不足一个窗口时按已跑距离计算
+     */
+    public double getDistanceWindowPace(int index) {
+        return paceSince(distanceWindowStart[index]);
+    }
+
+    /** 默认配置下的 10 秒配速 */
+    public double getPace10s() {
+        return getTimeWindowPace(0);
+    }
+
+    /** 默认配置下的 30 秒配速 */
+    public double getPace30s() {
+        return getTimeWindowPace(1);
+    }
+
+    /** 默认配置下最近 1 公里的配速 */
+    public double getPaceLastKm() {
+        return getDistanceWindowPace(0);
+    }
+
+    /**
+     * 平均移动配速：只统计移动中的区间，排除暂停、原地停留和信号中断
+     */
+    public double getAverageMovingPace() {
+        return pace(movingTime, movingDistance);
+    }
+
+    private double paceSince(long start) {
+        if (count < 2) return 0;
+        int first = (int) (start & mask);
+        int last = (int) ((count - 1) & mask);
+        return pace(times[last] - times[first], distances[last] - distances[first]);
+    }
+
+    private static double pace(long timeMs, double meters) {
+        if (meters < MIN_WINDOW_DISTANCE || timeMs <= 0) return 0;
+        return (timeMs / 60000.0) / (meters / 1000);
+    }
+}
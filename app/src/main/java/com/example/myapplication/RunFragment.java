@@ -6,7 +6,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
-import android.graphics.Color;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
@@ -36,16 +35,11 @@ import com.amap.api.maps.CameraUpdateFactory;
 import com.amap.api.maps.MapView;
 import com.amap.api.maps.MapsInitializer;
 import com.amap.api.maps.model.LatLng;
-import com.amap.api.maps.model.Polyline;
-import com.amap.api.maps.model.PolylineOptions;
 
 import com.example.myapplication.api.ApiCallback;
-import com.example.myapplication.api.AuthManager;
 import com.example.myapplication.api.RunningRecordApi;
 import com.example.myapplication.api.RunningRecordDto;
-import com.example.myapplication.api.UserInfo;
 
-import java.util.List;
 import java.util.Locale;
 
 public class RunFragment extends Fragment implements SensorEventListener {
@@ -55,7 +49,8 @@ public class RunFragment extends Fragment implements SensorEventListener {
 
     private MapView mapView;
     private AMap aMap;
-    private Polyline trackPolyline;
+    // 增量绘制轨迹，只更新末尾一段
+    private TrackPolylineRenderer trackRenderer;
 
     private TextView tvDistance, tvDuration, tvPace, tvSteps, tvCalories;
     private Button btnStart, btnPause, btnStop;
@@ -70,7 +65,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
 
 
     private RunDataManager dataManager;
-    private DatabaseHelper dbHelper;
+    private RunRepository repository;
     
     // 服务绑定
     private RunningService runningService;
@@ -83,66 +78,30 @@ public class RunFragment extends Fragment implements SensorEventListener {
             runningService = binder.getService();
             serviceBound = true;
             
-            runningService.setListener(new RunningService.OnRunningUpdateListener() {
-                @Override
-                public void onTimeUpdate(long elapsedSeconds) {
-                    if (getActivity() != null) {
-                        getActivity().runOnUiThread(() -> {
-                            int hours = (int) (elapsedSeconds / 3600);
-                            int minutes = (int) ((elapsedSeconds % 3600) / 60);
-                            int secs = (int) (elapsedSeconds % 60);
-                            tvDuration.setText(String.format(Locale.CHINA, "%02d:%02d:%02d", hours, minutes, secs));
-                            updateCaloriesAndPace();
-                        });
-                    }
-                }
-
-                @Override
-                public void onDistanceUpdate(double distance) {
-                    if (getActivity() != null) {
-                        getActivity().runOnUiThread(() -> {
-                            tvDistance.setText(String.format(Locale.CHINA, "%.2f", distance / 1000));
-                            updateCaloriesAndPace();
-                        });
-                    }
-                }
-
-                @Override
-                public void onLocationUpdate(LatLng location, List<LatLng> track) {
-                    if (getActivity() != null) {
-                        getActivity().runOnUiThread(() -> {
-                            if (aMap != null) {
-                                aMap.moveCamera(CameraUpdateFactory.newLatLngZoom(location, 17));
-                            }
-                            drawTrack(track);
-                        });
-                    }
-                }
-            });
-            
             // 恢复UI状态
             restoreUIState();
-            
-            // 立即更新一次步数显示
-            if (runningService.isRunning()) {
-                tvSteps.setText(String.valueOf(runningService.getStepCount()));
-            }
+            subscribeSnapshots();
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
+            unsubscribeSnapshots();
             serviceBound = false;
             runningService = null;
         }
     };
 
+    private final RunSnapshotChannel.Consumer snapshotConsumer = this::renderSnapshot;
+    private boolean snapshotSubscribed = false;
+    private int renderedTrackVersion = -1;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_run, container, false);
         
         dataManager = new RunDataManager(requireContext());
-        dbHelper = DatabaseHelper.getInstance(requireContext());
+        repository = RunRepository.getInstance(requireContext());
         initPrivacy();
         initViews(view);
         initMap(view, savedInstanceState);
@@ -188,6 +147,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
                 if (aMap != null) {
                     aMap.setMyLocationEnabled(true);
                     aMap.getUiSettings().setZoomControlsEnabled(false);
+                    trackRenderer = new TrackPolylineRenderer(aMap);
                 }
             }
         } catch (Exception e) {
@@ -202,7 +162,14 @@ public class RunFragment extends Fragment implements SensorEventListener {
     }
 
     private void checkPermissions() {
-        String[] permissions = {Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION};
+        String[] permissions;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // 硬件计步器需要运动健身权限，未授权时回退到加速度计计步
+            permissions = new String[]{Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION,
+                    Manifest.permission.ACTIVITY_RECOGNITION};
+        } else {
+            permissions = new String[]{Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION};
+        }
         boolean allGranted = true;
         for (String p : permissions) {
             if (ContextCompat.checkSelfPermission(requireContext(), p) != PackageManager.PERMISSION_GRANTED) {
@@ -226,9 +193,8 @@ public class RunFragment extends Fragment implements SensorEventListener {
         requireContext().bindService(serviceIntent, serviceConnection, Context.BIND_AUTO_CREATE);
         
         // 清除轨迹线
-        if (trackPolyline != null) {
-            trackPolyline.remove();
-            trackPolyline = null;
+        if (trackRenderer != null) {
+            trackRenderer.clear();
         }
 
         btnStart.setVisibility(View.GONE);
@@ -248,47 +214,21 @@ public class RunFragment extends Fragment implements SensorEventListener {
 
     private void togglePause() {
         if (serviceBound && runningService != null) {
+            // 暂停在跟踪线程上异步执行，按切换后的状态更新按钮
+            boolean willPause = !runningService.isPaused();
             runningService.togglePause();
-            if (runningService.isPaused()) {
-                btnPause.setText("继续");
-            } else {
-                btnPause.setText("暂停");
-            }
+            btnPause.setText(willPause ? "继续" : "暂停");
         }
     }
 
     private void stopRunning() {
         if (serviceBound && runningService != null) {
-            RunningService.RunResult result = runningService.stopRunning();
-            
-            // 获取当前用户ID
-            AuthManager authManager = AuthManager.getInstance(requireContext());
-            UserInfo user = authManager.getCurrentUser();
-            int userId = user != null && user.getId() != null ? user.getId() : 1;
-            
-            // 保存到SQLite数据库（使用服务中的步数）
-            long insertId = dbHelper.insertRunningRecord(
-                userId, result.date, result.distance, result.duration,
-                result.steps, result.calories, result.pace, result.track
-            );
-            Log.d(TAG, "保存到SQLite, insertId=" + insertId);
-            
-            // 同时保存到SharedPreferences
-            RunDataManager.RunRecord record = new RunDataManager.RunRecord(
-                result.date, result.distance, result.duration,
-                result.steps, result.calories, result.pace, result.track
-            );
-            dataManager.saveRecord(record);
-
-            // 尝试上传到服务器
-            uploadToServer(insertId, userId, result);
-
-            String msg = String.format(Locale.CHINA, "跑步结束!\n距离: %.2f公里\n步数: %d\n消耗: %d千卡",
-                    result.distance / 1000, result.steps, result.calories);
-            Toast.makeText(requireContext(), msg, Toast.LENGTH_LONG).show();
+            Context appContext = requireContext().getApplicationContext();
+            runningService.stopRunning(result -> onRunStopped(appContext, result));
         }
         
         // 解绑服务
+        unsubscribeSnapshots();
         if (serviceBound) {
             requireContext().unbindService(serviceConnection);
             serviceBound = false;
@@ -305,6 +245,28 @@ public class RunFragment extends Fragment implements SensorEventListener {
         tvCalories.setText("0");
     }
 
+    /**
+     * 跑步结果已由服务在跟踪线程上入库，回到主线程后上传（页面可能已离开，使用 Application Context）
+     */
+    void onRunStopped(Context context, RunningService.RunResult result) {
+        if (result.localId > 0) {
+            uploadToServer(result.localId, result.userId, result);
+        } else {
+            Log.w(TAG, "跑步记录入库失败，不上传");
+        }
+        
+        // 同时保存到SharedPreferences
+        RunDataManager.RunRecord record = new RunDataManager.RunRecord(
+            result.date, result.distance, result.duration,
+            result.steps, result.calories, result.pace, TrackCodec.toLegacyText(result.track)
+        );
+        dataManager.saveRecord(record);
+
+        String msg = String.format(Locale.CHINA, "跑步结束!\n距离: %.2f公里\n步数: %d\n消耗: %d千卡",
+                result.distance / 1000, result.steps, result.calories);
+        Toast.makeText(context, msg, Toast.LENGTH_LONG).show();
+    }
+
     /**
      * 上传跑步记录到服务器
      */
@@ -318,7 +280,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
         dto.setSteps(result.steps);
         dto.setCalories(result.calories);
         dto.setPace(result.pace);
-        dto.setTrack(result.track);
+        dto.setTrack(TrackCodec.toLegacyText(result.track));
 
         Log.d(TAG, "上传数据: distance=" + dto.getDistance() + "km, duration=" + dto.getDuration() + "s, steps=" + dto.getSteps() + ", calories=" + dto.getCalories());
 
@@ -327,7 +289,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
             public void onSuccess(RunningRecordDto data) {
                 if (data != null && data.getId() != null) {
                     // 标记为已同步
-                    dbHelper.markAsSynced((int) localId, data.getId());
+                    repository.markAsSynced((int) localId, data.getId(), null);
                     Log.d(TAG, "上传成功, serverId=" + data.getId());
                 }
             }
@@ -350,62 +312,57 @@ public class RunFragment extends Fragment implements SensorEventListener {
             btnPause.setVisibility(View.VISIBLE);
             btnStop.setVisibility(View.VISIBLE);
             btnPause.setText(runningService.isPaused() ? "继续" : "暂停");
-            
-            // 恢复显示数据（从服务获取）
-            double dist = runningService.getTotalDistance();
-            int steps = runningService.getStepCount();
-            tvDistance.setText(String.format(Locale.CHINA, "%.2f", dist / 1000));
-            tvSteps.setText(String.valueOf(steps));
-            
-            // 恢复卡路里和配速
-            updateCaloriesAndPace();
-            
-            // 恢复轨迹
-            List<LatLng> track = runningService.getTrackPoints();
-            if (track != null && !track.isEmpty()) {
-                drawTrack(track);
-                if (aMap != null) {
-                    aMap.moveCamera(CameraUpdateFactory.newLatLngZoom(track.get(track.size() - 1), 17));
-                }
-            }
+            // 数据和轨迹由订阅后收到的第一个快照恢复
+            renderedTrackVersion = -1;
         }
     }
 
-    private void updateCaloriesAndPace() {
-        if (runningService != null) {
-            double dist = runningService.getTotalDistance();
-            double weight = 70;
-            int calories = (int) (weight * (dist / 1000) * 1.036);
-            tvCalories.setText(String.valueOf(calories));
-            
-            // 使用服务提供的实时配速（基于GPS速度，更准确）
-            double pace = runningService.getRealtimePace();
-            if (pace > 0) {
-                int paceMin = (int) pace;
-                int paceSec = (int) ((pace - paceMin) * 60);
-                tvPace.setText(String.format(Locale.CHINA, "%d:%02d", paceMin, paceSec));
-            } else if (dist > 0) {
-                // 备用：使用平均配速
-                long elapsed = System.currentTimeMillis() - runningService.getStartTime() - runningService.getPausedDuration();
-                double avgPace = (elapsed / 60000.0) / (dist / 1000);
-                int paceMin = (int) avgPace;
-                int paceSec = (int) ((avgPace - paceMin) * 60);
-                tvPace.setText(String.format(Locale.CHINA, "%d:%02d", paceMin, paceSec));
-            }
+    /**
+     * 页面可见且服务已连接时订阅快照，不可见时取消订阅，停止一切UI更新
+     */
+    private void subscribeSnapshots() {
+        if (!snapshotSubscribed && runningService != null && isResumed()) {
+            runningService.getSnapshots().subscribe(snapshotConsumer);
+            snapshotSubscribed = true;
         }
     }
 
-    private void drawTrack(List<LatLng> trackPoints) {
-        if (trackPoints != null && trackPoints.size() > 1 && aMap != null) {
-            if (trackPolyline != null) {
-                trackPolyline.setPoints(trackPoints);
-            } else {
-                trackPolyline = aMap.addPolyline(new PolylineOptions()
-                        .addAll(trackPoints)
-                        .width(14)
-                        .color(Color.argb(200, 220, 50, 50))
-                        .geodesic(true));
+    private void unsubscribeSnapshots() {
+        if (snapshotSubscribed && runningService != null) {
+            runningService.getSnapshots().unsubscribe(snapshotConsumer);
+        }
+        snapshotSubscribed = false;
+    }
+
+    private void renderSnapshot(RunSnapshot s) {
+        if (tvDuration == null || !s.running) return;
+        long elapsed = s.elapsedSeconds;
+        tvDuration.setText(String.format(Locale.CHINA, "%02d:%02d:%02d", elapsed / 3600, (elapsed % 3600) / 60, elapsed % 60));
+        tvDistance.setText(String.format(Locale.CHINA, "%.2f", s.distance / 1000));
+        tvSteps.setText(String.valueOf(s.steps));
+        tvCalories.setText(String.valueOf(s.calories));
+        if (s.pace > 0) {
+            int paceMin = (int) s.pace;
+            int paceSec = (int) ((s.pace - paceMin) * 60);
+            tvPace.setText(String.format(Locale.CHINA, "%d:%02d", paceMin, paceSec));
+        }
+        
+        if (s.hasLocation && s.trackVersion != renderedTrackVersion && runningService != null) {
+            renderedTrackVersion = s.trackVersion;
+            LatLng location = new LatLng(s.latitude, s.longitude);
+            if (aMap != null) {
+                aMap.moveCamera(CameraUpdateFactory.newLatLngZoom(location, 17));
             }
+            drawTrack(runningService.getMapTrack(), location);
+        }
+    }
+
+    /**
+     * 绘制抽稀后的地图层轨迹，末尾接上当前位置（抽稀窗口中的点尚未输出）
+     */
+    private void drawTrack(TrackView trackPoints, LatLng current) {
+        if (trackPoints != null && trackRenderer != null) {
+            trackRenderer.update(trackPoints, current);
         }
     }
 
@@ -415,10 +372,6 @@ public class RunFragment extends Fragment implements SensorEventListener {
             case Sensor.TYPE_ACCELEROMETER:
                 gravity = event.values.clone();
                 updateCompass();
-                // 更新步数显示（从服务获取）
-                if (serviceBound && runningService != null && runningService.isRunning()) {
-                    tvSteps.setText(String.valueOf(runningService.getStepCount()));
-                }
                 break;
             case Sensor.TYPE_MAGNETIC_FIELD:
                 geomagnetic = event.values.clone();
@@ -461,9 +414,10 @@ public class RunFragment extends Fragment implements SensorEventListener {
         super.onResume();
         try {
             if (mapView != null) mapView.onResume();
+            subscribeSnapshots();
             if (sensorManager != null) {
                 if (accelerometer != null)
-                    sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_FASTEST);
+                    sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_UI);
                 if (magnetometer != null)
                     sensorManager.registerListener(this, magnetometer, SensorManager.SENSOR_DELAY_UI);
             }
@@ -476,6 +430,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
     public void onPause() {
         super.onPause();
         try {
+            unsubscribeSnapshots();
             if (mapView != null) mapView.onPause();
             if (sensorManager != null) sensorManager.unregisterListener(this);
         } catch (Exception e) {
@@ -487,6 +442,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
     public void onStop() {
         super.onStop();
         // 解绑服务但不停止服务
+        unsubscribeSnapshots();
         if (serviceBound) {
             try {
                 requireContext().unbindService(serviceConnection);
@@ -501,6 +457,7 @@ public class RunFragment extends Fragment implements SensorEventListener {
     public void onDestroy() {
         super.onDestroy();
         try {
+            if (trackRenderer != null) trackRenderer.release();
             if (mapView != null) mapView.onDestroy();
         } catch (Exception e) {
             Log.e(TAG, "onDestroy error", e);
@@ -521,8 +478,10 @@ public class RunFragment extends Fragment implements SensorEventListener {
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         if (requestCode == PERMISSION_REQUEST_CODE) {
             boolean granted = true;
-            for (int r : grantResults) {
-                if (r != PackageManager.PERMISSION_GRANTED) {
+            for (int i = 0; i < grantResults.length; i++) {
+                // 运动健身权限被拒绝时仍可用加速度计计步，不提示
+                if (Manifest.permission.ACTIVITY_RECOGNITION.equals(permissions[i])) continue;
+                if (grantResults[i] != PackageManager.PERMISSION_GRANTED) {
                     granted = false;
                     break;
                 }
@@ -0,0 +1,213 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 跑步日志（内存映射、只追加）
+ *
+ * 跑步过程中每个被接受的定位点和周期性的计数器检查点都追加写入映射文件。
+ * 写入映射内存后即使进程被杀，数据仍在内核页缓存中，服务重启后可从日志恢复；
+ * 为防止断电丢失，按 {@link #SYNC_INTERVAL_MS} 间隔调用 force() 刷盘。
+ *
+ * 文件格式：头部 {@link #HEADER_SIZE} 字节（MAGIC、版本、开始时间），之后是连续的记录，
+ * 每条记录先写负载、最后写类型字节，类型字节为0表示日志结尾，因此半条记录不会被读出。
+ */
+public class RunJournal {
+
+    private static final int MAGIC = 0x524A4E4C; // "RJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int REGION_SIZE = 256 * 1024;
+    public static final long SYNC_INTERVAL_MS = 5000;
+    /** 最后一次写入距今超过该时长的日志视为遗留日志（强制停止、重启后没有恢复），不再恢复 */
+    public static final long MAX_RECOVERY_GAP_MS = 6 * 60 * 60 * 1000L;
+
+    private static final byte TYPE_END = 0;
+    private static final byte TYPE_FIX = 1;
+    private static final byte TYPE_CHECKPOINT = 2;
+
+    // 类型(1) + 纬度(4) + 经度(4) + 时间(8)
+    private static final int FIX_SIZE = 17;
+    // 类型(1) + 时间(8) + 暂停总时长(8) + 暂停开始时间(8) + 距离(8) + 步数(4) + 是否暂停(1)
+    private static final int CHECKPOINT_SIZE = 38;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int position;
+    private long lastSyncTime;
+
+    public RunJournal(File file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return file.exists() && file.length() > HEADER_SIZE;
+    }
+
+    /**
+     * 开始新的跑步日志（覆盖旧文件）
+     */
+    public void start(long startTime) throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("无法删除旧日志: " + file);
+        }
+        openMapping(REGION_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, startTime);
+        position = HEADER_SIZE;
+        buffer.force();
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    public void appendFix(int latE6, int lngE6, long time) throws IOException {
+        ensureCapacity(FIX_SIZE + 1);
+        int p = position;
+        buffer.putInt(p + 1, latE6);
+        buffer.putInt(p + 5, lngE6);
+        buffer.putLong(p + 9, time);
+        buffer.put(p, TYPE_FIX);
+        position = p + FIX_SIZE;
+    }
+
+    public void appendCheckpoint(long time, long pausedDuration, long pauseStartTime,
+                                 double totalDistance, int stepCount, boolean paused) throws IOException {
+        ensureCapacity(CHECKPOINT_SIZE + 1);
+        int p = position;
+        buffer.putLong(p + 1, time);
+        buffer.putLong(p + 9, pausedDuration);
+        buffer.putLong(p + 17, pauseStartTime);
+        buffer.putDouble(p + 25, totalDistance);
+        buffer.putInt(p + 33, stepCount);
+        buffer.put(p + 37, (byte) (paused ? 1 : 0));
+        buffer.put(p, TYPE_CHECKPOINT);
+        position = p + CHECKPOINT_SIZE;
+    }
+
+    /**
+     * 距上次刷盘超过 {@link #SYNC_INTERVAL_MS} 时调用 force()
+     */
+    public void syncIfDue(long now) {
+        if (buffer != null && now - lastSyncTime >= SYNC_INTERVAL_MS) {
+            buffer.force();
+            lastSyncTime = now;
+        }
+    }
+
+    /**
+     * 跑步结束：关闭并删除日志
+     */
+    public void finish() {
+        close();
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    public void close() {
+        buffer = null;
+        try {
+            if (channel != null) channel.close();
+            if (raf != null) raf.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+        raf = null;
+    }
+
+    /**
+     * 从已有日志恢复跑步状态，定位点按顺序写入 track；日志不存在或已损坏时返回 null。
+     * 恢复后日志保持打开，可继续追加。
+     */
+    public Recovery recover(TrackSink track) throws IOException {
+        if (!exists()) return null;
+        close();
+        openMapping((int) Math.max(file.length(), REGION_SIZE));
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            finish();
+            return null;
+        }
+        Recovery recovery = new Recovery();
+        recovery.startTime = buffer.getLong(8);
+        recovery.lastWriteTime = recovery.startTime;
+        int limit = buffer.capacity();
+        int p = HEADER_SIZE;
+        int fixCount = 0;
+        while (p < limit) {
+            byte type = buffer.get(p);
+            if (type == TYPE_FIX && p + FIX_SIZE <= limit) {
+                long time = buffer.getLong(p + 9);
+                track.addE6(buffer.getInt(p + 1), buffer.getInt(p + 5), time);
+                recovery.lastWriteTime = Math.max(recovery.lastWriteTime, time);
+                fixCount++;
+                p += FIX_SIZE;
+            } else if (type == TYPE_CHECKPOINT && p + CHECKPOINT_SIZE <= limit) {
+                recovery.checkpointTime = buffer.getLong(p + 1);
+                recovery.pausedDuration = buffer.getLong(p + 9);
+                recovery.pauseStartTime = buffer.getLong(p + 17);
+                recovery.totalDistance = buffer.getDouble(p + 25);
+                recovery.stepCount = buffer.getInt(p + 33);
+                recovery.paused = buffer.get(p + 37) == 1;
+                recovery.pointsAtCheckpoint = fixCount;
+                recovery.lastWriteTime = Math.max(recovery.lastWriteTime, recovery.checkpointTime);
+                p += CHECKPOINT_SIZE;
+            } else {
+                break;
+            }
+        }
+        position = p;
+        lastSyncTime = System.currentTimeMillis();
+        return recovery;
+    }
+
+    private void openMapping(int size) throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer == null) {
+            throw new IOException("日志未打开");
+        }
+        if (position + bytes > buffer.capacity()) {
+            // 扩大映射区域；新区域由文件系统补零，保证结尾标记为 TYPE_END
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, buffer.capacity() + REGION_SIZE);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * 从日志恢复出的跑步状态（最后一个检查点 + 之后的定位点）
+     */
+    public static class Recovery {
+        public long startTime;
+        public long checkpointTime;
+        public long pausedDuration;
+        public long pauseStartTime;
+        public double totalDistance;
+        public int stepCount;
+        public boolean paused;
+        /** 最后一个检查点时轨迹中的点数，之后的点需要重新累计距离 */
+        public int pointsAtCheckpoint;
+        /** 日志中最晚的时间（开始时间、定位点和检查点） */
+        public long lastWriteTime;
+
+        /**
+         * 距最后一次写入超过 {@link #MAX_RECOVERY_GAP_MS}（或时钟被调回到开始之前）时不应恢复
+         */
+        public boolean isStale(long now) {
+            return now - lastWriteTime > MAX_RECOVERY_GAP_MS || now < startTime;
+        }
+    }
+}
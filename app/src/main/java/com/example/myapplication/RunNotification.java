@@ -0,0 +1,138 @@
+package com.example.myapplication;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.Locale;
+
+/**
+ * 跑步前台通知
+ *
+ * 复用同一个 Builder 和 PendingIntent；用时由系统计时器（chronometer）显示，不需要每秒刷新。
+ * 只有显示的距离、步数或暂停状态变化时才重新发布，并且限制最短发布间隔（熄屏时更长），
+ * 避免长时间跑步中每秒一次的 system_server 跨进程调用。
+ */
+public class RunNotification {
+
+    public static final String CHANNEL_ID = "running_channel";
+    public static final int NOTIFICATION_ID = 1001;
+
+    /** 亮屏时两次发布的最短间隔 */
+    private static final long MIN_POST_INTERVAL_MS = 5_000;
+    /** 熄屏时两次发布的最短间隔，只有锁屏通知可能被看到 */
+    private static final long SCREEN_OFF_POST_INTERVAL_MS = 60_000;
+
+    private final NotificationManager manager;
+    private final NotificationCompat.Builder builder;
+
+    // 上一次发布的内容
+    private boolean posted = false;
+    private boolean lastPaused;
+    private long lastDistanceDecameters = -1;
+    private int lastSteps = -1;
+    private long lastPostTime;
+
+    public RunNotification(Context context) {
+        manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        createChannel();
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_run)
+                .setContentIntent(pendingIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setShowWhen(false)
+                .setContentTitle("跑步中")
+                .setContentText(formatContent(0, 0));
+    }
+
+    private void createChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && manager != null) {
+            NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID,
+                "跑步记录",
+                NotificationManager.IMPORTANCE_LOW
+            );
+            channel.setDescription("跑步进行中");
+            manager.createNotificationChannel(channel);
+        }
+    }
+
+    /**
+     * 当前内容的通知（startForeground 等需要 Notification 对象的地方使用）
+     */
+    public Notification build() {
+        return builder.build();
+    }
+
+    /**
+     * 按跑步状态更新通知，内容没有变化或距上次发布太近时不发布
+     *
+     * @param elapsedMs 不含暂停的已用时间
+     * @return 是否发布了通知
+     */
+    public boolean update(boolean paused, long elapsedMs, double distanceMeters, int steps, boolean screenOn) {
+        long distanceDecameters = (long) (distanceMeters / 10);
+        boolean stateChanged = !posted || paused != lastPaused;
+        if (!stateChanged && distanceDecameters == lastDistanceDecameters && steps == lastSteps) {
+            return false;
+        }
+        long now = SystemClock.elapsedRealtime();
+        long minInterval = screenOn ? MIN_POST_INTERVAL_MS : SCREEN_OFF_POST_INTERVAL_MS;
+        if (!stateChanged && now - lastPostTime < minInterval) {
+            return false;
+        }
+
+        if (stateChanged) {
+            if (paused) {
+                long seconds = elapsedMs / 1000;
+                builder.setUsesChronometer(false)
+                        .setShowWhen(false)
+                        .setContentTitle(String.format(Locale.CHINA, "已暂停 %02d:%02d:%02d",
+                                seconds / 3600, (seconds % 3600) / 60, seconds % 60));
+            } else {
+                // 计时器从 when 开始计时，把暂停时长折算进起点
+                builder.setUsesChronometer(true)
+                        .setShowWhen(true)
+                        .setWhen(System.currentTimeMillis() - elapsedMs)
+                        .setContentTitle("跑步中");
+            }
+        }
+        builder.setContentText(formatContent(distanceMeters, steps));
+        if (manager != null) {
+            manager.notify(NOTIFICATION_ID, builder.build());
+        }
+
+        posted = true;
+        lastPaused = paused;
+        lastDistanceDecameters = distanceDecameters;
+        lastSteps = steps;
+        lastPostTime = now;
+        return true;
+    }
+
+    /**
+     * 跑步结束后重置，下次 update 一定会发布
+     */
+    public void reset() {
+        posted = false;
+        lastDistanceDecameters = -1;
+        lastSteps = -1;
+    }
+
+    private static String formatContent(double distanceMeters, int steps) {
+        return String.format(Locale.CHINA, "距离: %.2f公里 | 步数: %d", distanceMeters / 1000, steps);
+    }
+}
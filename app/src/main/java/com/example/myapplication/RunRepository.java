@@ -0,0 +1,194 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据库异步访问层
+ *
+ * 页面不再直接调用 DatabaseHelper：所有读写在单个后台 I/O 线程上按提交顺序执行（SQLite 同一时间只有一个写连接，
+ * 多开线程没有收益，按顺序执行还能保证"先写后读"看到最新数据），结果回到主线程投递。
+ * 队列有上限，积压过多时拒绝新任务并回调 onError。页面销毁时取消任务，已取消的任务不再回调。
+ */
+public class RunRepository {
+
+    private static final String TAG = "RunRepository";
+    private static final int QUEUE_CAPACITY = 64;
+
+    /** 在 I/O 线程上执行的数据库操作 */
+    public interface Query<T> {
+        T run(DatabaseHelper db) throws Exception;
+    }
+
+    /** 主线程回调 */
+    public interface Callback<T> {
+        void onResult(T result);
+
+        default void onError(Exception e) {
+            Log.e(TAG, "数据库操作失败", e);
+        }
+    }
+
+    /**
+     * 已提交的任务，可取消。取消后不会再回调；已开始执行的数据库操作会执行完（不中断 SQLite）
+     */
+    public static final class Task {
+        private volatile boolean cancelled;
+        // 结果已投递（或不需要投递），之后不会再回调
+        private volatile boolean finished;
+        private volatile Future<?> future;
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * 页面持有的一组任务，在 onDestroyView / onDestroy 中统一取消（仅在主线程访问）
+     */
+    public static final class TaskGroup {
+        private final List<Task> tasks = new ArrayList<>();
+
+        public Task add(Task task) {
+            // 顺便清理已回调完的任务，避免列表一直增长
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                if (tasks.get(i).finished) {
+                    tasks.remove(i);
+                }
+            }
+            tasks.add(task);
+            return task;
+        }
+
+        public void cancelAll() {
+            for (Task task : tasks) {
+                task.cancel();
+            }
+            tasks.clear();
+        }
+    }
+
+    private static RunRepository instance;
+
+    public static synchronized RunRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new RunRepository(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+
+    RunRepository(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread thread = new Thread(() -> {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }, "RunRepository-io");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * 在 I/O 线程上执行 query，结果在主线程交给 callback（callback 可为 null）
+     */
+    public <T> Task execute(Query<T> query, Callback<T> callback) {
+        Task task = new Task();
+        try {
+            task.future = executor.submit(() -> {
+                if (task.cancelled) return;
+                T result;
+                try {
+                    result = query.run(dbHelper);
+                } catch (Exception e) {
+                    deliverError(task, callback, e);
+                    return;
+                }
+                if (callback == null) {
+                    task.finished = true;
+                    return;
+                }
+                mainHandler.post(() -> {
+                    task.finished = true;
+                    if (!task.cancelled) callback.onResult(result);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "I/O 队列已满，拒绝任务");
+            deliverError(task, callback, e);
+        }
+        return task;
+    }
+
+    private <T> void deliverError(Task task, Callback<T> callback, Exception e) {
+        if (callback == null) {
+            task.finished = true;
+            Log.e(TAG, "数据库操作失败", e);
+            return;
+        }
+        mainHandler.post(() -> {
+            task.finished = true;
+            if (!task.cancelled) callback.onError(e);
+        });
+    }
+
+    // ==================== 常用操作 ====================
+
+    public Task getRunningRecordsPage(int userId, String afterDate, int afterId, int limit,
+                                      Callback<List<DatabaseHelper.RunningRecord>> callback) {
+        return execute(db -> db.getRunningRecordsPage(userId, afterDate, afterId, limit), callback);
+    }
+
+    public Task getAllRunningRecords(Callback<List<DatabaseHelper.RunningRecord>> callback) {
+        return execute(DatabaseHelper::getAllRunningRecords, callback);
+    }
+
+    public Task getSplits(int runId, Callback<List<SplitTracker.Split>> callback) {
+        return execute(db -> db.getSplits(runId), callback);
+    }
+
+    public Task getUnsyncedCount(Callback<Integer> callback) {
+        return execute(DatabaseHelper::getUnsyncedCount, callback);
+    }
+
+    public Task insertRunningRecord(int userId, String date, long startTime, long endTime, double distance,
+                                    int duration, int steps, int calories, double pace, byte[] track,
+                                    List<SplitTracker.Split> splits, Callback<Long> callback) {
+        return execute(db -> db.insertRunningRecord(userId, date, startTime, endTime, distance, duration, steps,
+                calories, pace, track, splits), callback);
+    }
+
+    public Task markAsSynced(int localId, int serverId, Callback<Integer> callback) {
+        return execute(db -> db.markAsSynced(localId, serverId), callback);
+    }
+
+    public Task insertSurveyResult(int userId, String frequency, String purpose, int satisfaction,
+                                   String suggestion, Callback<Long> callback) {
+        return execute(db -> db.insertSurveyResult(userId, frequency, purpose, satisfaction, suggestion),
+                callback);
+    }
+}
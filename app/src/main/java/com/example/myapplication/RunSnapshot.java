@@ -0,0 +1,40 @@
+package com.example.myapplication;
+
+/**
+ * 跑步状态快照（不可变）
+ *
+ * 由 RunningService 发布，UI 只读取快照，不再通过多个 getter 读取服务中可变的状态。
+ */
+public final class RunSnapshot {
+
+    public final boolean running;
+    public final boolean paused;
+    public final long elapsedSeconds;
+    /** 距离（米） */
+    public final double distance;
+    public final int steps;
+    /** 配速（分钟/公里），无有效配速时为0 */
+    public final double pace;
+    public final int calories;
+    /** 轨迹版本号，每接受一个定位点加一；UI 据此判断是否需要重绘轨迹 */
+    public final int trackVersion;
+    public final boolean hasLocation;
+    public final double latitude;
+    public final double longitude;
+
+    public RunSnapshot(boolean running, boolean paused, long elapsedSeconds, double distance, int steps,
+                       double pace, int calories, int trackVersion,
+                       boolean hasLocation, double latitude, double longitude) {
+        this.running = running;
+        this.paused = paused;
+        this.elapsedSeconds = elapsedSeconds;
+        this.distance = distance;
+        this.steps = steps;
+        this.pace = pace;
+        this.calories = calories;
+        this.trackVersion = trackVersion;
+        this.hasLocation = hasLocation;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+}
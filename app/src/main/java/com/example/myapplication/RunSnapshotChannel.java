@@ -0,0 +1,76 @@
+package com.example.myapplication;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 快照合并通道
+ *
+ * 发布方可在任意线程、任意频率发布快照，只保留最新的一个；
+ * 订阅方在主线程上每帧最多收到一次。没有订阅方（页面不可见）时只保存最新快照，不向主线程投递任何消息。
+ */
+public class RunSnapshotChannel {
+
+    public interface Consumer {
+        void onSnapshot(RunSnapshot snapshot);
+    }
+
+    private final AtomicReference<RunSnapshot> latest = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile Consumer consumer;
+    // 仅在主线程访问
+    private RunSnapshot delivered;
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled.set(false);
+            Consumer c = consumer;
+            RunSnapshot snapshot = latest.get();
+            if (c != null && snapshot != null && snapshot != delivered) {
+                delivered = snapshot;
+                c.onSnapshot(snapshot);
+            }
+        }
+    };
+
+    private final Runnable scheduleFrame = new Runnable() {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    };
+
+    public void publish(RunSnapshot snapshot) {
+        latest.set(snapshot);
+        if (consumer != null && scheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    public RunSnapshot getLatest() {
+        return latest.get();
+    }
+
+    /**
+     * 订阅（主线程调用），下一帧立即收到最新快照
+     */
+    public void subscribe(Consumer c) {
+        consumer = c;
+        delivered = null;
+        if (latest.get() != null && scheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleFrame);
+        }
+    }
+
+    public void unsubscribe(Consumer c) {
+        if (consumer == c) {
+            consumer = null;
+        }
+    }
+}
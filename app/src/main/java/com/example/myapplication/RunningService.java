@@ -1,82 +1,115 @@
 package com.example.myapplication;
 
-import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.PowerManager;
+import android.os.Process;
 import android.util.Log;
 
-import androidx.core.app.NotificationCompat;
-
 import com.amap.api.location.AMapLocation;
 import com.amap.api.location.AMapLocationClient;
 import com.amap.api.location.AMapLocationClientOption;
 import com.amap.api.location.AMapLocationListener;
-import com.amap.api.maps.model.LatLng;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.Locale;
 
-public class RunningService extends Service implements AMapLocationListener, SensorEventListener {
+/**
+ * 跑步前台服务
+ *
+ * 所有跑步状态归跟踪线程（"RunTracking"）所有：定位回调、计步回调、计时器和对外的开始/暂停/结束操作
+ * 都投递到该线程执行，主线程的布局、地图绘制或 GC 停顿不会推迟定位点处理。
+ * UI 只通过 {@link RunSnapshotChannel} 接收发布的结果；下面几个 volatile 状态字段只供 UI 读取。
+ */
+public class RunningService extends Service implements AMapLocationListener {
     
     private static final String TAG = "RunningService";
 
-    private static final String CHANNEL_ID = "running_channel";
-    private static final int NOTIFICATION_ID = 1001;
+    private static final String JOURNAL_FILE = "run_journal.bin";
+    private static final long CHECKPOINT_INTERVAL_MS = 5000;
+    
+    // 轨迹抽稀容差配置（米）
+    public static final String PREF_RUN_SETTINGS = "run_settings";
+    public static final String KEY_STORAGE_TOLERANCE = "track_storage_tolerance_m";
+    public static final String KEY_MAP_TOLERANCE = "track_map_tolerance_m";
+    // 定位采样档位（AdaptiveSamplingController.Profile 名称）
+    public static final String KEY_SAMPLING_PROFILE = "gps_sampling_profile";
+    // 自定义分段距离（米），0 表示只统计每公里分段
+    public static final String KEY_SPLIT_DISTANCE = "split_distance_m";
+    public static final float DEFAULT_SPLIT_DISTANCE = 400f;
 
     private final IBinder binder = new RunningBinder();
     private AMapLocationClient locationClient;
+    private AMapLocationClientOption locationOption;
+    // 按速度、精度、暂停和屏幕状态调整定位间隔和模式
+    private final AdaptiveSamplingController sampling =
+            new AdaptiveSamplingController(AdaptiveSamplingController.Profile.BALANCED);
+    private boolean screenOn = true;
+    private RunNotification runNotification;
     
-    // 跑步状态
-    private boolean isRunning = false;
-    private boolean isPaused = false;
-    private long startTime = 0;
-    private long pausedDuration = 0;
+    // 跑步状态（只在跟踪线程写入）
+    private volatile boolean isRunning = false;
+    private volatile boolean isPaused = false;
+    private volatile long startTime = 0;
+    private volatile long pausedDuration = 0;
     private long pauseStartTime = 0;
-    private int stepCount = 0;
-    private double totalDistance = 0;
-    private LatLng lastLocation = null;
-    private List<LatLng> trackPoints = new ArrayList<>();
+    private volatile int stepCount = 0;
+    private volatile double totalDistance = 0;
+    private boolean hasLastLocation = false;
+    private double lastLat = 0, lastLng = 0;
+    // 轨迹分层存储（全精度 / 存储 / 地图），均为分块基本类型数组
+    private final TrackTiers tracks = new TrackTiers();
     
-    // 卡尔曼滤波参数
-    private double kalmanLat = 0, kalmanLng = 0;
-    private double kalmanVariance = 1;
-    private static final double KALMAN_Q = 0.00001;
-    private boolean kalmanInitialized = false;
-    private long lastLocationTime = 0;
-    private float lastSpeed = 0;
+    // 定位点过滤：异常点门限 → 静止检测 → 卡尔曼滤波
+    private final GpsFilterChain gpsFilter = new GpsFilterChain();
+    // 滚动窗口配速（10秒 / 30秒 / 最近1公里 / 平均移动配速）
+    private final PaceEngine paceEngine = new PaceEngine();
+    // 每公里和自定义距离分段，随距离累计增量计算
+    private SplitTracker splitTracker = new SplitTracker();
     
-    private Handler handler = new Handler(Looper.getMainLooper());
+    // 跟踪线程：处理定位、计步和计时
+    private HandlerThread trackingThread;
+    private Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private Runnable timerRunnable;
-    private OnRunningUpdateListener listener;
+    // 已处理的定位回调数（压力测试用）
+    volatile int processedFixCount = 0;
+    // UI 通过快照通道获取跑步状态，每帧最多一次
+    private final RunSnapshotChannel snapshots = new RunSnapshotChannel();
+    private int trackVersion = 0;
     
-    // 计步传感器
-    private SensorManager sensorManager;
-    private Sensor accelerometer;
-    private static final float STEP_THRESHOLD = 5.0f;
-    private static final long MIN_STEP_INTERVAL_MS = 450;
-    private float lastMagnitude = 0;
-    private long lastStepTimeMs = 0;
-    private boolean isRising = false;
+    // 计步：优先硬件计步器，在独立线程处理传感器事件
+    private StepCounterEngine stepEngine;
     
     // WakeLock保持CPU运行
     private PowerManager.WakeLock wakeLock;
+    
+    // 跑步日志：进程被杀后可从日志恢复
+    private RunJournal journal;
+    private long lastCheckpointTime = 0;
+
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onScreenStateChanged(Intent.ACTION_SCREEN_ON.equals(intent.getAction()));
+        }
+    };
+
+    /** 结束跑步的结果回调，在主线程调用 */
+    public interface StopCallback {
+        void onStopped(RunResult result);
+    }
 
     public class RunningBinder extends Binder {
         public RunningService getService() {
@@ -84,27 +117,32 @@ public class RunningService extends Service implements AMapLocationListener, Sen
         }
     }
 
-    public interface OnRunningUpdateListener {
-        void onTimeUpdate(long elapsedSeconds);
-        void onDistanceUpdate(double distance);
-        void onLocationUpdate(LatLng location, List<LatLng> track);
-    }
-
     @Override
     public void onCreate() {
         super.onCreate();
-        createNotificationChannel();
-        initLocation();
+        trackingThread = new HandlerThread("RunTracking", Process.THREAD_PRIORITY_FOREGROUND);
+        trackingThread.start();
+        handler = new Handler(trackingThread.getLooper());
+        runNotification = new RunNotification(this);
+        // 在跟踪线程上创建定位客户端，定位回调直接投递到该线程的 Looper
+        handler.post(this::initLocation);
         initSensors();
         initWakeLock();
+        initScreenState();
+        journal = new RunJournal(new File(getFilesDir(), JOURNAL_FILE));
         
         timerRunnable = new Runnable() {
             @Override
             public void run() {
                 if (isRunning && !isPaused) {
-                    long elapsed = (System.currentTimeMillis() - startTime - pausedDuration) / 1000;
-                    if (listener != null) {
-                        listener.onTimeUpdate(elapsed);
+                    long now = System.currentTimeMillis();
+                    publishSnapshot();
+                    if (now - lastCheckpointTime >= CHECKPOINT_INTERVAL_MS) {
+                        writeCheckpoint(now);
+                    }
+                    journal.syncIfDue(now);
+                    if (sampling.onTick(now)) {
+                        applySamplingDecision();
                     }
                     updateNotification();
                     handler.postDelayed(this, 1000);
@@ -123,44 +161,50 @@ public class RunningService extends Service implements AMapLocationListener, Sen
         }
     }
     
-    private void initSensors() {
-        sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
-        accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+    private void initScreenState() {
+        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        screenOn = powerManager == null || powerManager.isInteractive();
+        sampling.setScreenOn(screenOn, System.currentTimeMillis());
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenReceiver, filter, null, handler);
     }
 
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                CHANNEL_ID,
-                "跑步记录",
-                NotificationManager.IMPORTANCE_LOW
-            );
-            channel.setDescription("跑步进行中");
-            NotificationManager manager = getSystemService(NotificationManager.class);
-            if (manager != null) {
-                manager.createNotificationChannel(channel);
-            }
+    private void onScreenStateChanged(boolean on) {
+        screenOn = on;
+        if (isRunning && sampling.setScreenOn(on, System.currentTimeMillis())) {
+            applySamplingDecision();
         }
     }
 
+    private void initSensors() {
+        stepEngine = new StepCounterEngine(this, handler, steps -> {
+            if (isRunning && !isPaused) {
+                stepCount += steps;
+                publishSnapshot();
+            }
+        });
+    }
+
     private void initLocation() {
         try {
             AMapLocationClient.updatePrivacyShow(this, true, true);
             AMapLocationClient.updatePrivacyAgree(this, true);
             locationClient = new AMapLocationClient(this);
             locationClient.setLocationListener(this);
-            AMapLocationClientOption option = new AMapLocationClientOption();
-            option.setLocationMode(AMapLocationClientOption.AMapLocationMode.Hight_Accuracy);
-            // 减小定位间隔到500ms，提高轨迹实时性和配速计算精度
-            option.setInterval(500);
-            option.setNeedAddress(false);
+            locationOption = new AMapLocationClientOption();
+            // 定位模式和间隔由 AdaptiveSamplingController 决定，见 applySamplingDecision()
+            locationOption.setLocationMode(AMapLocationClientOption.AMapLocationMode.Hight_Accuracy);
+            locationOption.setInterval(sampling.getInterval());
+            locationOption.setNeedAddress(false);
             // 启用后台定位
-            option.setLocationCacheEnable(false);
+            locationOption.setLocationCacheEnable(false);
             // 启用传感器辅助定位，提高精度
-            option.setSensorEnable(true);
-            locationClient.setLocationOption(option);
+            locationOption.setSensorEnable(true);
+            locationClient.setLocationOption(locationOption);
             // 启用后台定位模式
-            locationClient.enableBackgroundLocation(NOTIFICATION_ID, createNotification());
+            locationClient.enableBackgroundLocation(RunNotification.NOTIFICATION_ID, runNotification.build());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -173,64 +217,211 @@ public class RunningService extends Service implements AMapLocationListener, Sen
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        startForeground(NOTIFICATION_ID, createNotification());
+        startForeground(RunNotification.NOTIFICATION_ID, runNotification.build());
+        // intent 为 null：进程被杀后由系统重启（START_STICKY），只有这种情况从日志恢复跑步
+        boolean stickyRestart = intent == null;
+        handler.post(() -> {
+            if (isRunning || !journal.exists()) return;
+            if (!stickyRestart) {
+                // 用户开始新的跑步：强制停止、重启等遗留的日志不能并入新跑步
+                Log.w(TAG, "开始新跑步，丢弃遗留的跑步日志");
+                journal.finish();
+            } else if (!recoverFromJournal()) {
+                // 没有可恢复的跑步，不保留空的前台服务（之后又有新的启动命令时 stopSelf(startId) 不生效）
+                mainHandler.post(() -> {
+                    if (isRunning) return;
+                    stopForeground(true);
+                    stopSelf(startId);
+                });
+            }
+        });
         return START_STICKY;
     }
 
-    private Notification createNotification() {
-        Intent intent = new Intent(this, MainActivity.class);
-        intent.setFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    /**
+     * @return 是否恢复了跑步
+     */
+    private boolean recoverFromJournal() {
+        long begin = System.currentTimeMillis();
+        loadRunSettings();
+        tracks.clear();
+        RunJournal.Recovery recovery;
+        try {
+            recovery = journal.recover(tracks);
+        } catch (IOException e) {
+            Log.e(TAG, "跑步日志恢复失败", e);
+            journal.finish();
+            tracks.clear();
+            return false;
+        }
+        if (recovery == null) return false;
+        if (recovery.isStale(System.currentTimeMillis())) {
+            Log.w(TAG, "跑步日志最后写入于 " + recovery.lastWriteTime + "，已过期，丢弃");
+            journal.finish();
+            tracks.clear();
+            return false;
+        }
+        
+        startTime = recovery.startTime;
+        pausedDuration = recovery.pausedDuration;
+        isPaused = recovery.paused;
+        pauseStartTime = recovery.pauseStartTime;
+        stepCount = recovery.stepCount;
+        totalDistance = recovery.totalDistance;
+        // 最后一个检查点之后的点重新累计距离
+        TrackBuffer full = tracks.full();
+        int count = full.size();
+        if (count > 0) {
+            DistanceEngine engine = new DistanceEngine(full.getLatitude(0), full.getLongitude(0));
+            totalDistance += engine.pathLength(full, Math.max(recovery.pointsAtCheckpoint - 1, 0), count);
+            hasLastLocation = true;
+            lastLat = full.getLatitude(count - 1);
+            lastLng = full.getLongitude(count - 1);
+            gpsFilter.seed(lastLat, lastLng, full.getTime(count - 1));
+            replaySplits(engine, full);
+        } else {
+            gpsFilter.reset();
+        }
+        resetPaceWindow();
+        isRunning = true;
+        trackVersion = count;
+        lastCheckpointTime = System.currentTimeMillis();
+        startTracking();
+        Log.d(TAG, "从日志恢复跑步: points=" + count + ", distance=" + totalDistance
+                + ", 耗时" + (System.currentTimeMillis() - begin) + "ms");
+        return true;
+    }
 
-        long elapsed = isRunning ? (System.currentTimeMillis() - startTime - pausedDuration) / 1000 : 0;
-        String timeStr = String.format(Locale.CHINA, "%02d:%02d:%02d", 
-                elapsed / 3600, (elapsed % 3600) / 60, elapsed % 60);
-        String distStr = String.format(Locale.CHINA, "%.2f公里", totalDistance / 1000);
+    /**
+     * 恢复后由轨迹重建分段。日志中没有每个点的运动时间和步数：
+     * 暂停时长按墙钟时间均摊，步数按距离比例分配，距离按恢复的总距离缩放，结果是近似值。
+     */
+    private void replaySplits(DistanceEngine engine, TrackBuffer full) {
+        int count = full.size();
+        double[] cumulative = new double[count];
+        double pathTotal = engine.cumulative(full, cumulative);
+        long wallEnd = isPaused ? pauseStartTime : full.getTime(count - 1);
+        long wallElapsed = wallEnd - startTime;
+        long movingElapsed = Math.max(0, wallElapsed - pausedDuration);
+        double timeScale = wallElapsed > 0 ? (double) movingElapsed / wallElapsed : 1;
+        double distanceScale = pathTotal > 0 ? totalDistance / pathTotal : 0;
+        for (int i = 0; i < count; i++) {
+            double distance = cumulative[i] * distanceScale;
+            long movingTime = Math.round(Math.max(0, full.getTime(i) - startTime) * timeScale);
+            int steps = totalDistance > 0 ? (int) Math.round(stepCount * distance / totalDistance) : 0;
+            splitTracker.onProgress(movingTime, distance, steps);
+        }
+    }
 
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("跑步中 " + timeStr)
-                .setContentText("距离: " + distStr + " | 步数: " + stepCount)
-                .setSmallIcon(R.drawable.ic_run)
-                .setContentIntent(pendingIntent)
-                .setOngoing(true)
-                .build();
+    private void loadRunSettings() {
+        SharedPreferences prefs = getSharedPreferences(PREF_RUN_SETTINGS, MODE_PRIVATE);
+        tracks.setTolerances(
+                prefs.getFloat(KEY_STORAGE_TOLERANCE, (float) TrackTiers.DEFAULT_STORAGE_TOLERANCE),
+                prefs.getFloat(KEY_MAP_TOLERANCE, (float) TrackTiers.DEFAULT_MAP_TOLERANCE));
+        sampling.setProfile(AdaptiveSamplingController.Profile.fromName(
+                prefs.getString(KEY_SAMPLING_PROFILE, null)));
+        double splitDistance = prefs.getFloat(KEY_SPLIT_DISTANCE, DEFAULT_SPLIT_DISTANCE);
+        splitTracker = splitDistance == SplitTracker.KILOMETER
+                ? new SplitTracker()
+                : new SplitTracker(SplitTracker.KILOMETER, splitDistance);
     }
 
-    private void updateNotification() {
-        NotificationManager manager = getSystemService(NotificationManager.class);
-        if (manager != null) {
-            manager.notify(NOTIFICATION_ID, createNotification());
+    /**
+     * 把采样决策应用到定位客户端
+     */
+    private void applySamplingDecision() {
+        if (locationClient == null || locationOption == null) return;
+        AMapLocationClientOption.AMapLocationMode mode;
+        switch (sampling.getMode()) {
+            case DEVICE_SENSORS:
+                mode = AMapLocationClientOption.AMapLocationMode.Device_Sensors;
+                break;
+            case BATTERY_SAVING:
+                mode = AMapLocationClientOption.AMapLocationMode.Battery_Saving;
+                break;
+            default:
+                mode = AMapLocationClientOption.AMapLocationMode.Hight_Accuracy;
+                break;
+        }
+        locationOption.setLocationMode(mode);
+        locationOption.setInterval(sampling.getInterval());
+        locationClient.setLocationOption(locationOption);
+        // 定位进行中重新调用 startLocation 使新参数生效
+        locationClient.startLocation();
+        Log.d(TAG, "定位采样: " + sampling.getMode() + ", 间隔" + sampling.getInterval() + "ms");
+    }
+
+    private void writeCheckpoint(long now) {
+        lastCheckpointTime = now;
+        try {
+            journal.appendCheckpoint(now, pausedDuration, isPaused ? pauseStartTime : 0,
+                    totalDistance, stepCount, isPaused);
+        } catch (IOException e) {
+            Log.e(TAG, "写入检查点失败", e);
+        }
+    }
+
+    private void appendFixToJournal(double lat, double lng, long time) {
+        try {
+            journal.appendFix(TrackBuffer.toE6(lat), TrackBuffer.toE6(lng), time);
+        } catch (IOException e) {
+            Log.e(TAG, "写入跑步日志失败", e);
         }
     }
 
+    /**
+     * 更新前台通知；内容未变化时不会产生跨进程调用
+     */
+    private void updateNotification() {
+        long now = isPaused ? pauseStartTime : System.currentTimeMillis();
+        long elapsedMs = Math.max(0, now - startTime - pausedDuration);
+        runNotification.update(isPaused, elapsedMs, totalDistance, stepCount, screenOn);
+    }
+
     public void startRunning() {
+        handler.post(this::doStartRunning);
+    }
+
+    private void doStartRunning() {
+        if (isRunning) return;
         isRunning = true;
         isPaused = false;
         startTime = System.currentTimeMillis();
         pausedDuration = 0;
         totalDistance = 0;
         stepCount = 0;
-        trackPoints.clear();
-        lastLocation = null;
-        kalmanInitialized = false;
-        kalmanVariance = 1;
-        
-        // 重置计步参数
-        lastStepTimeMs = 0;
-        lastMagnitude = 0;
-        isRising = false;
+        loadRunSettings();
+        tracks.clear();
+        trackVersion = 0;
+        hasLastLocation = false;
+        gpsFilter.reset();
         
         // 重置配速窗口
         resetPaceWindow();
         
-        if (locationClient != null) {
-            locationClient.startLocation();
+        try {
+            journal.start(startTime);
+        } catch (IOException e) {
+            Log.e(TAG, "创建跑步日志失败", e);
         }
+        lastCheckpointTime = startTime;
         
-        // 启动传感器监听
-        if (sensorManager != null && accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_FASTEST);
+        startTracking();
+    }
+
+    /**
+     * 开始定位、计步、计时（新跑步和从日志恢复共用）
+     */
+    private void startTracking() {
+        long now = System.currentTimeMillis();
+        runNotification.reset();
+        sampling.startRun(now);
+        sampling.setPaused(isPaused, now);
+        applySamplingDecision();
+        
+        // 启动计步（暂停状态下恢复的跑步等继续时再启动）
+        if (!isPaused) {
+            stepEngine.start();
         }
         
         // 获取WakeLock保持CPU运行
@@ -239,34 +430,83 @@ public class RunningService extends Service implements AMapLocationListener, Sen
             Log.d(TAG, "WakeLock acquired");
         }
         
+        // 同时只有一个计时器链
+        handler.removeCallbacks(timerRunnable);
         handler.post(timerRunnable);
         updateNotification();
+        publishSnapshot();
     }
 
     public void pauseRunning() {
-        if (!isPaused) {
+        handler.post(this::doPause);
+    }
+
+    public void resumeRunning() {
+        handler.post(this::doResume);
+    }
+
+    public void togglePause() {
+        handler.post(() -> {
+            if (isPaused) {
+                doResume();
+            } else {
+                doPause();
+            }
+        });
+    }
+
+    private void doPause() {
+        if (isRunning && !isPaused) {
             isPaused = true;
             pauseStartTime = System.currentTimeMillis();
+            handler.removeCallbacks(timerRunnable);
+            // 冲刷出的是暂停前的步数
+            stepCount += stepEngine.stop();
+            writeCheckpoint(pauseStartTime);
+            if (sampling.setPaused(true, pauseStartTime)) {
+                applySamplingDecision();
+            }
+            updateNotification();
+            publishSnapshot();
         }
     }
 
-    public void resumeRunning() {
-        if (isPaused) {
+    private void doResume() {
+        if (isRunning && isPaused) {
             isPaused = false;
             pausedDuration += System.currentTimeMillis() - pauseStartTime;
+            // 暂停期间可能已经走开，滤波器状态和上一个点都已过时：
+            // 继续后的第一个点只作为新起点，不与暂停前的点连线计入距离
+            gpsFilter.reset();
+            hasLastLocation = false;
+            stepEngine.start();
+            writeCheckpoint(System.currentTimeMillis());
+            if (sampling.setPaused(false, System.currentTimeMillis())) {
+                applySamplingDecision();
+            }
+            updateNotification();
+            publishSnapshot();
+            // 暂停不到 1 秒就继续时，旧的计时消息可能还在队列中
+            handler.removeCallbacks(timerRunnable);
             handler.post(timerRunnable);
         }
     }
 
-    public void togglePause() {
-        if (isPaused) {
-            resumeRunning();
-        } else {
-            pauseRunning();
-        }
+    /**
+     * 结束跑步；结果在跟踪线程上生成，通过回调在主线程返回
+     */
+    public void stopRunning(StopCallback callback) {
+        handler.post(() -> {
+            RunResult result = doStop();
+            mainHandler.post(() -> {
+                stopForeground(true);
+                stopSelf();
+                callback.onStopped(result);
+            });
+        });
     }
 
-    public RunResult stopRunning() {
+    private RunResult doStop() {
         isRunning = false;
         isPaused = false;
         handler.removeCallbacks(timerRunnable);
@@ -274,11 +514,12 @@ public class RunningService extends Service implements AMapLocationListener, Sen
         if (locationClient != null) {
             locationClient.stopLocation();
         }
+        sampling.stopRun(System.currentTimeMillis());
+        Log.d(TAG, "定位统计: 回调" + sampling.getCallbackCount() + "次, GPS工作"
+                + sampling.getGpsMillis() / 1000 + "秒");
         
-        // 停止传感器监听
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
-        }
+        // 停止计步，FIFO 中尚未上报的步数计入本次跑步
+        stepCount += stepEngine.stop();
         
         // 释放WakeLock
         if (wakeLock != null && wakeLock.isHeld()) {
@@ -295,17 +536,46 @@ public class RunningService extends Service implements AMapLocationListener, Sen
         
         int calories = calculateCalories();
         double pace = totalDistance > 0 ? (duration / 60.0) / (totalDistance / 1000) : 0;
+        splitTracker.finish(elapsed, totalDistance, stepCount);
+        List<SplitTracker.Split> splits = splitTracker.getAllSplits();
         
-        StringBuilder trackStr = new StringBuilder();
-        for (LatLng p : trackPoints) {
-            trackStr.append(p.latitude).append(",").append(p.longitude).append(";");
-        }
-        String date = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.CHINA).format(new Date());
-        
-        stopForeground(true);
-        stopSelf();
+        // 入库和上传使用抽稀后的存储层（进程重启后由日志重建），随后删除日志
+        tracks.flush();
+        byte[] track = TrackCodec.encode(tracks.storage());
+        Log.d(TAG, "轨迹抽稀: 全精度" + tracks.full().size() + "点, 存储" + tracks.storage().size()
+                + "点(" + track.length + "字节), 地图" + tracks.map().size() + "点");
+        long endTime = System.currentTimeMillis();
+        String date = TimeRange.formatDate(endTime);
+        publishSnapshot();
         
-        return new RunResult(date, totalDistance, duration, stepCount, calories, pace, trackStr.toString());
+        RunResult result = new RunResult(date, totalDistance, duration, stepCount, calories, pace, track, splits);
+        result.startTime = startTime;
+        result.endTime = endTime;
+        // 入库成功后才删除日志：入库前进程被杀时，系统重启服务仍可从日志恢复这次跑步
+        persist(result);
+        if (result.localId > 0) {
+            journal.finish();
+        } else {
+            journal.close();
+        }
+        return result;
+    }
+
+    /**
+     * 在跟踪线程上保存跑步记录及分段（不经过 RunRepository 的队列，队列满时也不会丢失）
+     */
+    private void persist(RunResult result) {
+        int currentUserId = CurrentUser.getId(this);
+        result.userId = currentUserId > 0 ? currentUserId : 1;
+        try {
+            result.localId = DatabaseHelper.getInstance(this).insertRunningRecord(result.userId, result.date,
+                    result.startTime, result.endTime, result.distance, result.duration, result.steps,
+                    result.calories, result.pace, result.track, result.splits);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "保存跑步记录失败", e);
+            result.localId = -1;
+        }
+        Log.d(TAG, "保存到SQLite, id=" + result.localId + ", 分段" + result.splits.size() + "个");
     }
 
     private int calculateCalories() {
@@ -316,187 +586,86 @@ public class RunningService extends Service implements AMapLocationListener, Sen
     @Override
     public void onLocationChanged(AMapLocation location) {
         if (location == null || location.getErrorCode() != 0) return;
-        if (!isRunning || isPaused) return;
+        if (Looper.myLooper() != handler.getLooper()) {
+            handler.post(() -> onLocationChanged(location));
+            return;
+        }
+        try {
+            handleLocation(location);
+        } finally {
+            processedFixCount++;
+        }
+    }
+
+    private void handleLocation(AMapLocation location) {
+        if (!isRunning) return;
         
-        double lat = location.getLatitude();
-        double lng = location.getLongitude();
-        float accuracy = location.getAccuracy();
         float speed = location.getSpeed(); // GPS提供的速度 (m/s)
         long currentTime = System.currentTimeMillis();
-        
-        // 使用原始位置进行显示（提高实时性），使用滤波位置计算距离
-        LatLng rawLocation = new LatLng(lat, lng);
-        
-        if (lastLocation == null) {
-            // 第一个点：初始化
-            trackPoints.add(rawLocation);
-            lastLocation = rawLocation;
-            lastLocationTime = currentTime;
-            lastSpeed = speed;
-            // 初始化卡尔曼滤波
-            kalmanLat = lat;
-            kalmanLng = lng;
-            kalmanVariance = accuracy * accuracy;
-            kalmanInitialized = true;
-            if (listener != null) {
-                listener.onLocationUpdate(rawLocation, trackPoints);
-            }
+        if (sampling.onFix(speed, location.getAccuracy(), currentTime)) {
+            applySamplingDecision();
+        }
+        if (isPaused) return;
+        int result = gpsFilter.process(location.getLatitude(), location.getLongitude(),
+                location.getAccuracy(), speed, currentTime);
+        if (result != GpsFilterChain.ACCEPTED) {
+            // 跳点或原地静止：不记录轨迹，不累计距离
             return;
         }
         
-        // 计算原始距离（用于距离累计）
-        double rawDist = calculateDistance(lastLocation, rawLocation);
-        long timeDiff = currentTime - lastLocationTime;
-        
-        // 使用GPS速度计算距离（更准确）
-        double gpsBasedDist = speed * timeDiff / 1000.0; // 转换为米
-        
-        // 验证GPS点有效性（放宽条件）
-        boolean isValidPoint = accuracy < 30 && timeDiff > 0;
+        double lat = gpsFilter.latitude;
+        double lng = gpsFilter.longitude;
+        tracks.add(lat, lng, currentTime);
+        appendFixToJournal(lat, lng, currentTime);
         
-        // 防止异常跳跃：如果计算距离远大于GPS速度推算的距离，使用GPS速度
-        double finalDist = rawDist;
-        if (speed > 0.5 && rawDist > gpsBasedDist * 2) {
-            // 距离异常，使用GPS速度推算
-            finalDist = gpsBasedDist;
+        if (hasLastLocation) {
+            totalDistance += gpsFilter.distance;
         }
-        
-        // 过滤静止状态的噪声
-        if (speed < 0.3 && rawDist < 3) {
-            // 几乎静止，不更新
-            return;
+        long movingTime = Math.max(0, currentTime - startTime - pausedDuration);
+        paceEngine.add(movingTime, totalDistance);
+        if (splitTracker.onProgress(movingTime, totalDistance, stepCount)) {
+            Log.d(TAG, "分段: " + splitTracker.getAllSplits().size() + "个, distance=" + totalDistance);
         }
         
-        // 过滤异常高速（超过12m/s约43km/h）
-        double calcSpeed = timeDiff > 0 ? (rawDist / timeDiff * 1000) : 0;
-        if (calcSpeed > 12) {
-            return;
-        }
+        hasLastLocation = true;
+        lastLat = lat;
+        lastLng = lng;
         
-        if (isValidPoint) {
-            // 始终添加到轨迹（提高轨迹实时性）
-            trackPoints.add(rawLocation);
-            
-            // 累计距离（使用校正后的距离）
-            if (finalDist > 0.5) {
-                totalDistance += finalDist;
-                
-                // 使用GPS速度计算实时配速（更准确）
-                if (speed > 0.5) {
-                    // 配速 = 1000 / speed / 60 (分钟/公里)
-                    // speed是m/s，转换为分钟/公里
-                    realtimePace = (1000.0 / speed) / 60.0;
-                    realtimePace = Math.max(MIN_PACE, Math.min(MAX_PACE, realtimePace));
-                }
-                
-                if (listener != null) {
-                    listener.onDistanceUpdate(totalDistance);
-                }
-            }
-            
-            lastLocation = rawLocation;
-            lastLocationTime = currentTime;
-            lastSpeed = speed;
-            
-            // 更新UI位置
-            if (listener != null) {
-                listener.onLocationUpdate(rawLocation, trackPoints);
-            }
-        }
-    }
-    
-    // 实时配速（分钟/公里）- 基于GPS速度计算
-    private double realtimePace = 0;
-    private static final double MIN_PACE = 2.0;  // 最快2分钟/公里
-    private static final double MAX_PACE = 30.0; // 最慢30分钟/公里
-    
-    public double getRealtimePace() {
-        return realtimePace;
+        // 更新UI（距离、位置、轨迹）
+        trackVersion++;
+        publishSnapshot();
     }
     
     /**
      * 重置配速（跑步开始时调用）
      */
     private void resetPaceWindow() {
-        realtimePace = 0;
-    }
-
-    private LatLng applyKalmanFilter(double lat, double lng, float accuracy, long timestamp) {
-        if (!kalmanInitialized) {
-            kalmanLat = lat;
-            kalmanLng = lng;
-            kalmanVariance = accuracy * accuracy;
-            kalmanInitialized = true;
-            return new LatLng(lat, lng);
-        }
-        kalmanVariance += KALMAN_Q;
-        double measurementVariance = accuracy * accuracy;
-        double kalmanGain = kalmanVariance / (kalmanVariance + measurementVariance);
-        kalmanLat = kalmanLat + kalmanGain * (lat - kalmanLat);
-        kalmanLng = kalmanLng + kalmanGain * (lng - kalmanLng);
-        kalmanVariance = (1 - kalmanGain) * kalmanVariance;
-        return new LatLng(kalmanLat, kalmanLng);
-    }
-
-    private boolean validateGpsPoint(double distance, float accuracy, float speed, long timeDiffMs) {
-        if (accuracy > 25) return false;
-        double calcSpeed = (timeDiffMs > 0) ? (distance / timeDiffMs * 1000) : 0;
-        if (calcSpeed > 12) return false;
-        double maxDistance = Math.max(30, lastSpeed * timeDiffMs / 1000 * 1.5);
-        if (distance > maxDistance) return false;
-        if (calcSpeed < 0.3 && distance < 2) return false;
-        return true;
-    }
-
-    private double calculateDistance(LatLng p1, LatLng p2) {
-        float[] results = new float[1];
-        android.location.Location.distanceBetween(p1.latitude, p1.longitude, p2.latitude, p2.longitude, results);
-        return results[0];
+        paceEngine.reset();
     }
 
     public void addSteps(int steps) {
-        this.stepCount += steps;
+        handler.post(() -> stepCount += steps);
     }
 
-    public void setListener(OnRunningUpdateListener listener) {
-        this.listener = listener;
-    }
-    
-    // 传感器计步
-    @Override
-    public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-            if (isRunning && !isPaused) {
-                detectStep(event);
-            }
-        }
+    public RunSnapshotChannel getSnapshots() {
+        return snapshots;
     }
-    
-    private void detectStep(SensorEvent event) {
-        float x = event.values[0];
-        float y = event.values[1];
-        float z = event.values[2];
-        
-        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
-        float delta = Math.abs(magnitude - SensorManager.GRAVITY_EARTH);
-        long currentTimeMs = System.currentTimeMillis();
-        
-        if (!isRising && delta > STEP_THRESHOLD && delta > lastMagnitude) {
-            isRising = true;
-        } else if (isRising && delta < lastMagnitude) {
-            isRising = false;
-            if (currentTimeMs - lastStepTimeMs > MIN_STEP_INTERVAL_MS) {
-                stepCount++;
-                lastStepTimeMs = currentTimeMs;
-                Log.d(TAG, "Step detected in service! count=" + stepCount);
-            }
+
+    /**
+     * 发布当前状态快照；通道会合并高频发布，没有订阅者时不会触发UI更新
+     */
+    private void publishSnapshot() {
+        long now = isPaused ? pauseStartTime : System.currentTimeMillis();
+        long elapsedMs = isRunning ? Math.max(0, now - startTime - pausedDuration) : 0;
+        double pace = paceEngine.getPace30s();
+        if (pace <= 0) {
+            // 最近 30 秒距离不足（刚开始或原地停留）时使用平均移动配速
+            pace = paceEngine.getAverageMovingPace();
         }
-        lastMagnitude = delta;
+        snapshots.publish(new RunSnapshot(isRunning, isPaused, elapsedMs / 1000, totalDistance, stepCount,
+                pace, calculateCalories(), trackVersion, hasLastLocation, lastLat, lastLng));
     }
     
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
-
     // Getters
     public boolean isRunning() { return isRunning; }
     public boolean isPaused() { return isPaused; }
@@ -504,22 +673,28 @@ public class RunningService extends Service implements AMapLocationListener, Sen
     public long getPausedDuration() { return pausedDuration; }
     public int getStepCount() { return stepCount; }
     public double getTotalDistance() { return totalDistance; }
-    public List<LatLng> getTrackPoints() { return trackPoints; }
+    public TrackView getTrackPoints() { return tracks.full(); }
+    public TrackView getMapTrack() { return tracks.map(); }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        handler.removeCallbacks(timerRunnable);
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
-        }
+        unregisterReceiver(screenReceiver);
+        stepEngine.release();
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
         }
-        if (locationClient != null) {
-            locationClient.stopLocation();
-            locationClient.onDestroy();
-        }
+        // 丢弃尚未处理的消息，在跟踪线程上释放定位客户端和日志，避免与正在处理的定位点并发
+        handler.removeCallbacksAndMessages(null);
+        handler.post(() -> {
+            if (locationClient != null) {
+                locationClient.stopLocation();
+                locationClient.onDestroy();
+            }
+            // 只关闭不删除：跑步未结束时保留日志供重启恢复
+            journal.close();
+        });
+        trackingThread.quitSafely();
     }
 
     public static class RunResult {
@@ -529,9 +704,18 @@ public class RunningService extends Service implements AMapLocationListener, Sen
         public int steps;
         public int calories;
         public double pace;
-        public String track;
-
-        public RunResult(String date, double distance, int duration, int steps, int calories, double pace, String track) {
+        public byte[] track;
+        /** 每公里和自定义距离分段 */
+        public List<SplitTracker.Split> splits;
+        /** 开始和结束时间（epoch 毫秒），date 为结束时间精确到分钟的本地时间 */
+        public long startTime;
+        public long endTime;
+        /** 服务入库时使用的用户ID和本地记录ID，入库失败时 localId 为 -1 */
+        public int userId;
+        public long localId = -1;
+
+        public RunResult(String date, double distance, int duration, int steps, int calories, double pace,
+                byte[] track, List<SplitTracker.Split> splits) {
             this.date = date;
             this.distance = distance;
             this.duration = duration;
@@ -539,6 +723,7 @@ public class RunningService extends Service implements AMapLocationListener, Sen
             this.calories = calories;
             this.pace = pace;
             this.track = track;
+            this.splits = splits;
         }
     }
 }
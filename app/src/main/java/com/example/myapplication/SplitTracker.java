@@ -0,0 +1,176 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分段统计（每公里 / 自定义距离）
+ *
+ * 跑步过程中随距离累计增量计算：每个定位点只比较一次下一个分段边界，跨过边界时按相邻两个样本
+ * 线性插值出到达边界的时间和步数，生成一个 {@link Split}。跑步结束后不需要再解析轨迹。
+ *
+ * 时间使用扣除暂停后的运动时间。可以同时统计多种分段长度（如 1000 米和 400 米一圈）。
+ */
+public class SplitTracker {
+
+    public static final double KILOMETER = 1000;
+    /** 结束时剩余距离不足该值（米）不生成最后的不完整分段 */
+    private static final double MIN_PARTIAL_DISTANCE = 10;
+
+    /** 一个分段 */
+    public static class Split {
+        /** 分段长度（米），区分公里分段和自定义分段 */
+        public final double length;
+        /** 从 0 开始的序号 */
+        public final int index;
+        /** 实际距离（米），只有最后一个不完整分段小于 length */
+        public final double distance;
+        public final long durationMs;
+        public final int steps;
+
+        public Split(double length, int index, double distance, long durationMs, int steps) {
+            this.length = length;
+            this.index = index;
+            this.distance = distance;
+            this.durationMs = durationMs;
+            this.steps = steps;
+        }
+
+        public boolean isPartial() {
+            return distance < length;
+        }
+
+        /** 配速（分钟/公里） */
+        public double getPace() {
+            if (distance <= 0) return 0;
+            return (durationMs / 60000.0) / (distance / 1000);
+        }
+
+        /** 步频（步/分钟） */
+        public double getCadence() {
+            if (durationMs <= 0) return 0;
+            return steps * 60000.0 / durationMs;
+        }
+    }
+
+    private final double[] lengths;
+    private final List<List<Split>> splits = new ArrayList<>();
+    // 每种分段长度当前分段的起点
+    private final long[] startTime;
+    private final double[] startDistance;
+    private final double[] startSteps;
+    private final double[] nextBoundary;
+
+    // 上一个样本，初始为跑步起点
+    private long lastTime;
+    private double lastDistance;
+    private int lastSteps;
+
+    public SplitTracker() {
+        this(KILOMETER);
+    }
+
+    /**
+     * @param lengths 分段长度（米），不大于 0 的忽略
+     */
+    public SplitTracker(double... lengths) {
+        int count = 0;
+        for (double length : lengths) {
+            if (length > 0) count++;
+        }
+        this.lengths = new double[count];
+        int i = 0;
+        for (double length : lengths) {
+            if (length > 0) this.lengths[i++] = length;
+        }
+        startTime = new long[count];
+        startDistance = new double[count];
+        startSteps = new double[count];
+        nextBoundary = new double[count];
+        for (int k = 0; k < count; k++) {
+            splits.add(new ArrayList<>());
+        }
+        reset();
+    }
+
+    public void reset() {
+        lastTime = 0;
+        lastDistance = 0;
+        lastSteps = 0;
+        for (int k = 0; k < lengths.length; k++) {
+            splits.get(k).clear();
+            startTime[k] = 0;
+            startDistance[k] = 0;
+            startSteps[k] = 0;
+            nextBoundary[k] = lengths[k];
+        }
+    }
+
+    /**
+     * 加入一个样本
+     *
+     * @param movingTimeMs       扣除暂停后的运动时间，单调不减
+     * @param cumulativeDistance 累计距离（米），单调不减
+     * @param steps              累计步数
+     * @return 本次是否生成了新的分段
+     */
+    public boolean onProgress(long movingTimeMs, double cumulativeDistance, int steps) {
+        boolean added = false;
+        double dd = cumulativeDistance - lastDistance;
+        for (int k = 0; k < lengths.length; k++) {
+            while (cumulativeDistance >= nextBoundary[k] && dd > 0) {
+                double f = (nextBoundary[k] - lastDistance) / dd;
+                long t = lastTime + Math.round(f * (movingTimeMs - lastTime));
+                double s = lastSteps + f * (steps - lastSteps);
+                List<Split> list = splits.get(k);
+                list.add(new Split(lengths[k], list.size(), lengths[k], t - startTime[k],
+                        (int) Math.round(s - startSteps[k])));
+                startTime[k] = t;
+                startDistance[k] = nextBoundary[k];
+                startSteps[k] = s;
+                nextBoundary[k] += lengths[k];
+                added = true;
+            }
+        }
+        lastTime = movingTimeMs;
+        lastDistance = cumulativeDistance;
+        lastSteps = steps;
+        return added;
+    }
+
+    /**
+     * 跑步结束：把剩余距离作为最后一个不完整分段
+     */
+    public void finish(long movingTimeMs, double cumulativeDistance, int steps) {
+        onProgress(movingTimeMs, cumulativeDistance, steps);
+        for (int k = 0; k < lengths.length; k++) {
+            double remaining = cumulativeDistance - startDistance[k];
+            if (remaining < MIN_PARTIAL_DISTANCE) continue;
+            List<Split> list = splits.get(k);
+            list.add(new Split(lengths[k], list.size(), remaining,
+                    Math.max(0, movingTimeMs - startTime[k]),
+                    (int) Math.max(0, Math.round(steps - startSteps[k]))));
+            // 防止重复调用时再次生成
+            startDistance[k] = cumulativeDistance;
+            startTime[k] = movingTimeMs;
+            startSteps[k] = steps;
+        }
+    }
+
+    /** 指定长度的分段 */
+    public List<Split> getSplits(double length) {
+        for (int k = 0; k < lengths.length; k++) {
+            if (lengths[k] == length) return new ArrayList<>(splits.get(k));
+        }
+        return new ArrayList<>();
+    }
+
+    /** 全部分段，按分段长度、序号排列 */
+    public List<Split> getAllSplits() {
+        List<Split> all = new ArrayList<>();
+        for (List<Split> list : splits) {
+            all.addAll(list);
+        }
+        return all;
+    }
+}
@@ -11,10 +11,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.List;
+
 import java.util.Locale;
 
 public class StatsFragment extends Fragment {
@@ -23,7 +20,8 @@ public class StatsFragment extends Fragment {
     private TextView tvTotalDistance, tvTotalTimes, tvTotalDuration;
     private TextView tvTotalSteps, tvTotalCalories, tvAvgPace;
     private TextView tvWeekDistance, tvWeekTimes, tvWeekCalories;
-    private DatabaseHelper dbHelper;
+    private RunRepository repository;
+    private final RunRepository.TaskGroup tasks = new RunRepository.TaskGroup();
 
     @Nullable
     @Override
@@ -31,7 +29,7 @@ public class StatsFragment extends Fragment {
         View view = null;
         try {
             view = inflater.inflate(R.layout.fragment_stats, container, false);
-            dbHelper = DatabaseHelper.getInstance(requireContext());
+            repository = RunRepository.getInstance(requireContext());
             initViews(view);
         } catch (Exception e) {
             Log.e(TAG, "onCreateView error", e);
@@ -49,6 +47,12 @@ public class StatsFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        tasks.cancelAll();
+    }
+
     private void initViews(View view) {
         if (view == null) return;
         tvTotalDistance = view.findViewById(R.id.tv_total_distance);
@@ -63,70 +67,65 @@ public class StatsFragment extends Fragment {
     }
 
     private void loadStats() {
-        if (dbHelper == null) return;
-        
-        // 从SQLite数据库读取跑步记录
-        List<DatabaseHelper.RunningRecord> records = dbHelper.getAllRunningRecords();
-        if (records == null) records = new ArrayList<>();
-        
-        double totalDist = 0;
-        int totalDur = 0;
-        int totalSteps = 0;
-        int totalCal = 0;
-        
+        if (repository == null) return;
+        int userId = getCurrentUserId();
+        String weekStart = TimeRange.thisWeek(System.currentTimeMillis()).startDay();
+        // 从每日汇总表读取，耗时与历史记录数量无关
+        tasks.add(repository.execute(db -> Stats.from(db.getStatsTotals(userId, null, null),
+                db.getStatsTotals(userId, weekStart, null)), this::showStats));
+    }
+
+    /**
+     * 当前登录用户ID，未登录时返回 -1（统计所有用户的记录）
+     */
+    private int getCurrentUserId() {
+        return CurrentUser.getId(requireContext());
+    }
+
+    /**
+     * 统计结果（I/O 线程上计算）
+     */
+    static class Stats {
+        int count;
+        double totalDist;
+        long totalDur;
+        long totalSteps;
+        long totalCal;
+        double avgPace;
         // 本周统计
-        double weekDist = 0;
-        int weekTimes = 0;
-        int weekCal = 0;
-        
-        // 获取本周开始日期
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        long weekStartTime = cal.getTimeInMillis();
-        
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.CHINA);
-        
-        for (DatabaseHelper.RunningRecord r : records) {
-            totalDist += r.distance;
-            totalDur += r.duration;
-            totalSteps += r.steps;
-            totalCal += r.calories;
-            
-            // 判断是否是本周记录
-            try {
-                long recordTime = sdf.parse(r.date).getTime();
-                if (recordTime >= weekStartTime) {
-                    weekDist += r.distance;
-                    weekTimes++;
-                    weekCal += r.calories;
-                }
-            } catch (Exception e) {
-                // 解析失败，算作本周
-                weekDist += r.distance;
-                weekTimes++;
-                weekCal += r.calories;
-            }
+        double weekDist;
+        int weekTimes;
+        long weekCal;
+
+        static Stats from(DatabaseHelper.StatsTotals total, DatabaseHelper.StatsTotals week) {
+            Stats stats = new Stats();
+            stats.count = total.runs;
+            stats.totalDist = total.distance;
+            stats.totalDur = total.duration;
+            stats.totalSteps = total.steps;
+            stats.totalCal = total.calories;
+            stats.weekDist = week.distance;
+            stats.weekTimes = week.runs;
+            stats.weekCal = week.calories;
+            stats.avgPace = stats.totalDist > 0 ? (stats.totalDur / 60.0) / (stats.totalDist / 1000) : 0;
+            return stats;
         }
+    }
+
+    private void showStats(Stats stats) {
+        if (tvTotalDistance != null) tvTotalDistance.setText(String.format(Locale.CHINA, "%.1f", stats.totalDist / 1000));
+        if (tvTotalTimes != null) tvTotalTimes.setText(String.valueOf(stats.count));
+        if (tvTotalDuration != null) tvTotalDuration.setText(String.format(Locale.CHINA, "%d:%02d", stats.totalDur / 3600, (stats.totalDur % 3600) / 60));
+        if (tvTotalSteps != null) tvTotalSteps.setText(String.valueOf(stats.totalSteps));
+        if (tvTotalCalories != null) tvTotalCalories.setText(String.valueOf(stats.totalCal));
         
-        int count = records.size();
-        double avgPace = totalDist > 0 ? (totalDur / 60.0) / (totalDist / 1000) : 0;
-        
-        if (tvTotalDistance != null) tvTotalDistance.setText(String.format(Locale.CHINA, "%.1f", totalDist / 1000));
-        if (tvTotalTimes != null) tvTotalTimes.setText(String.valueOf(count));
-        if (tvTotalDuration != null) tvTotalDuration.setText(String.format(Locale.CHINA, "%d:%02d", totalDur / 3600, (totalDur % 3600) / 60));
-        if (tvTotalSteps != null) tvTotalSteps.setText(String.valueOf(totalSteps));
-        if (tvTotalCalories != null) tvTotalCalories.setText(String.valueOf(totalCal));
-        
-        int paceMin = (int) avgPace;
-        int paceSec = (int) ((avgPace - paceMin) * 60);
+        int paceMin = (int) stats.avgPace;
+        int paceSec = (int) ((stats.avgPace - paceMin) * 60);
         if (tvAvgPace != null) tvAvgPace.setText(String.format(Locale.CHINA, "%d:%02d", paceMin, paceSec));
         
         // 本周统计
-        if (tvWeekDistance != null) tvWeekDistance.setText(String.format(Locale.CHINA, "%.1f", weekDist / 1000));
-        if (tvWeekTimes != null) tvWeekTimes.setText(String.valueOf(weekTimes));
-        if (tvWeekCalories != null) tvWeekCalories.setText(String.valueOf(weekCal));
+        if (tvWeekDistance != null) tvWeekDistance.setText(String.format(Locale.CHINA, "%.1f", stats.weekDist / 1000));
+        if (tvWeekTimes != null) tvWeekTimes.setText(String.valueOf(stats.weekTimes));
+        if (tvWeekCalories != null) tvWeekCalories.setText(String.valueOf(stats.weekCal));
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,215 @@
+package com.example.myapplication;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener2;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 计步引擎
+ *
+ * 优先使用硬件计步器（TYPE_STEP_COUNTER / TYPE_STEP_DETECTOR），由传感器芯片计步，CPU 几乎不参与；
+ * 没有硬件计步器时回退到加速度计：限制采样率为 {@link #ACCEL_SAMPLING_US}，
+ * 并通过 maxReportLatencyUs 让传感器 FIFO 批量上报，减少唤醒次数。
+ * 传感器事件在独立的 HandlerThread 上处理，时间取自 event.timestamp，不受主线程卡顿影响。
+ *
+ * 检测到的步数通过 callbackHandler 回调给调用方。停止时先冲刷 FIFO 中批量缓存的事件再取消注册，
+ * 冲刷出的步数由 {@link #stop()} 直接返回。
+ */
+public class StepCounterEngine implements SensorEventListener2 {
+
+    private static final String TAG = "StepCounterEngine";
+
+    /** 加速度计采样周期：50Hz 足以分辨跑步的步频（最多约 4 步/秒） */
+    private static final int ACCEL_SAMPLING_US = 20_000;
+    /** 加速度计批量上报延迟 */
+    private static final int ACCEL_MAX_LATENCY_US = 2_000_000;
+    /** 硬件计步器上报延迟：步数显示允许 1 秒左右的延迟 */
+    private static final int STEP_SENSOR_MAX_LATENCY_US = 1_000_000;
+    /** 停止时等待 FIFO 冲刷完成的最长时间 */
+    private static final long FLUSH_TIMEOUT_MS = 500;
+
+    public enum Mode { STEP_COUNTER, STEP_DETECTOR, ACCELEROMETER, NONE }
+
+    public interface Listener {
+        void onSteps(int steps);
+    }
+
+    private final SensorManager sensorManager;
+    private final Handler callbackHandler;
+    private final Listener listener;
+    private final Sensor sensor;
+    private final Mode mode;
+
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
+    private boolean started = false;
+    // 冲刷期间不为 null：检测到的步数累加到 flushedSteps，不再回调
+    private volatile CountDownLatch flushLatch;
+    private final AtomicInteger flushedSteps = new AtomicInteger();
+
+    // 以下字段只在传感器线程访问
+    private float counterBaseline = -1;
+    private final StepDetector stepDetector = new StepDetector();
+
+    public StepCounterEngine(Context context, Handler callbackHandler, Listener listener) {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.callbackHandler = callbackHandler;
+        this.listener = listener;
+
+        Sensor selected = null;
+        Mode selectedMode = Mode.NONE;
+        if (sensorManager != null) {
+            if (canUseStepSensors(context)) {
+                selected = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+                selectedMode = Mode.STEP_COUNTER;
+                if (selected == null) {
+                    selected = sensorManager.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR);
+                    selectedMode = Mode.STEP_DETECTOR;
+                }
+            }
+            if (selected == null) {
+                selected = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+                selectedMode = selected != null ? Mode.ACCELEROMETER : Mode.NONE;
+            }
+        }
+        this.sensor = selected;
+        this.mode = selectedMode;
+        Log.d(TAG, "计步模式: " + mode);
+    }
+
+    private static boolean canUseStepSensors(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) return false;
+        // Android 10 起硬件计步器需要运动健身权限，未授权时不会上报事件
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACTIVITY_RECOGNITION)
+                        == PackageManager.PERMISSION_GRANTED;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 开始计步（跑步开始或继续时调用）
+     */
+    public void start() {
+        if (started || sensor == null) return;
+        if (sensorThread == null) {
+            sensorThread = new HandlerThread("StepCounter");
+            sensorThread.start();
+            sensorHandler = new Handler(sensorThread.getLooper());
+        }
+        sensorHandler.post(this::resetState);
+        int samplingUs = mode == Mode.ACCELEROMETER ? ACCEL_SAMPLING_US : SensorManager.SENSOR_DELAY_NORMAL;
+        int latencyUs = mode == Mode.ACCELEROMETER ? ACCEL_MAX_LATENCY_US : STEP_SENSOR_MAX_LATENCY_US;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            sensorManager.registerListener(this, sensor, samplingUs, latencyUs, sensorHandler);
+        } else {
+            sensorManager.registerListener(this, sensor, samplingUs, sensorHandler);
+        }
+        started = true;
+    }
+
+    /**
+     * 停止计步（暂停或结束时调用），取消注册后传感器不再唤醒 CPU。
+     * 先冲刷 FIFO 并等待 onFlushCompleted（最多 {@link #FLUSH_TIMEOUT_MS}），
+     * 否则批量缓存中最多 2 秒的采样会随取消注册丢失。不能在传感器线程上调用
+     * @return 冲刷出的步数（未通过 Listener 回调，由调用方累加）
+     */
+    public int stop() {
+        if (!started) return 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            CountDownLatch latch = new CountDownLatch(1);
+            flushedSteps.set(0);
+            flushLatch = latch;
+            try {
+                if (sensorManager.flush(this) && !latch.await(FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "传感器冲刷超时");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sensorManager.unregisterListener(this);
+        flushLatch = null;
+        started = false;
+        return flushedSteps.getAndSet(0);
+    }
+
+    public void release() {
+        if (started) {
+            // 服务销毁时不再等待冲刷
+            sensorManager.unregisterListener(this);
+            started = false;
+        }
+        if (sensorThread != null) {
+            sensorThread.quitSafely();
+            sensorThread = null;
+            sensorHandler = null;
+        }
+    }
+
+    private void resetState() {
+        counterBaseline = -1;
+        stepDetector.reset();
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        int steps = 0;
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_STEP_COUNTER:
+                // 计步器是开机以来的累计值，以注册后的第一个值为基准
+                float total = event.values[0];
+                if (counterBaseline < 0) {
+                    counterBaseline = total;
+                } else if (total > counterBaseline) {
+                    steps = (int) (total - counterBaseline);
+                    counterBaseline = total;
+                }
+                break;
+            case Sensor.TYPE_STEP_DETECTOR:
+                steps = 1;
+                break;
+            case Sensor.TYPE_ACCELEROMETER:
+                if (stepDetector.onSample(event.values[0], event.values[1], event.values[2],
+                        event.timestamp / 1_000_000L)) {
+                    steps = 1;
+                }
+                break;
+        }
+        if (steps > 0) {
+            if (flushLatch != null) {
+                flushedSteps.addAndGet(steps);
+            } else {
+                final int delta = steps;
+                callbackHandler.post(() -> listener.onSteps(delta));
+            }
+        }
+    }
+
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        CountDownLatch latch = flushLatch;
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+}
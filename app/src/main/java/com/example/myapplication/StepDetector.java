@@ -0,0 +1,56 @@
+package com.example.myapplication;
+
+/**
+ * 加速度计峰值计步算法（不依赖 Android，可在 JVM 上回放测试）
+ *
+ * 合加速度减去重力后超过阈值并出现峰值时记一步，两步间隔不小于最小间隔。
+ */
+public class StepDetector {
+
+    public static final float DEFAULT_THRESHOLD = 5.0f;
+    public static final long DEFAULT_MIN_INTERVAL_MS = 450;
+    /** 与 SensorManager.GRAVITY_EARTH 相同 */
+    private static final float GRAVITY_EARTH = 9.80665f;
+
+    private final float threshold;
+    private final long minIntervalMs;
+
+    private float lastMagnitude = 0;
+    private long lastStepTimeMs = 0;
+    private boolean isRising = false;
+
+    public StepDetector() {
+        this(DEFAULT_THRESHOLD, DEFAULT_MIN_INTERVAL_MS);
+    }
+
+    public StepDetector(float threshold, long minIntervalMs) {
+        this.threshold = threshold;
+        this.minIntervalMs = minIntervalMs;
+    }
+
+    /**
+     * 输入一个加速度采样（m/s²），检测到一步时返回 true
+     */
+    public boolean onSample(float x, float y, float z, long timeMs) {
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        float delta = Math.abs(magnitude - GRAVITY_EARTH);
+        boolean step = false;
+        if (!isRising && delta > threshold && delta > lastMagnitude) {
+            isRising = true;
+        } else if (isRising && delta < lastMagnitude) {
+            isRising = false;
+            if (timeMs - lastStepTimeMs > minIntervalMs) {
+                step = true;
+                lastStepTimeMs = timeMs;
+            }
+        }
+        lastMagnitude = delta;
+        return step;
+    }
+
+    public void reset() {
+        lastMagnitude = 0;
+        lastStepTimeMs = 0;
+        isRising = false;
+    }
+}
@@ -29,7 +29,7 @@ public class SurveyActivity extends AppCompatActivity {
     private EditText etSuggestion;
     private Button btnSubmit;
     private ProgressBar progressBar;
-    private DatabaseHelper dbHelper;
+    private RunRepository repository;
     private AuthManager authManager;
 
     @Override
@@ -37,7 +37,7 @@ public class SurveyActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_survey);
 
-        dbHelper = DatabaseHelper.getInstance(this);
+        repository = RunRepository.getInstance(this);
         authManager = AuthManager.getInstance(this);
         initViews();
     }
@@ -94,13 +94,14 @@ public class SurveyActivity extends AppCompatActivity {
         UserInfo user = authManager.getCurrentUser();
         int userId = user != null && user.getId() != null ? user.getId() : 1;
 
-        // 保存到本地SQLite数据库
-        long localResult = dbHelper.insertSurveyResult(
+        // 保存到本地SQLite数据库（I/O 线程，页面关闭后也要写完）
+        repository.insertSurveyResult(
             userId,
             frequency,
             purpose,
             satisfaction,
-            suggestion
+            suggestion,
+            null
         );
 
         // 提交到服务器
@@ -0,0 +1,130 @@
+package com.example.myapplication;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * 时间范围 [start, end)，epoch 毫秒，按本地时区计算本周、本月、本学期的起止时间。
+ * 也负责跑步记录日期字符串（"yyyy-MM-dd HH:mm"，本地时间）与 epoch 毫秒之间的转换
+ */
+public final class TimeRange {
+
+    /** 跑步记录 date 列的格式 */
+    public static final String DATE_PATTERN = "yyyy-MM-dd HH:mm";
+    private static final String DAY_PATTERN = "yyyy-MM-dd";
+
+    public final long start;
+    public final long end;
+
+    public TimeRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public boolean contains(long time) {
+        return time >= start && time < end;
+    }
+
+    /** 起始日期 yyyy-MM-dd（每日汇总表的日期格式） */
+    public String startDay() {
+        return new SimpleDateFormat(DAY_PATTERN, Locale.CHINA).format(new Date(start));
+    }
+
+    /** 结束日期 yyyy-MM-dd（不包含） */
+    public String endDay() {
+        return new SimpleDateFormat(DAY_PATTERN, Locale.CHINA).format(new Date(end));
+    }
+
+    /**
+     * 本周，从默认区域设置的每周第一天 0 点开始
+     */
+    public static TimeRange thisWeek(long now) {
+        Calendar cal = startOfDay(now);
+        cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
+        if (cal.getTimeInMillis() > now) {
+            cal.add(Calendar.WEEK_OF_YEAR, -1);
+        }
+        long start = cal.getTimeInMillis();
+        cal.add(Calendar.DAY_OF_MONTH, 7);
+        return new TimeRange(start, cal.getTimeInMillis());
+    }
+
+    public static TimeRange thisMonth(long now) {
+        Calendar cal = startOfDay(now);
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        long start = cal.getTimeInMillis();
+        cal.add(Calendar.MONTH, 1);
+        return new TimeRange(start, cal.getTimeInMillis());
+    }
+
+    /**
+     * 本学期：本地没有校历，按春季学期 2 月 1 日至 8 月 1 日、秋季学期 8 月 1 日至次年 2 月 1 日划分，
+     * 寒暑假分别计入下一学期和上一学期，每条记录都属于某个学期
+     */
+    public static TimeRange thisSemester(long now) {
+        Calendar cal = startOfDay(now);
+        int month = cal.get(Calendar.MONTH);
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        if (month >= Calendar.FEBRUARY && month < Calendar.AUGUST) {
+            cal.set(Calendar.MONTH, Calendar.FEBRUARY);
+        } else {
+            if (month < Calendar.FEBRUARY) {
+                cal.add(Calendar.YEAR, -1);
+            }
+            cal.set(Calendar.MONTH, Calendar.AUGUST);
+        }
+        long start = cal.getTimeInMillis();
+        cal.add(Calendar.MONTH, 6);
+        return new TimeRange(start, cal.getTimeInMillis());
+    }
+
+    private static Calendar startOfDay(long time) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(time);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal;
+    }
+
+    // ==================== 记录日期转换 ====================
+
+    /**
+     * 跑步记录日期格式；SimpleDateFormat 不是线程安全的，批量转换时每个线程各自创建一个
+     */
+    public static SimpleDateFormat newDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat(DATE_PATTERN, Locale.CHINA);
+        format.setLenient(false);
+        return format;
+    }
+
+    public static String formatDate(long time) {
+        return newDateFormat().format(new Date(time));
+    }
+
+    /**
+     * @return epoch 毫秒，无法解析时返回 -1
+     */
+    public static long parseDate(SimpleDateFormat format, String date) {
+        if (date == null) return -1;
+        try {
+            return format.parse(date).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    public static long parseDate(String date) {
+        return parseDate(newDateFormat(), date);
+    }
+
+    /** 本地时区在该时刻相对 UTC 的偏移（分钟，含夏令时） */
+    public static int offsetMinutes(long time) {
+        return TimeZone.getDefault().getOffset(time) / 60_000;
+    }
+}
@@ -39,7 +39,7 @@ public class ToolsFragment extends Fragment implements SensorEventListener {
     private static final String TAG = "ToolsFragment";
     private static final String PREF_LAST_SEEN_ANNOUNCEMENT = "last_seen_announcement_id";
     private EditText etCalcDistance, etCalcTime, etWeight, etCalDistance;
-    private TextView tvCalcResult, tvCaloriesResult, tvDirection, tvSyncStatus;
+    private TextView tvCalcResult, tvCaloriesResult, tvDirection, tvSyncStatus, tvSamplingProfile;
     private ImageView ivCompass;
     private Button btnSync;
     private View badgeAnnouncement;
@@ -52,7 +52,8 @@ public class ToolsFragment extends Fragment implements SensorEventListener {
     
     private SyncService syncService;
     private boolean syncServiceBound = false;
-    private DatabaseHelper dbHelper;
+    private RunRepository repository;
+    private final RunRepository.TaskGroup tasks = new RunRepository.TaskGroup();
 
     private ServiceConnection syncConnection = new ServiceConnection() {
         @Override
@@ -112,7 +113,7 @@ public class ToolsFragment extends Fragment implements SensorEventListener {
         View view = null;
         try {
             view = inflater.inflate(R.layout.fragment_tools, container, false);
-            dbHelper = DatabaseHelper.getInstance(requireContext());
+            repository = RunRepository.getInstance(requireContext());
             initViews(view);
             initSensors();
         } catch (Exception e) {
@@ -196,6 +197,14 @@ public class ToolsFragment extends Fragment implements SensorEventListener {
                 btnSync.setOnClickListener(v -> doSync());
             }
             
+            // 定位采样档位，下次开始跑步时生效
+            tvSamplingProfile = view.findViewById(R.id.tv_sampling_profile);
+            updateSamplingProfile();
+            Button btnSamplingProfile = view.findViewById(R.id.btn_sampling_profile);
+            if (btnSamplingProfile != null) {
+                btnSamplingProfile.setOnClickListener(v -> chooseSamplingProfile());
+            }
+            
             // 用户信息和退出登录
             TextView tvUserInfo = view.findViewById(R.id.tv_user_info);
             Button btnLogout = view.findViewById(R.id.btn_logout);
@@ -230,14 +239,44 @@ public class ToolsFragment extends Fragment implements SensorEventListener {
         }
     }
     
+    private SharedPreferences getRunSettings() {
+        return requireContext().getSharedPreferences(RunningService.PREF_RUN_SETTINGS, Context.MODE_PRIVATE);
+    }
+
+    private void updateSamplingProfile() {
+        if (tvSamplingProfile == null) return;
+        AdaptiveSamplingController.Profile profile = AdaptiveSamplingController.Profile.fromName(
+                getRunSettings().getString(RunningService.KEY_SAMPLING_PROFILE, null));
+        tvSamplingProfile.setText("当前: " + profile.label);
+    }
+
+    private void chooseSamplingProfile() {
+        AdaptiveSamplingController.Profile[] profiles = AdaptiveSamplingController.Profile.values();
+        String[] labels = {"精确（轨迹最细，耗电最多）", "均衡（推荐）", "省电（间隔更长）"};
+        AdaptiveSamplingController.Profile current = AdaptiveSamplingController.Profile.fromName(
+                getRunSettings().getString(RunningService.KEY_SAMPLING_PROFILE, null));
+        new androidx.appcompat.app.AlertDialog.Builder(requireContext())
+                .setTitle("定位模式")
+                .setSingleChoiceItems(labels, current.ordinal(), (dialog, which) -> {
+                    getRunSettings().edit()
+                            .putString(RunningService.KEY_SAMPLING_PROFILE, profiles[which].name())
+                            .apply();
+                    updateSamplingProfile();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+    
     private void updateSyncStatus() {
-        if (tvSyncStatus != null && dbHelper != null) {
-            int count = dbHelper.getUnsyncedCount();
-            if (count > 0) {
-                tvSyncStatus.setText(String.format(Locale.CHINA, "待同步: %d条记录", count));
-            } else {
-                tvSyncStatus.setText("已全部同步");
-            }
+        if (tvSyncStatus != null && repository != null) {
+            tasks.add(repository.getUnsyncedCount(count -> {
+                if (count > 0) {
+                    tvSyncStatus.setText(String.format(Locale.CHINA, "待同步: %d条记录", count));
+                } else {
+                    tvSyncStatus.setText("已全部同步");
+                }
+            }));
         }
     }
     
@@ -422,4 +461,10 @@ public class ToolsFragment extends Fragment implements SensorEventListener {
             Log.e(TAG, "onPause error", e);
         }
     }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        tasks.cancelAll();
+    }
 }
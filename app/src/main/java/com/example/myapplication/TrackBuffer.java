@@ -0,0 +1,122 @@
+package com.example.myapplication;
+
+/**
+ * 跑步轨迹存储（基本类型分块数组）
+ *
+ * 坐标以微度（度 × 1e6，约 0.1 米精度）存入 int[]，时间以相对首点的毫秒偏移存入 int[]，
+ * 每块固定 {@link #CHUNK_SIZE} 个点，扩容时只追加新块而不复制旧数据。
+ * 10 小时、每 500ms 一个点的跑步也只占用约 0.9MB，且不会为每个点创建对象。
+ *
+ * 单线程写入、多线程读取：写入完成后才发布 size（volatile），
+ * 读取方先读 size 再按下标访问，即可看到完整的数据，无需加锁。
+ */
+public class TrackBuffer implements TrackView, TrackSink {
+
+    private static final int CHUNK_SHIFT = 10;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 每块1024个点
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile int[][] latChunks = new int[4][];
+    private volatile int[][] lngChunks = new int[4][];
+    private volatile int[][] timeChunks = new int[4][];
+    private volatile int size = 0;
+    private long baseTime = 0;
+
+    public static int toE6(double degrees) {
+        return (int) Math.round(degrees * 1e6);
+    }
+
+    public static double fromE6(int e6) {
+        return e6 / 1e6;
+    }
+
+    public void add(double latitude, double longitude, long timeMs) {
+        addE6(toE6(latitude), toE6(longitude), timeMs);
+    }
+
+    @Override
+    public void addE6(int latE6, int lngE6, long timeMs) {
+        int index = size;
+        if (index == 0) {
+            baseTime = timeMs;
+        }
+        int chunk = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+        if (offset == 0) {
+            ensureChunk(chunk);
+        }
+        latChunks[chunk][offset] = latE6;
+        lngChunks[chunk][offset] = lngE6;
+        timeChunks[chunk][offset] = (int) (timeMs - baseTime);
+        // 最后发布size，保证读取方看到的下标都已写完
+        size = index + 1;
+    }
+
+    private void ensureChunk(int chunk) {
+        int[][] lat = latChunks;
+        int[][] lng = lngChunks;
+        int[][] time = timeChunks;
+        if (chunk >= lat.length) {
+            int newLength = lat.length * 2;
+            int[][] newLat = new int[newLength][];
+            int[][] newLng = new int[newLength][];
+            int[][] newTime = new int[newLength][];
+            System.arraycopy(lat, 0, newLat, 0, lat.length);
+            System.arraycopy(lng, 0, newLng, 0, lng.length);
+            System.arraycopy(time, 0, newTime, 0, time.length);
+            lat = newLat;
+            lng = newLng;
+            time = newTime;
+        }
+        if (lat[chunk] == null) {
+            lat[chunk] = new int[CHUNK_SIZE];
+            lng[chunk] = new int[CHUNK_SIZE];
+            time[chunk] = new int[CHUNK_SIZE];
+        }
+        latChunks = lat;
+        lngChunks = lng;
+        timeChunks = time;
+    }
+
+    /**
+     * 清空轨迹；已分配的块保留复用
+     */
+    public void clear() {
+        size = 0;
+        baseTime = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int getLatE6(int index) {
+        return latChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int getLngE6(int index) {
+        return lngChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public long getTime(int index) {
+        return baseTime + timeChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public double getLatitude(int index) {
+        return fromE6(getLatE6(index));
+    }
+
+    @Override
+    public double getLongitude(int index) {
+        return fromE6(getLngE6(index));
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.myapplication;
+
+import android.util.Base64;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 轨迹二进制编解码
+ *
+ * 格式（版本1）：2字节头（MAGIC、VERSION），之后每个点依次写入
+ * 纬度、经度（微度）和时间（毫秒）相对上一个点的差值，差值先做 zig-zag 再按变长整数（varint）写出。
+ * 跑步时相邻两点通常只差几米、几百毫秒，每个点约 4~5 字节，
+ * 而旧的 "lat,lng;" 文本每个点需要 30 多字节。
+ *
+ * 解码器按点迭代，只暴露基本类型字段，整条轨迹解码不会为每个点创建对象；
+ * 同时兼容旧版本写入数据库的 "lat,lng;lat,lng;" 文本。
+ * 二进制格式只在本地使用：现有服务器和 SyncService 只认 "lat,lng;" 文本，上传时用 {@link #toLegacyText(byte[])} 转换。
+ */
+public final class TrackCodec {
+
+    private static final byte MAGIC = (byte) 0xA7;
+    public static final byte VERSION_1 = 1;
+
+    /** 服务器返回二进制轨迹时使用的文本前缀，后接 Base64 编码（服务器支持之前不用于上传） */
+    private static final String TRANSPORT_PREFIX = "v1:";
+
+    private TrackCodec() {}
+
+    /**
+     * 编码整条轨迹
+     */
+    public static byte[] encode(TrackView track) {
+        int count = track.size();
+        Encoder encoder = new Encoder(count * 5 + 2);
+        for (int i = 0; i < count; i++) {
+            encoder.addE6(track.getLatE6(i), track.getLngE6(i), track.getTime(i));
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * 解码轨迹并追加到 TrackBuffer，返回点数
+     */
+    public static int decodeInto(byte[] data, TrackBuffer out) {
+        Decoder decoder = new Decoder(data);
+        int count = 0;
+        while (decoder.next()) {
+            out.addE6(decoder.latE6, decoder.lngE6, decoder.time);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 是否为二进制格式（否则视为旧版文本）
+     */
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == MAGIC;
+    }
+
+    /**
+     * 旧版 "lat,lng;" 文本转换为二进制格式
+     */
+    public static byte[] fromLegacyText(String text) {
+        if (text == null) return null;
+        Decoder decoder = new Decoder(text.getBytes(StandardCharsets.US_ASCII));
+        Encoder encoder = new Encoder(text.length() / 6 + 2);
+        while (decoder.next()) {
+            encoder.addE6(decoder.latE6, decoder.lngE6, decoder.time);
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * 转换为旧版 "lat,lng;" 文本（不含时间），用于上传和 SharedPreferences 缓存
+     */
+    public static String toLegacyText(byte[] data) {
+        if (data == null) return null;
+        if (!isBinary(data)) {
+            return new String(data, StandardCharsets.US_ASCII);
+        }
+        Decoder decoder = new Decoder(data);
+        StringBuilder text = new StringBuilder(data.length * 8);
+        while (decoder.next()) {
+            appendDegrees(text, decoder.latE6).append(',');
+            appendDegrees(text, decoder.lngE6).append(';');
+        }
+        return text.toString();
+    }
+
+    /**
+     * 微度写成定点小数（6 位小数），不使用科学计数法
+     */
+    private static StringBuilder appendDegrees(StringBuilder out, int e6) {
+        long value = e6;
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        out.append(value / 1_000_000).append('.');
+        int fraction = (int) (value % 1_000_000);
+        for (int div = 100_000; div > 0; div /= 10) {
+            out.append((char) ('0' + fraction / div % 10));
+        }
+        return out;
+    }
+
+    /**
+     * 解析服务器返回的轨迹文本，兼容旧版 "lat,lng;" 文本
+     */
+    public static byte[] fromTransportString(String text) {
+        if (text == null || text.isEmpty()) return null;
+        if (text.startsWith(TRANSPORT_PREFIX)) {
+            try {
+                return Base64.decode(text.substring(TRANSPORT_PREFIX.length()), Base64.NO_WRAP);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return fromLegacyText(text);
+    }
+
+    /**
+     * 流式编码器：逐点追加，内部缓冲按需扩容
+     */
+    public static final class Encoder implements TrackSink {
+        private byte[] buf;
+        private int length;
+        private int lastLatE6, lastLngE6;
+        private long lastTime;
+
+        public Encoder() {
+            this(256);
+        }
+
+        public Encoder(int initialCapacity) {
+            buf = new byte[Math.max(initialCapacity, 16)];
+            buf[0] = MAGIC;
+            buf[1] = VERSION_1;
+            length = 2;
+        }
+
+        @Override
+        public void addE6(int latE6, int lngE6, long time) {
+            ensureCapacity(5 + 5 + 10);
+            writeVarint(zigZag(latE6 - lastLatE6));
+            writeVarint(zigZag(lngE6 - lastLngE6));
+            writeVarint(zigZag(time - lastTime));
+            lastLatE6 = latE6;
+            lastLngE6 = lngE6;
+            lastTime = time;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte[] toByteArray() {
+            byte[] out = new byte[length];
+            System.arraycopy(buf, 0, out, 0, length);
+            return out;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buf.length) {
+                byte[] newBuf = new byte[Math.max(buf.length * 2, length + extra)];
+                System.arraycopy(buf, 0, newBuf, 0, length);
+                buf = newBuf;
+            }
+        }
+
+        private void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buf[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[length++] = (byte) value;
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    /**
+     * 流式解码器：每次 next() 成功后从 latE6 / lngE6 / time 读取当前点
+     */
+    public static final class Decoder {
+        private final byte[] data;
+        private final boolean legacy;
+        private int pos;
+
+        public int latE6;
+        public int lngE6;
+        /** 旧版文本没有时间，恒为0 */
+        public long time;
+
+        public Decoder(byte[] data) {
+            this.data = data != null ? data : new byte[0];
+            this.legacy = !isBinary(this.data);
+            this.pos = legacy ? 0 : 2;
+        }
+
+        public boolean next() {
+            return legacy ? nextLegacy() : nextBinary();
+        }
+
+        private boolean nextBinary() {
+            if (pos >= data.length) return false;
+            try {
+                latE6 += (int) unZigZag(readVarint());
+                lngE6 += (int) unZigZag(readVarint());
+                time += unZigZag(readVarint());
+                return true;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // 数据被截断，丢弃最后一个不完整的点
+                pos = data.length;
+                return false;
+            }
+        }
+
+        private long readVarint() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private boolean nextLegacy() {
+            while (pos < data.length) {
+                int start = pos;
+                int comma = -1;
+                int end = pos;
+                while (end < data.length && data[end] != ';') {
+                    if (data[end] == ',' && comma < 0) comma = end;
+                    end++;
+                }
+                pos = end + 1;
+                if (comma > start && comma < end - 1) {
+                    long lat = parseE6(start, comma);
+                    long lng = parseE6(comma + 1, end);
+                    // 无法解析或超出经纬度范围的片段（服务器原样保存的异常文本）跳过，不中断整条轨迹
+                    if (lat == INVALID || lng == INVALID
+                            || Math.abs(lat) > MAX_LAT_E6 || Math.abs(lng) > MAX_LNG_E6) {
+                        continue;
+                    }
+                    latE6 = (int) lat;
+                    lngE6 = (int) lng;
+                    time = 0;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static final long INVALID = Long.MIN_VALUE;
+        private static final long MAX_LAT_E6 = 90_000_000L;
+        private static final long MAX_LNG_E6 = 180_000_000L;
+
+        /**
+         * 把十进制度数直接解析为微度，避免为每个数字创建 String
+         * @return 微度，不是数字时返回 {@link #INVALID}
+         */
+        private long parseE6(int from, int to) {
+            int i = from;
+            boolean negative = false;
+            if (data[i] == '-') {
+                negative = true;
+                i++;
+            }
+            long intPart = 0;
+            int intDigits = 0;
+            while (i < to && data[i] >= '0' && data[i] <= '9' && intDigits < 4) {
+                intPart = intPart * 10 + (data[i++] - '0');
+                intDigits++;
+            }
+            long frac = 0;
+            int digits = 0;
+            boolean roundUp = false;
+            if (i < to && data[i] == '.') {
+                i++;
+                while (i < to && data[i] >= '0' && data[i] <= '9') {
+                    if (digits < 6) {
+                        frac = frac * 10 + (data[i] - '0');
+                        digits++;
+                    } else if (digits == 6) {
+                        roundUp = data[i] >= '5';
+                        digits++;
+                    }
+                    i++;
+                }
+            }
+            if (i < to) {
+                // 科学计数法、空格等非常规写法，走慢路径
+                return parseE6Slow(from, to);
+            }
+            if (intDigits == 0 && digits == 0) {
+                return INVALID;
+            }
+            for (int d = Math.min(digits, 6); d < 6; d++) {
+                frac *= 10;
+            }
+            long e6 = intPart * 1000000L + frac + (roundUp ? 1 : 0);
+            return negative ? -e6 : e6;
+        }
+
+        private long parseE6Slow(int from, int to) {
+            try {
+                double value = Double.parseDouble(new String(data, from, to - from, StandardCharsets.US_ASCII));
+                if (Double.isNaN(value) || Math.abs(value) > 180) {
+                    return INVALID;
+                }
+                return TrackBuffer.toE6(value);
+            } catch (NumberFormatException e) {
+                return INVALID;
+            }
+        }
+    }
+}
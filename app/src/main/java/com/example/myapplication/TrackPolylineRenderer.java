@@ -0,0 +1,138 @@
+package com.example.myapplication;
+
+import android.graphics.Color;
+import android.view.Choreographer;
+
+import com.amap.api.maps.AMap;
+import com.amap.api.maps.model.LatLng;
+import com.amap.api.maps.model.Polyline;
+import com.amap.api.maps.model.PolylineOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量轨迹绘制
+ *
+ * 轨迹拆成多段 Polyline：已满 {@link #SEGMENT_SIZE} 个点的段固定不再修改，
+ * 只有最后一段"活动尾段"随新点更新，每次重绘的代价与轨迹总长度无关。
+ * 更新请求通过 Choreographer 合并，每帧最多绘制一次。必须在主线程调用。
+ */
+public class TrackPolylineRenderer implements Choreographer.FrameCallback {
+
+    private static final int SEGMENT_SIZE = 256;
+    private static final int LINE_WIDTH = 14;
+    private static final int LINE_COLOR = Color.argb(200, 220, 50, 50);
+
+    private final AMap aMap;
+    private final List<Polyline> sealedSegments = new ArrayList<>();
+    private final List<LatLng> tailPoints = new ArrayList<>(SEGMENT_SIZE + 2);
+    private Polyline tailPolyline;
+    private int renderedCount = 0;
+
+    private TrackView pendingTrack;
+    private LatLng pendingCurrent;
+    private boolean frameScheduled = false;
+
+    public TrackPolylineRenderer(AMap aMap) {
+        this.aMap = aMap;
+    }
+
+    /**
+     * 请求重绘；同一帧内的多次请求只绘制最后一次
+     */
+    public void update(TrackView track, LatLng current) {
+        pendingTrack = track;
+        pendingCurrent = current;
+        if (!frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled = false;
+        if (pendingTrack == null || aMap == null) return;
+        render(pendingTrack, pendingCurrent);
+    }
+
+    /**
+     * 绘制到 track 的最新点（TrackRenderBenchmarkTest 直接调用以测量每次更新的耗时）
+     */
+    void render(TrackView track, LatLng current) {
+        int count = track.size();
+        if (count < renderedCount) {
+            // 轨迹已重置（新一次跑步）
+            clear();
+        }
+        for (int i = renderedCount; i < count; i++) {
+            tailPoints.add(new LatLng(track.getLatitude(i), track.getLongitude(i)));
+            if (tailPoints.size() >= SEGMENT_SIZE) {
+                sealTail();
+            }
+        }
+        renderedCount = count;
+
+        if (current != null) tailPoints.add(current);
+        if (tailPoints.size() > 1) {
+            if (tailPolyline == null) {
+                tailPolyline = aMap.addPolyline(newOptions().addAll(tailPoints));
+            } else {
+                tailPolyline.setPoints(tailPoints);
+            }
+        }
+        if (current != null) tailPoints.remove(tailPoints.size() - 1);
+    }
+
+    /**
+     * 固定当前尾段，新尾段从其最后一个点开始，保证线条连续
+     */
+    private void sealTail() {
+        if (tailPolyline == null) {
+            tailPolyline = aMap.addPolyline(newOptions().addAll(tailPoints));
+        } else {
+            tailPolyline.setPoints(tailPoints);
+        }
+        sealedSegments.add(tailPolyline);
+        tailPolyline = null;
+        LatLng last = tailPoints.get(tailPoints.size() - 1);
+        tailPoints.clear();
+        tailPoints.add(last);
+    }
+
+    private PolylineOptions newOptions() {
+        return new PolylineOptions()
+                .width(LINE_WIDTH)
+                .color(LINE_COLOR)
+                .geodesic(true);
+    }
+
+    /**
+     * 移除所有已绘制的线段
+     */
+    public void clear() {
+        for (Polyline p : sealedSegments) {
+            p.remove();
+        }
+        sealedSegments.clear();
+        if (tailPolyline != null) {
+            tailPolyline.remove();
+            tailPolyline = null;
+        }
+        tailPoints.clear();
+        renderedCount = 0;
+    }
+
+    /**
+     * 取消尚未执行的重绘（页面销毁时调用）
+     */
+    public void release() {
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(this);
+            frameScheduled = false;
+        }
+        pendingTrack = null;
+        pendingCurrent = null;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.myapplication;
+
+/**
+ * 流式轨迹抽稀（有界误差的"开窗"算法，可视为在线版 Douglas–Peucker）
+ *
+ * 以最近输出的点为锚点，把后续点放入窗口；新点到来时检查窗口内每个点到
+ * "锚点 → 新点" 线段的垂直距离，全部不超过容差则继续扩大窗口，否则把窗口
+ * 最后一个点输出为新锚点。输出轨迹上任意原始点的偏差不超过容差。
+ * 窗口长度有上限，每个点的处理代价有界，且全程不分配对象。
+ *
+ * 窗口中最后一个点尚未输出，跑步结束时需调用 {@link #flush()}。
+ */
+public class TrackSimplifier implements TrackSink {
+
+    private static final int DEFAULT_MAX_WINDOW = 64;
+
+    private final TrackSink out;
+    private final double tolerance;
+    private final int maxWindow;
+
+    private boolean hasAnchor = false;
+    private int anchorLat, anchorLng;
+    private double metersPerLngE6, metersPerLatE6;
+
+    private final int[] windowLat;
+    private final int[] windowLng;
+    private final long[] windowTime;
+    private int windowSize = 0;
+
+    public TrackSimplifier(double toleranceMeters, TrackSink out) {
+        this(toleranceMeters, DEFAULT_MAX_WINDOW, out);
+    }
+
+    public TrackSimplifier(double toleranceMeters, int maxWindow, TrackSink out) {
+        this.tolerance = toleranceMeters;
+        this.maxWindow = maxWindow;
+        this.out = out;
+        windowLat = new int[maxWindow];
+        windowLng = new int[maxWindow];
+        windowTime = new long[maxWindow];
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    @Override
+    public void addE6(int latE6, int lngE6, long time) {
+        if (!hasAnchor) {
+            emit(latE6, lngE6, time);
+            return;
+        }
+        if (windowSize < maxWindow && windowWithinTolerance(latE6, lngE6)) {
+            push(latE6, lngE6, time);
+            return;
+        }
+        // 偏差超限或窗口已满：窗口最后一个点成为新锚点
+        int last = windowSize - 1;
+        if (last >= 0) {
+            emit(windowLat[last], windowLng[last], windowTime[last]);
+        }
+        windowSize = 0;
+        push(latE6, lngE6, time);
+    }
+
+    /**
+     * 输出窗口中尚未输出的最后一个点
+     */
+    public void flush() {
+        int last = windowSize - 1;
+        if (last >= 0) {
+            emit(windowLat[last], windowLng[last], windowTime[last]);
+        }
+        windowSize = 0;
+    }
+
+    public void reset() {
+        hasAnchor = false;
+        windowSize = 0;
+    }
+
+    private void push(int latE6, int lngE6, long time) {
+        windowLat[windowSize] = latE6;
+        windowLng[windowSize] = lngE6;
+        windowTime[windowSize] = time;
+        windowSize++;
+    }
+
+    private void emit(int latE6, int lngE6, long time) {
+        out.addE6(latE6, lngE6, time);
+        hasAnchor = true;
+        anchorLat = latE6;
+        anchorLng = lngE6;
+        // 以锚点纬度做等距投影，窗口尺度下误差可以忽略
+        double latitude = latE6 / 1e6;
+        metersPerLatE6 = DistanceEngine.metersPerDegreeLat(latitude) / 1e6;
+        metersPerLngE6 = DistanceEngine.metersPerDegreeLng(latitude) / 1e6;
+    }
+
+    /**
+     * 窗口内所有点到线段（锚点 → 候选点）的距离是否都不超过容差
+     */
+    private boolean windowWithinTolerance(int latE6, int lngE6) {
+        double ex = (lngE6 - anchorLng) * metersPerLngE6;
+        double ey = (latE6 - anchorLat) * metersPerLatE6;
+        double lengthSq = ex * ex + ey * ey;
+        double toleranceSq = tolerance * tolerance;
+        for (int i = 0; i < windowSize; i++) {
+            double px = (windowLng[i] - anchorLng) * metersPerLngE6;
+            double py = (windowLat[i] - anchorLat) * metersPerLatE6;
+            double distSq;
+            if (lengthSq == 0) {
+                distSq = px * px + py * py;
+            } else {
+                double t = (px * ex + py * ey) / lengthSq;
+                if (t < 0) t = 0;
+                else if (t > 1) t = 1;
+                double dx = px - t * ex;
+                double dy = py - t * ey;
+                distSq = dx * dx + dy * dy;
+            }
+            if (distSq > toleranceSq) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.myapplication;
+
+/**
+ * 轨迹点接收方（微度坐标 + 毫秒时间），用于串联存储、编码、抽稀等环节
+ */
+public interface TrackSink {
+    void addE6(int latE6, int lngE6, long time);
+}
@@ -0,0 +1,77 @@
+package com.example.myapplication;
+
+/**
+ * 轨迹分层：
+ * 全精度层用于距离计算和日志恢复；存储层经 {@link TrackSimplifier} 抽稀后入库、上传；
+ * 地图层抽稀更多，只用于地图绘制。
+ */
+public class TrackTiers implements TrackSink {
+
+    /** 存储层默认容差（米），与民用GPS误差相当，不影响轨迹形状 */
+    public static final double DEFAULT_STORAGE_TOLERANCE = 2.0;
+    /** 地图层默认容差（米），17级缩放下约为两三个像素 */
+    public static final double DEFAULT_MAP_TOLERANCE = 6.0;
+
+    private final TrackBuffer full = new TrackBuffer();
+    private final TrackBuffer storage = new TrackBuffer();
+    private final TrackBuffer map = new TrackBuffer();
+    private TrackSimplifier storageSimplifier;
+    private TrackSimplifier mapSimplifier;
+
+    public TrackTiers() {
+        this(DEFAULT_STORAGE_TOLERANCE, DEFAULT_MAP_TOLERANCE);
+    }
+
+    public TrackTiers(double storageTolerance, double mapTolerance) {
+        setTolerances(storageTolerance, mapTolerance);
+    }
+
+    /**
+     * 修改各层容差，只影响之后加入的点
+     */
+    public void setTolerances(double storageTolerance, double mapTolerance) {
+        if (storageSimplifier != null) storageSimplifier.flush();
+        if (mapSimplifier != null) mapSimplifier.flush();
+        storageSimplifier = new TrackSimplifier(storageTolerance, storage);
+        mapSimplifier = new TrackSimplifier(mapTolerance, map);
+    }
+
+    @Override
+    public void addE6(int latE6, int lngE6, long time) {
+        full.addE6(latE6, lngE6, time);
+        storageSimplifier.addE6(latE6, lngE6, time);
+        mapSimplifier.addE6(latE6, lngE6, time);
+    }
+
+    public void add(double latitude, double longitude, long time) {
+        addE6(TrackBuffer.toE6(latitude), TrackBuffer.toE6(longitude), time);
+    }
+
+    /**
+     * 跑步结束时输出抽稀窗口中剩余的点
+     */
+    public void flush() {
+        storageSimplifier.flush();
+        mapSimplifier.flush();
+    }
+
+    public void clear() {
+        full.clear();
+        storage.clear();
+        map.clear();
+        storageSimplifier.reset();
+        mapSimplifier.reset();
+    }
+
+    public TrackBuffer full() {
+        return full;
+    }
+
+    public TrackBuffer storage() {
+        return storage;
+    }
+
+    public TrackBuffer map() {
+        return map;
+    }
+}
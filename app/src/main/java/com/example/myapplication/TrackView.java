@@ -0,0 +1,13 @@
+package com.example.myapplication;
+
+/**
+ * 轨迹只读视图：消费方可按下标遍历，不复制、不分配对象
+ */
+public interface TrackView {
+    int size();
+    int getLatE6(int index);
+    int getLngE6(int index);
+    long getTime(int index);
+    double getLatitude(int index);
+    double getLongitude(int index);
+}
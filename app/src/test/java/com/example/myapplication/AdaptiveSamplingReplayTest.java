@@ -0,0 +1,126 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * 自适应定位采样回放测试
+ *
+ * 以 500ms 间隔合成的操场跑步轨迹为"真实定位流"，按 {@link AdaptiveSamplingController} 决定的间隔取点，
+ * 对比原固定 500ms 高精度模式的回调次数、GPS 工作时长和距离误差。轨迹中途 60 秒的原地停留按暂停处理。
+ */
+public class AdaptiveSamplingReplayTest {
+
+    private static final long SOURCE_STEP_MS = 500;
+
+    static class Result {
+        int callbacks;
+        long gpsMillis;
+        double distance;
+    }
+
+    @Test
+    public void replaySyntheticRuns() {
+        GpsFilterReplayTest.Trace[] traces = {
+                GpsFilterReplayTest.synthesizeStadium("stadium-5laps", 5, 3.3, 5.0, SOURCE_STEP_MS, 1),
+                GpsFilterReplayTest.synthesizeStadium("stadium-jog", 3, 2.4, 6.0, SOURCE_STEP_MS, 3),
+        };
+        System.out.println(String.format(Locale.US, "%-14s %-18s %9s %9s %8s",
+                "trace", "sampling", "callbacks", "gps(s)", "error"));
+        for (GpsFilterReplayTest.Trace trace : traces) {
+            Result fixed = replayFixed(trace);
+            print(trace, "fixed-500ms", fixed);
+            for (AdaptiveSamplingController.Profile profile : AdaptiveSamplingController.Profile.values()) {
+                for (boolean screenOn : new boolean[] { true, false }) {
+                    Result adaptive = replayAdaptive(trace, profile, screenOn);
+                    print(trace, profile.name().toLowerCase(Locale.US) + (screenOn ? "" : "-off"), adaptive);
+
+                    assertTrue(adaptive.callbacks < fixed.callbacks);
+                    assertTrue(adaptive.gpsMillis < fixed.gpsMillis);
+                    if (profile != AdaptiveSamplingController.Profile.BATTERY_SAVER) {
+                        // 距离误差与固定采样相比不超过 3 个百分点
+                        assertTrue(trace.name + " " + profile + " 距离误差明显变大",
+                                Math.abs(error(adaptive, trace)) <= Math.abs(error(fixed, trace)) + 3);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void print(GpsFilterReplayTest.Trace trace, String sampling, Result r) {
+        System.out.println(String.format(Locale.US, "%-14s %-18s %9d %9d %7.1f%%",
+                trace.name, sampling, r.callbacks, r.gpsMillis / 1000, error(r, trace)));
+    }
+
+    private static double error(Result r, GpsFilterReplayTest.Trace trace) {
+        return (r.distance - trace.expectedDistance) * 100.0 / trace.expectedDistance;
+    }
+
+    private static boolean isPaused(GpsFilterReplayTest.Trace trace, long time) {
+        long pauseStart = trace.time[trace.time.length / 2];
+        return time >= pauseStart && time < pauseStart + 60_000;
+    }
+
+    private static Result replayFixed(GpsFilterReplayTest.Trace trace) {
+        Result result = new Result();
+        GpsFilterChain chain = new GpsFilterChain();
+        int n = trace.time.length;
+        for (int i = 0; i < n; i++) {
+            result.callbacks++;
+            if (isPaused(trace, trace.time[i])) continue;
+            if (chain.process(trace.lat[i], trace.lng[i], trace.accuracy[i], trace.speed[i], trace.time[i])
+                    == GpsFilterChain.ACCEPTED) {
+                result.distance += chain.distance;
+            }
+        }
+        result.gpsMillis = trace.time[n - 1] - trace.time[0];
+        return result;
+    }
+
+    private static Result replayAdaptive(GpsFilterReplayTest.Trace trace,
+                                         AdaptiveSamplingController.Profile profile, boolean screenOn) {
+        Result result = new Result();
+        GpsFilterChain chain = new GpsFilterChain();
+        AdaptiveSamplingController controller = new AdaptiveSamplingController(profile);
+        long start = trace.time[0];
+        controller.setScreenOn(screenOn, start);
+        controller.startRun(start);
+        long nextDue = start;
+        long nextTick = start;
+        int n = trace.time.length;
+        for (int i = 0; i < n; i++) {
+            long now = trace.time[i];
+            boolean paused = isPaused(trace, now);
+            boolean changed = controller.setPaused(paused, now);
+            if (now >= nextTick) {
+                changed |= controller.onTick(now);
+                nextTick += 1000;
+            }
+            if (changed) {
+                // 重新设置定位参数后很快会收到下一个点
+                nextDue = Math.min(nextDue, now);
+            }
+            if (now < nextDue) continue;
+
+            float accuracy = trace.accuracy[i];
+            if (controller.getMode() == AdaptiveSamplingController.Mode.BATTERY_SAVING) {
+                // 网络定位精度较差
+                accuracy = Math.max(accuracy, 40f);
+            }
+            controller.onFix(trace.speed[i], accuracy, now);
+            nextDue = now + controller.getInterval();
+            if (paused) continue;
+            if (chain.process(trace.lat[i], trace.lng[i], accuracy, trace.speed[i], now)
+                    == GpsFilterChain.ACCEPTED) {
+                result.distance += chain.distance;
+            }
+        }
+        controller.stopRun(trace.time[n - 1]);
+        result.callbacks = controller.getCallbackCount();
+        result.gpsMillis = controller.getGpsMillis();
+        return result;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 局部平面距离与 Vincenty 公式的误差对比和耗时对比
+ */
+public class DistanceEngineTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    public void relativeErrorWithinBound() {
+        Random random = new Random(42);
+        double maxRelative = 0;
+        for (double originLat = -70; originLat <= 70; originLat += 10) {
+            double originLng = 114.36;
+            DistanceEngine engine = new DistanceEngine(originLat, originLng);
+            for (int i = 0; i < 20_000; i++) {
+                double[] a = randomPointWithin(random, originLat, originLng, 10_000);
+                double[] b = randomNear(random, a, random.nextDouble() < 0.5 ? 50 : 2_000);
+                double expected = vincenty(a[0], a[1], b[0], b[1]);
+                if (expected < 1) continue;
+                double actual = engine.distance(a[0], a[1], b[0], b[1]);
+                maxRelative = Math.max(maxRelative, Math.abs(actual - expected) / expected);
+            }
+        }
+        System.out.println(String.format(Locale.US, "最大相对误差: %.2e", maxRelative));
+        assertTrue("相对误差超出 1e-6: " + maxRelative, maxRelative < 1e-6);
+    }
+
+    @Test
+    public void cumulativeMatchesPairwiseSum() {
+        DistanceEngine engine = new DistanceEngine(30.5, 114.36);
+        TrackBuffer track = new TrackBuffer();
+        Random random = new Random(7);
+        double lat = 30.5, lng = 114.36;
+        for (int i = 0; i < 5000; i++) {
+            lat += (random.nextDouble() - 0.5) * 1e-4;
+            lng += (random.nextDouble() - 0.5) * 1e-4;
+            track.add(lat, lng, i * 1000L);
+        }
+        double[] out = new double[track.size()];
+        double total = engine.cumulative(track, out);
+        assertEquals(engine.pathLength(track, 0, track.size()), total, 1e-6);
+        assertEquals(total, out[track.size() - 1], 0);
+        assertEquals(engine.pathLength(track, 0, 100), out[99], 1e-9);
+    }
+
+    @Test
+    public void benchmarkAgainstVincenty() {
+        Random random = new Random(1);
+        double[] lat = new double[SAMPLES + 1];
+        double[] lng = new double[SAMPLES + 1];
+        lat[0] = 30.5;
+        lng[0] = 114.36;
+        for (int i = 1; i <= SAMPLES; i++) {
+            lat[i] = lat[i - 1] + (random.nextDouble() - 0.5) * 6e-5;
+            lng[i] = lng[i - 1] + (random.nextDouble() - 0.5) * 6e-5;
+        }
+        DistanceEngine engine = new DistanceEngine(lat[0], lng[0]);
+        double sink = 0;
+        long vincentyNanos = 0, engineNanos = 0;
+        // 第一轮预热
+        for (int round = 0; round < 3; round++) {
+            long begin = System.nanoTime();
+            for (int i = 1; i <= SAMPLES; i++) {
+                sink += vincenty(lat[i - 1], lng[i - 1], lat[i], lng[i]);
+            }
+            long mid = System.nanoTime();
+            for (int i = 1; i <= SAMPLES; i++) {
+                sink += engine.distance(lat[i - 1], lng[i - 1], lat[i], lng[i]);
+            }
+            long end = System.nanoTime();
+            if (round > 0) {
+                vincentyNanos += mid - begin;
+                engineNanos += end - mid;
+            }
+        }
+        System.out.println(String.format(Locale.US, "Vincenty: %.1f ns/次, 局部平面: %.1f ns/次 (sink=%.0f)",
+                vincentyNanos / (2.0 * SAMPLES), engineNanos / (2.0 * SAMPLES), sink));
+    }
+
+    private static double[] randomPointWithin(Random random, double lat, double lng, double meters) {
+        return randomNear(random, new double[] { lat, lng }, meters);
+    }
+
+    private static double[] randomNear(Random random, double[] p, double meters) {
+        double r = Math.sqrt(random.nextDouble()) * meters / Math.sqrt(2);
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double dLat = r * Math.cos(angle) / 111_000.0;
+        double dLng = r * Math.sin(angle) / (111_000.0 * Math.cos(Math.toRadians(p[0])));
+        return new double[] { p[0] + dLat, p[1] + dLng };
+    }
+
+    /**
+     * Vincenty 反解，与 android.location.Location.computeDistanceAndBearing 相同的算法
+     */
+    static double vincenty(double lat1, double lon1, double lat2, double lon2) {
+        int maxIters = 20;
+        lat1 *= Math.PI / 180.0;
+        lat2 *= Math.PI / 180.0;
+        lon1 *= Math.PI / 180.0;
+        lon2 *= Math.PI / 180.0;
+
+        double a = 6378137.0;
+        double b = 6356752.3142;
+        double f = (a - b) / a;
+        double aSqMinusBSqOverBSq = (a * a - b * b) / (b * b);
+
+        double l = lon2 - lon1;
+        double aA = 0.0;
+        double u1 = Math.atan((1.0 - f) * Math.tan(lat1));
+        double u2 = Math.atan((1.0 - f) * Math.tan(lat2));
+
+        double cosU1 = Math.cos(u1);
+        double cosU2 = Math.cos(u2);
+        double sinU1 = Math.sin(u1);
+        double sinU2 = Math.sin(u2);
+        double cosU1cosU2 = cosU1 * cosU2;
+        double sinU1sinU2 = sinU1 * sinU2;
+
+        double sigma = 0.0;
+        double deltaSigma = 0.0;
+        double lambda = l;
+        for (int iter = 0; iter < maxIters; iter++) {
+            double lambdaOrig = lambda;
+            double cosLambda = Math.cos(lambda);
+            double sinLambda = Math.sin(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            double sinSqSigma = t1 * t1 + t2 * t2;
+            double sinSigma = Math.sqrt(sinSqSigma);
+            double cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = (sinSigma == 0) ? 0.0 : cosU1cosU2 * sinLambda / sinSigma;
+            double cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+            double cos2SM = (cosSqAlpha == 0) ? 0.0 : cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha;
+
+            double uSquared = cosSqAlpha * aSqMinusBSqOverBSq;
+            aA = 1 + (uSquared / 16384.0) * (4096.0 + uSquared * (-768 + uSquared * (320.0 - 175.0 * uSquared)));
+            double bB = (uSquared / 1024.0) * (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+            double cC = (f / 16.0) * cosSqAlpha * (4.0 + f * (4.0 - 3.0 * cosSqAlpha));
+            double cos2SMSq = cos2SM * cos2SM;
+            deltaSigma = bB * sinSigma * (cos2SM + (bB / 4.0) * (cosSigma * (-1.0 + 2.0 * cos2SMSq)
+                    - (bB / 6.0) * cos2SM * (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2SMSq)));
+
+            lambda = l + (1.0 - cC) * f * sinAlpha
+                    * (sigma + cC * sinSigma * (cos2SM + cC * cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM)));
+
+            double delta = (lambda - lambdaOrig) / lambda;
+            if (Math.abs(delta) < 1.0e-12) {
+                break;
+            }
+        }
+        return b * aA * (sigma - deltaSigma);
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * GPS 过滤链回放测试
+ *
+ * 回放 src/test/resources/gps/ 下的定位记录（格式见该目录 README.md）和合成的操场跑步轨迹，
+ * 对比 {@link GpsFilterChain} 与原先 onLocationChanged 中经验阈值的距离误差，并输出每个点的处理耗时。
+ */
+public class GpsFilterReplayTest {
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    static class Trace {
+        final String name;
+        final double expectedDistance;
+        final long[] time;
+        final double[] lat, lng;
+        final float[] accuracy, speed;
+
+        Trace(String name, double expectedDistance, long[] time, double[] lat, double[] lng,
+              float[] accuracy, float[] speed) {
+            this.name = name;
+            this.expectedDistance = expectedDistance;
+            this.time = time;
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracy = accuracy;
+            this.speed = speed;
+        }
+    }
+
+    @Test
+    public void replayCorpus() throws IOException {
+        List<Trace> traces = new ArrayList<>(loadRecordedTraces());
+        traces.add(synthesizeStadium("synthetic-stadium-5laps", 5, 3.3, 5.0, 1000, 1));
+        traces.add(synthesizeStadium("synthetic-stadium-noisy", 5, 3.3, 9.0, 1000, 2));
+        traces.add(synthesizeStadium("synthetic-stadium-jog", 3, 2.4, 6.0, 1000, 3));
+
+        System.out.println(String.format(Locale.US, "%-26s %9s %9s %8s %9s %8s %9s",
+                "trace", "expected", "legacy", "error", "filter", "error", "ns/fix"));
+        for (Trace trace : traces) {
+            double legacy = legacyDistance(trace);
+
+            GpsFilterChain chain = new GpsFilterChain();
+            double filtered = 0;
+            int n = trace.time.length;
+            // 预热后计时
+            for (int round = 0; round < 2; round++) {
+                chain.reset();
+                filtered = 0;
+                long begin = System.nanoTime();
+                for (int i = 0; i < n; i++) {
+                    if (chain.process(trace.lat[i], trace.lng[i], trace.accuracy[i], trace.speed[i],
+                            trace.time[i]) == GpsFilterChain.ACCEPTED) {
+                        filtered += chain.distance;
+                    }
+                }
+                long elapsed = System.nanoTime() - begin;
+                if (round == 1) {
+                    System.out.println(String.format(Locale.US, "%-26s %9.1f %9.1f %7.1f%% %9.1f %7.1f%% %9.0f",
+                            trace.name, trace.expectedDistance,
+                            legacy, error(legacy, trace.expectedDistance),
+                            filtered, error(filtered, trace.expectedDistance),
+                            (double) elapsed / n));
+                }
+            }
+
+            if (trace.name.startsWith("synthetic")) {
+                assertTrue(trace.name + " 过滤链误差不应大于原经验阈值",
+                        Math.abs(filtered - trace.expectedDistance)
+                                <= Math.abs(legacy - trace.expectedDistance));
+            }
+        }
+    }
+
+    private static double error(double value, double expected) {
+        return expected > 0 ? (value - expected) * 100.0 / expected : 0;
+    }
+
+    /**
+     * 原 RunningService.onLocationChanged 中的距离累计逻辑
+     */
+    private static double legacyDistance(Trace trace) {
+        double total = 0;
+        boolean hasLast = false;
+        double lastLat = 0, lastLng = 0;
+        long lastTime = 0;
+        for (int i = 0; i < trace.time.length; i++) {
+            double lat = trace.lat[i], lng = trace.lng[i];
+            float accuracy = trace.accuracy[i], speed = trace.speed[i];
+            long now = trace.time[i];
+            if (!hasLast) {
+                hasLast = true;
+                lastLat = lat;
+                lastLng = lng;
+                lastTime = now;
+                continue;
+            }
+            double rawDist = haversine(lastLat, lastLng, lat, lng);
+            long timeDiff = now - lastTime;
+            double gpsBasedDist = speed * timeDiff / 1000.0;
+            boolean isValidPoint = accuracy < 30 && timeDiff > 0;
+            double finalDist = rawDist;
+            if (speed > 0.5 && rawDist > gpsBasedDist * 2) {
+                finalDist = gpsBasedDist;
+            }
+            if (speed < 0.3 && rawDist < 3) continue;
+            double calcSpeed = timeDiff > 0 ? (rawDist / timeDiff * 1000) : 0;
+            if (calcSpeed > 12) continue;
+            if (isValidPoint) {
+                if (finalDist > 0.5) total += finalDist;
+                lastLat = lat;
+                lastLng = lng;
+                lastTime = now;
+            }
+        }
+        return total;
+    }
+
+    private static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+
+    private List<Trace> loadRecordedTraces() throws IOException {
+        List<Trace> traces = new ArrayList<>();
+        URL dir = getClass().getClassLoader().getResource("gps");
+        if (dir == null || !"file".equals(dir.getProtocol())) {
+            return traces;
+        }
+        File[] files = new File(dir.getPath()).listFiles((d, name) -> name.endsWith(".csv"));
+        if (files == null) return traces;
+        Arrays.sort(files);
+        for (File file : files) {
+            traces.add(readCsv(file));
+        }
+        return traces;
+    }
+
+    private Trace readCsv(File file) throws IOException {
+        double expected = -1;
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                file.toURI().toURL().openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.startsWith("#")) {
+                    int idx = line.indexOf("distance=");
+                    if (idx >= 0) {
+                        expected = Double.parseDouble(line.substring(idx + 9).trim());
+                    }
+                    continue;
+                }
+                if (line.startsWith("time")) continue;
+                rows.add(line.split(","));
+            }
+        }
+        assertTrue(file.getName() + " 缺少 '# distance=' 标注", expected >= 0);
+        int n = rows.size();
+        long[] time = new long[n];
+        double[] lat = new double[n], lng = new double[n];
+        float[] accuracy = new float[n], speed = new float[n];
+        for (int i = 0; i < n; i++) {
+            String[] r = rows.get(i);
+            time[i] = Long.parseLong(r[0].trim());
+            lat[i] = Double.parseDouble(r[1].trim());
+            lng[i] = Double.parseDouble(r[2].trim());
+            accuracy[i] = Float.parseFloat(r[3].trim());
+            speed[i] = Float.parseFloat(r[4].trim());
+        }
+        return new Trace(file.getName(), expected, time, lat, lng, accuracy, speed);
+    }
+
+    /**
+     * 合成 400 米标准跑道上的跑步：起点和中途各原地停留 60 秒，
+     * 定位误差按一阶自相关过程生成（真实 GPS 误差在相邻点之间高度相关），并混入少量跳点。
+     *
+     * @param stepMs 定位间隔（毫秒）
+     */
+    static Trace synthesizeStadium(String name, int laps, double runSpeed, double noiseSigma,
+                                   long stepMs, long seed) {
+        Random random = new Random(seed);
+        double straight = 84.39;
+        double radius = (400 - 2 * straight) / (2 * Math.PI);
+        double originLat = 30.5, originLng = 114.36;
+        double metersPerLat = 111319.49;
+        double metersPerLng = metersPerLat * Math.cos(Math.toRadians(originLat));
+
+        double runSeconds = laps * 400 / runSpeed;
+        double step = stepMs / 1000.0;
+        int n = (int) ((runSeconds + 120) / step);
+        int standStart = n / 2;
+        int standSamples = (int) (60 / step);
+        long[] time = new long[n];
+        double[] lat = new double[n], lng = new double[n];
+        float[] accuracy = new float[n], speed = new float[n];
+        double ex = 0, ey = 0;
+        // 每秒自相关系数 0.9，按定位间隔换算
+        double rho = Math.pow(0.9, step);
+        double innovation = noiseSigma * Math.sqrt(1 - rho * rho);
+        double s = 0;
+        for (int i = 0; i < n; i++) {
+            boolean standing = i < standSamples || (i >= standStart && i < standStart + standSamples);
+            double v = standing ? 0 : runSpeed;
+            s += v * step;
+            if (s > laps * 400) s = laps * 400;
+            double p = s % 400;
+            double x, y;
+            if (p < straight) {
+                x = p;
+                y = 0;
+            } else if (p < straight + Math.PI * radius) {
+                double a = (p - straight) / radius;
+                x = straight + radius * Math.sin(a);
+                y = radius - radius * Math.cos(a);
+            } else if (p < 2 * straight + Math.PI * radius) {
+                x = straight - (p - straight - Math.PI * radius);
+                y = 2 * radius;
+            } else {
+                double a = (p - 2 * straight - Math.PI * radius) / radius;
+                x = -radius * Math.sin(a);
+                y = radius + radius * Math.cos(a);
+            }
+            ex = rho * ex + random.nextGaussian() * innovation;
+            ey = rho * ey + random.nextGaussian() * innovation;
+            double ox = ex, oy = ey;
+            if (random.nextDouble() < 0.01 * step) {
+                // 跳点：多路径反射
+                ox += (random.nextBoolean() ? 1 : -1) * (60 + random.nextDouble() * 90);
+                oy += (random.nextBoolean() ? 1 : -1) * (60 + random.nextDouble() * 90);
+            }
+            time[i] = i * stepMs;
+            lat[i] = originLat + (y + oy) / metersPerLat;
+            lng[i] = originLng + (x + ox) / metersPerLng;
+            accuracy[i] = (float) Math.max(3, noiseSigma * 1.5 + random.nextGaussian() * 2);
+            speed[i] = (float) Math.max(0, v + random.nextGaussian() * (standing ? 0.1 : 0.3));
+        }
+        return new Trace(name, laps * 400, time, lat, lng, accuracy, speed);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 滚动窗口配速的准确性和性能
+ */
+public class PaceEngineTest {
+
+    /** 变速跑：4:00/km 跑 3 分钟，6:00/km 跑 2 分钟，交替 6 组，中间原地停留 60 秒 */
+    private static final double FAST = 1000 / 240.0;
+    private static final double SLOW = 1000 / 360.0;
+
+    @Test
+    public void rollingWindowsFollowIntervalChanges() {
+        PaceEngine engine = new PaceEngine();
+        Random random = new Random(3);
+        double distance = 0;
+        long time = 0;
+        double worst30s = 0;
+        for (int set = 0; set < 6; set++) {
+            for (int phase = 0; phase < 2; phase++) {
+                double speed = phase == 0 ? FAST : SLOW;
+                int seconds = phase == 0 ? 180 : 120;
+                double expectedPace = 1000 / speed / 60;
+                for (int s = 0; s < seconds; s++) {
+                    time += 1000;
+                    // 每秒距离带 ±10% 的定位噪声
+                    distance += speed * (1 + (random.nextDouble() - 0.5) * 0.2);
+                    engine.add(time, distance);
+                    if (s >= 40) {
+                        // 窗口完全落在当前速度段内
+                        worst30s = Math.max(worst30s, Math.abs(engine.getPace30s() - expectedPace) / expectedPace);
+                    }
+                }
+            }
+            if (set == 2) {
+                // 原地停留：时间前进，距离不变
+                for (int s = 0; s < 60; s++) {
+                    time += 1000;
+                    engine.add(time, distance);
+                }
+                assertEquals(0, engine.getPace10s(), 0);
+            }
+        }
+        System.out.println(String.format(Locale.US, "30秒窗口最大相对误差: %.1f%%", worst30s * 100));
+        assertTrue(worst30s < 0.05);
+
+        // 平均移动配速排除原地停留：6 组共 18 分钟快跑 + 12 分钟慢跑
+        double movingMinutes = 30;
+        double expectedAverage = movingMinutes / (distance / 1000);
+        assertEquals(expectedAverage, engine.getAverageMovingPace(), expectedAverage * 0.01);
+
+        // 最近 1 公里全部处于最后一段慢跑（2 分钟约 333 米）和前一段快跑中
+        assertTrue(engine.getPaceLastKm() > 4.0 && engine.getPaceLastKm() < 6.0);
+    }
+
+    @Test
+    public void distanceWindowCoversOneKilometer() {
+        PaceEngine engine = new PaceEngine();
+        double distance = 0;
+        for (int s = 1; s <= 1200; s++) {
+            distance += s <= 600 ? FAST : SLOW;
+            engine.add(s * 1000L, distance);
+        }
+        // 最后 600 秒慢跑约 1667 米，最近 1 公里全是慢跑
+        assertEquals(6.0, engine.getPaceLastKm(), 0.05);
+    }
+
+    @Test
+    public void windowDegradesToBufferWhenCapacityIsSmall() {
+        PaceEngine engine = new PaceEngine(16, new long[] { 60_000 }, new double[] { 1000 });
+        for (int s = 1; s <= 100; s++) {
+            engine.add(s * 1000L, s * SLOW);
+        }
+        assertEquals(6.0, engine.getTimeWindowPace(0), 0.01);
+        assertEquals(6.0, engine.getDistanceWindowPace(0), 0.01);
+    }
+
+    @Test
+    public void benchmarkUpdate() {
+        PaceEngine engine = new PaceEngine();
+        int n = 2_000_000;
+        double distance = 0;
+        double sink = 0;
+        // 预热
+        for (int i = 0; i < n; i++) {
+            distance += 3;
+            engine.add(i * 1000L, distance);
+        }
+        engine.reset();
+        distance = 0;
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(mx);
+        long begin = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            distance += 3;
+            engine.add(i * 1000L, distance);
+            sink += engine.getPace10s() + engine.getPace30s() + engine.getPaceLastKm();
+        }
+        long elapsed = System.nanoTime() - begin;
+        long allocated = allocatedBytes(mx) - allocatedBefore;
+        System.out.println(String.format(Locale.US, "更新+三个窗口查询: %.1f ns/次, 分配 %d 字节 (sink=%.0f)",
+                (double) elapsed / n, allocated, sink));
+        if (allocated >= 0) {
+            // 计时和打印之外不应有分配
+            assertTrue("每次更新不应分配对象: " + allocated, allocated < 64 * 1024);
+        }
+    }
+
+    private static long allocatedBytes(ThreadMXBean mx) {
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * 跑步日志：恢复定位点和检查点，遗留的过期日志不恢复
+ */
+public class RunJournalTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RunJournal writeJournal(File file, long startTime, int fixes) throws Exception {
+        RunJournal journal = new RunJournal(file);
+        journal.start(startTime);
+        for (int i = 0; i < fixes; i++) {
+            journal.appendFix(30_500_000 + i * 10, 114_300_000 + i * 10, startTime + (i + 1) * 3000L);
+        }
+        journal.appendCheckpoint(startTime + fixes * 3000L, 0, 0, fixes * 8.0, fixes * 9, false);
+        // 模拟进程被杀：只关闭不删除
+        journal.close();
+        return journal;
+    }
+
+    @Test
+    public void recoversFixesAndCheckpoint() throws Exception {
+        long start = System.currentTimeMillis() - 10 * 60_000;
+        File file = folder.newFile("run.journal");
+        writeJournal(file, start, 100);
+
+        RunJournal journal = new RunJournal(file);
+        assertTrue(journal.exists());
+        TrackBuffer track = new TrackBuffer();
+        RunJournal.Recovery recovery = journal.recover(track);
+        assertNotNull(recovery);
+        assertEquals(100, track.size());
+        assertEquals(start, recovery.startTime);
+        assertEquals(900, recovery.stepCount);
+        assertEquals(start + 300_000, recovery.lastWriteTime);
+        assertFalse(recovery.isStale(System.currentTimeMillis()));
+        journal.finish();
+        assertFalse(journal.exists());
+    }
+
+    @Test
+    public void leftoverJournalFromDaysAgoIsStale() throws Exception {
+        long now = System.currentTimeMillis();
+        File file = folder.newFile("stale.journal");
+        // 两天前强制停止后遗留的日志
+        writeJournal(file, now - 48 * HOUR, 50);
+
+        RunJournal.Recovery recovery = new RunJournal(file).recover(new TrackBuffer());
+        assertNotNull(recovery);
+        assertTrue(recovery.isStale(now));
+
+        // 边界：最后写入在允许的间隔内仍可恢复
+        assertFalse(recovery.isStale(recovery.lastWriteTime + RunJournal.MAX_RECOVERY_GAP_MS));
+        assertTrue(recovery.isStale(recovery.lastWriteTime + RunJournal.MAX_RECOVERY_GAP_MS + 1));
+        // 时钟被调回到开始之前
+        assertTrue(recovery.isStale(recovery.startTime - 1));
+    }
+}
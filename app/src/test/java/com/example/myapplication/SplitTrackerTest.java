@@ -0,0 +1,82 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分段统计：边界插值、多种分段长度和最后的不完整分段
+ */
+public class SplitTrackerTest {
+
+    @Test
+    public void kilometerSplitsAreInterpolatedAtBoundaries() {
+        SplitTracker tracker = new SplitTracker();
+        // 前 1 公里 5:00/km，之后 6:00/km；每 3 秒一个点，步频 180
+        long time = 0;
+        double distance = 0;
+        int steps = 0;
+        while (distance < 2500) {
+            double speed = distance < 1000 ? 1000 / 300.0 : 1000 / 360.0;
+            time += 3000;
+            distance += speed * 3;
+            steps += 9;
+            tracker.onProgress(time, distance, steps);
+        }
+        tracker.finish(time, distance, steps);
+
+        List<SplitTracker.Split> splits = tracker.getSplits(SplitTracker.KILOMETER);
+        assertEquals(3, splits.size());
+        assertEquals(300_000, splits.get(0).durationMs, 1000);
+        assertEquals(5.0, splits.get(0).getPace(), 0.02);
+        assertEquals(6.0, splits.get(1).getPace(), 0.02);
+        assertEquals(180, splits.get(0).getCadence(), 1);
+        assertEquals(180, splits.get(1).getCadence(), 1);
+        assertFalse(splits.get(1).isPartial());
+
+        SplitTracker.Split last = splits.get(2);
+        assertTrue(last.isPartial());
+        assertEquals(distance - 2000, last.distance, 1e-6);
+        assertEquals(6.0, last.getPace(), 0.02);
+
+        // 各分段时间、步数之和等于总数
+        long totalTime = 0;
+        int totalSteps = 0;
+        for (SplitTracker.Split split : splits) {
+            totalTime += split.durationMs;
+            totalSteps += split.steps;
+        }
+        assertEquals(time, totalTime, 1);
+        assertEquals(steps, totalSteps, 1);
+    }
+
+    @Test
+    public void customDistanceAndSparseFixes() {
+        SplitTracker tracker = new SplitTracker(SplitTracker.KILOMETER, 400);
+        // 信号中断：一次跨过多个 400 米边界
+        tracker.onProgress(60_000, 300, 180);
+        tracker.onProgress(300_000, 1300, 780);
+        List<SplitTracker.Split> laps = tracker.getSplits(400);
+        assertEquals(3, laps.size());
+        for (SplitTracker.Split lap : laps) {
+            assertEquals(400, lap.distance, 0);
+        }
+        assertEquals(1, tracker.getSplits(SplitTracker.KILOMETER).size());
+        assertEquals(4, tracker.getAllSplits().size());
+
+        // 重复调用 finish 不会重复生成不完整分段
+        tracker.finish(301_000, 1305, 790);
+        tracker.finish(301_000, 1305, 790);
+        assertEquals(4, tracker.getSplits(400).size());
+        assertEquals(2, tracker.getSplits(SplitTracker.KILOMETER).size());
+        assertEquals(105, tracker.getSplits(400).get(3).distance, 1e-6);
+
+        // 剩余距离太短时不生成不完整分段
+        SplitTracker shortTail = new SplitTracker();
+        shortTail.onProgress(300_000, 1005, 900);
+        shortTail.finish(301_000, 1005, 903);
+        assertEquals(1, shortTail.getAllSplits().size());
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 计步算法回放测试
+ *
+ * 回放 src/test/resources/steps/ 下的加速度计 CSV 记录（格式见该目录 README.md），
+ * 以及若干合成的步态信号，输出每条记录的步数误差和每秒处理的采样数。
+ * 每条记录有允许的最大误差，超出时测试失败；没有允许误差（NaN）的记录只输出不判断。
+ */
+public class StepDetectorReplayTest {
+
+    /** 录制记录默认允许的步数误差（%），文件头可用 "# maxError=" 单独指定 */
+    private static final double DEFAULT_MAX_ERROR_PERCENT = 10;
+
+    /** 一条回放记录：采样时间（毫秒）和三轴加速度 */
+    static class Trace {
+        final String name;
+        final int expectedSteps;
+        /** 允许的步数误差（%），NaN 时只输出不判断 */
+        final double maxErrorPercent;
+        final long[] timeMs;
+        final float[] x, y, z;
+
+        Trace(String name, int expectedSteps, double maxErrorPercent, long[] timeMs, float[] x, float[] y, float[] z) {
+            this.name = name;
+            this.expectedSteps = expectedSteps;
+            this.maxErrorPercent = maxErrorPercent;
+            this.timeMs = timeMs;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    @Test
+    public void replayCorpus() throws IOException {
+        List<Trace> traces = new ArrayList<>(loadRecordedTraces());
+        traces.add(synthesize("synthetic-walk-hand", 1.8, 60, 6.5f, 0, 0.8f, 1, 5));
+        // 口袋里同一步的着地和蹬地各有一个峰，最小步间隔要把蹬地峰滤掉
+        traces.add(synthesize("synthetic-walk-pocket", 1.8, 60, 9.0f, 0.7f, 1.5f, 2, 5));
+        traces.add(synthesize("synthetic-brisk-walk-pocket", 2.0, 60, 10.0f, 0.7f, 1.5f, 5, 5));
+        // 步频超过最小步间隔对应的上限（450ms，约 133 步/分），合成信号也无法说明调小间隔不会重复计步，
+        // 只输出；需要录制的真实记录确定
+        traces.add(synthesize("synthetic-jog-pocket", 2.6, 60, 12.0f, 0.6f, 2.0f, 3, Double.NaN));
+        traces.add(synthesize("synthetic-sprint-hand", 3.2, 30, 14.0f, 0, 2.5f, 4, Double.NaN));
+
+        System.out.println(String.format(Locale.US, "%-28s %8s %8s %8s %8s %14s",
+                "trace", "expected", "counted", "error", "max", "samples/s"));
+        List<String> failures = new ArrayList<>();
+        for (Trace trace : traces) {
+            StepDetector detector = new StepDetector();
+            int counted = 0;
+            long begin = System.nanoTime();
+            int n = trace.timeMs.length;
+            for (int i = 0; i < n; i++) {
+                if (detector.onSample(trace.x[i], trace.y[i], trace.z[i], trace.timeMs[i])) {
+                    counted++;
+                }
+            }
+            long elapsed = Math.max(System.nanoTime() - begin, 1);
+            double error = trace.expectedSteps > 0
+                    ? (counted - trace.expectedSteps) * 100.0 / trace.expectedSteps : 0;
+            String max = Double.isNaN(trace.maxErrorPercent)
+                    ? "-" : String.format(Locale.US, "%.1f%%", trace.maxErrorPercent);
+            System.out.println(String.format(Locale.US, "%-28s %8d %8d %7.1f%% %8s %14.0f",
+                    trace.name, trace.expectedSteps, counted, error, max, n * 1e9 / elapsed));
+
+            if (!Double.isNaN(trace.maxErrorPercent) && Math.abs(error) > trace.maxErrorPercent) {
+                failures.add(String.format(Locale.US, "%s: 期望%d步, 检测到%d步, 误差%.1f%% 超过 %.1f%%",
+                        trace.name, trace.expectedSteps, counted, error, trace.maxErrorPercent));
+            }
+        }
+        // 所有记录都输出后再判断，便于一次看到全部超标的记录
+        assertTrue(String.join("\n", failures), failures.isEmpty());
+    }
+
+    /**
+     * 读取 resources/steps 下的 CSV 记录；目录不存在时返回空列表
+     */
+    private List<Trace> loadRecordedTraces() throws IOException {
+        List<Trace> traces = new ArrayList<>();
+        URL dir = getClass().getClassLoader().getResource("steps");
+        if (dir == null || !"file".equals(dir.getProtocol())) {
+            return traces;
+        }
+        File[] files = new File(dir.getPath()).listFiles((d, name) -> name.endsWith(".csv"));
+        if (files == null) return traces;
+        Arrays.sort(files);
+        for (File file : files) {
+            traces.add(readCsv(file));
+        }
+        return traces;
+    }
+
+    private Trace readCsv(File file) throws IOException {
+        int expected = -1;
+        double maxError = DEFAULT_MAX_ERROR_PERCENT;
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                file.toURI().toURL().openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                if (line.startsWith("#")) {
+                    int idx = line.indexOf("steps=");
+                    if (idx >= 0) {
+                        expected = Integer.parseInt(line.substring(idx + 6).trim());
+                    }
+                    int maxIdx = line.indexOf("maxError=");
+                    if (maxIdx >= 0) {
+                        maxError = Double.parseDouble(line.substring(maxIdx + 9).trim());
+                    }
+                    continue;
+                }
+                if (line.startsWith("timestamp")) continue;
+                rows.add(line.split(","));
+            }
+        }
+        assertTrue(file.getName() + " 缺少 '# steps=' 标注", expected >= 0);
+        int n = rows.size();
+        long[] time = new long[n];
+        float[] x = new float[n], y = new float[n], z = new float[n];
+        for (int i = 0; i < n; i++) {
+            String[] r = rows.get(i);
+            time[i] = Long.parseLong(r[0].trim()) / 1_000_000L;
+            x[i] = Float.parseFloat(r[1].trim());
+            y[i] = Float.parseFloat(r[2].trim());
+            z[i] = Float.parseFloat(r[3].trim());
+        }
+        return new Trace(file.getName(), expected, maxError, time, x, y, z);
+    }
+
+    /**
+     * 合成步态信号（50Hz）：每步一个着地冲击峰，可选半步后的蹬地峰（幅度为冲击峰的 toeOff 倍），
+     * 叠加步频的低幅摆动和高斯噪声
+     */
+    private Trace synthesize(String name, double cadenceHz, int seconds, float impact, float toeOff, float noise,
+                             long seed, double maxErrorPercent) {
+        Random random = new Random(seed);
+        int rate = 50;
+        int n = seconds * rate;
+        long[] time = new long[n];
+        float[] x = new float[n], y = new float[n], z = new float[n];
+        double period = 1.0 / cadenceHz;
+        for (int i = 0; i < n; i++) {
+            double t = (double) i / rate;
+            double phase = (t % period) / period;
+            // 着地冲击：以每步 20% 相位处为中心、宽约 40ms 的峰
+            double dt = (phase - 0.2) * period;
+            double pulse = impact * Math.exp(-dt * dt / (2 * 0.02 * 0.02));
+            if (toeOff > 0) {
+                // 蹬地：冲击峰之后半步
+                double dtToeOff = (phase - 0.7) * period;
+                pulse += toeOff * impact * Math.exp(-dtToeOff * dtToeOff / (2 * 0.03 * 0.03));
+            }
+            double sway = 2.0 * Math.sin(2 * Math.PI * cadenceHz * t);
+            time[i] = Math.round(t * 1000);
+            x[i] = (float) (random.nextGaussian() * noise);
+            y[i] = (float) (random.nextGaussian() * noise + sway * 0.3);
+            z[i] = (float) (9.80665 + pulse + sway + random.nextGaussian() * noise);
+        }
+        return new Trace(name, (int) Math.round(seconds * cadenceHz), maxErrorPercent, time, x, y, z);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * 时间范围：本周、本月、本学期的边界，记录日期与 epoch 毫秒的转换
+ */
+public class TimeRangeTest {
+
+    private TimeZone defaultZone;
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        defaultLocale = Locale.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+        // 每周从周一开始
+        Locale.setDefault(Locale.FRANCE);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+        Locale.setDefault(defaultLocale);
+    }
+
+    private static long at(String date) {
+        long time = TimeRange.parseDate(date);
+        assertTrue(date, time >= 0);
+        return time;
+    }
+
+    @Test
+    public void dateRoundTripsInLocalTime() {
+        long time = at("2024-03-20 07:30");
+        assertEquals(1710891000000L, time);
+        assertEquals("2024-03-20 07:30", TimeRange.formatDate(time));
+        assertEquals(480, TimeRange.offsetMinutes(time));
+        assertEquals(-1, TimeRange.parseDate("2024-13-45 99:99"));
+        assertEquals(-1, TimeRange.parseDate(null));
+    }
+
+    @Test
+    public void weekStartsOnFirstDayOfWeek() {
+        TimeRange week = TimeRange.thisWeek(at("2024-03-20 07:30"));
+        assertEquals(at("2024-03-18 00:00"), week.start);
+        assertEquals(at("2024-03-25 00:00"), week.end);
+        assertEquals("2024-03-18", week.startDay());
+        assertEquals("2024-03-25", week.endDay());
+
+        // 周日属于前一天开始的这一周
+        assertEquals(week.start, TimeRange.thisWeek(at("2024-03-24 23:59")).start);
+        assertEquals(week.start, TimeRange.thisWeek(at("2024-03-18 00:00")).start);
+        assertTrue(week.contains(at("2024-03-18 00:00")));
+        assertFalse(week.contains(week.end));
+    }
+
+    @Test
+    public void monthCoversWholeMonth() {
+        TimeRange month = TimeRange.thisMonth(at("2024-02-29 21:00"));
+        assertEquals(at("2024-02-01 00:00"), month.start);
+        assertEquals(at("2024-03-01 00:00"), month.end);
+    }
+
+    @Test
+    public void semestersSplitAtFebruaryAndAugust() {
+        TimeRange spring = TimeRange.thisSemester(at("2024-04-10 07:00"));
+        assertEquals(at("2024-02-01 00:00"), spring.start);
+        assertEquals(at("2024-08-01 00:00"), spring.end);
+
+        TimeRange fall = TimeRange.thisSemester(at("2024-10-10 07:00"));
+        assertEquals(at("2024-08-01 00:00"), fall.start);
+        assertEquals(at("2025-02-01 00:00"), fall.end);
+
+        // 寒假仍属于上一年开始的秋季学期
+        assertEquals(at("2023-08-01 00:00"), TimeRange.thisSemester(at("2024-01-20 07:00")).start);
+        assertEquals(fall.start, TimeRange.thisSemester(at("2024-08-01 00:00")).start);
+    }
+}
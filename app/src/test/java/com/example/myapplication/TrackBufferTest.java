@@ -0,0 +1,125 @@
+package com.example.myapplication;
+
+import com.amap.api.maps.model.LatLng;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * 轨迹存储：跨块读写，以及与原来的 ArrayList&lt;LatLng&gt; 的堆占用和分配对比
+ */
+public class TrackBufferTest {
+
+    /** 3 小时跑步，每 500ms 一个定位点 */
+    private static final int FIXES = 3 * 60 * 60 * 2;
+    private static final long START = 1_700_000_000_000L;
+
+    private static double latitude(int i) {
+        return 30.5 + i * 2e-6;
+    }
+
+    private static double longitude(int i) {
+        return 114.3 + Math.sin(i / 300.0) * 1e-3;
+    }
+
+    @Test
+    public void readsBackAcrossChunks() {
+        TrackBuffer buffer = new TrackBuffer();
+        int n = TrackBuffer.CHUNK_SIZE * 5 + 7;
+        for (int i = 0; i < n; i++) {
+            buffer.add(latitude(i), longitude(i), START + i * 500L);
+        }
+        assertEquals(n, buffer.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(latitude(i), buffer.getLatitude(i), 1e-6);
+            assertEquals(longitude(i), buffer.getLongitude(i), 1e-6);
+            assertEquals(START + i * 500L, buffer.getTime(i));
+        }
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void benchmarkThreeHourRun() {
+        // 预热
+        fillBuffer();
+        fillList();
+
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long heapBefore = usedHeap();
+        long allocatedBefore = allocatedBytes(mx);
+        TrackBuffer buffer = fillBuffer();
+        long bufferAllocated = allocatedBytes(mx) - allocatedBefore;
+        long bufferRetained = usedHeap() - heapBefore;
+
+        heapBefore = usedHeap();
+        allocatedBefore = allocatedBytes(mx);
+        List<LatLng> list = fillList();
+        long listAllocated = allocatedBytes(mx) - allocatedBefore;
+        long listRetained = usedHeap() - heapBefore;
+
+        // 遍历整条轨迹（绘制、计算距离时的访问方式）
+        allocatedBefore = allocatedBytes(mx);
+        double sink = 0;
+        for (int i = 0, n = buffer.size(); i < n; i++) {
+            sink += buffer.getLatitude(i) + buffer.getLongitude(i);
+        }
+        long walkAllocated = allocatedBytes(mx) - allocatedBefore;
+
+        System.out.println(String.format(Locale.US, "%d 个定位点（3 小时）:", FIXES));
+        System.out.println(String.format(Locale.US, "  TrackBuffer:       分配 %8d 字节, 保留 %8d 字节",
+                bufferAllocated, bufferRetained));
+        System.out.println(String.format(Locale.US, "  ArrayList<LatLng>: 分配 %8d 字节, 保留 %8d 字节",
+                listAllocated, listRetained));
+        System.out.println(String.format(Locale.US, "  遍历 TrackBuffer:  分配 %d 字节 (sink=%.0f)",
+                walkAllocated, sink));
+        assertEquals(FIXES, buffer.size());
+        assertEquals(FIXES, list.size());
+        if (bufferAllocated >= 0) {
+            // 每点 12 字节（两个微度坐标和时间偏移），不为每个点创建对象
+            assertTrue("TrackBuffer 分配 " + bufferAllocated, bufferAllocated < FIXES * 16L);
+            assertTrue("TrackBuffer 分配 " + bufferAllocated + ", 列表分配 " + listAllocated,
+                    bufferAllocated * 3 < listAllocated);
+            assertTrue("遍历不应分配对象: " + walkAllocated, walkAllocated < 64 * 1024);
+        }
+    }
+
+    private static TrackBuffer fillBuffer() {
+        TrackBuffer buffer = new TrackBuffer();
+        for (int i = 0; i < FIXES; i++) {
+            buffer.add(latitude(i), longitude(i), START + i * 500L);
+        }
+        return buffer;
+    }
+
+    private static List<LatLng> fillList() {
+        List<LatLng> list = new ArrayList<>();
+        for (int i = 0; i < FIXES; i++) {
+            list.add(new LatLng(latitude(i), longitude(i)));
+        }
+        return list;
+    }
+
+    /** GC 后的已用堆，只作参考（受 GC 时机影响，不做断言） */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long allocatedBytes(ThreadMXBean mx) {
+        if (mx instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 轨迹编码：本地二进制格式与上传用的 "lat,lng;" 文本
+ */
+public class TrackCodecTest {
+
+    @Test
+    public void binaryUploadsAsLegacyText() {
+        TrackBuffer track = new TrackBuffer();
+        track.add(30.5, 114.3, 1_000L);
+        track.add(30.500012, 114.300034, 1_500L);
+        track.add(-0.000005, -114.3, 2_000L);
+        byte[] data = TrackCodec.encode(track);
+        assertTrue(TrackCodec.isBinary(data));
+
+        assertEquals("30.500000,114.300000;30.500012,114.300034;-0.000005,-114.300000;",
+                TrackCodec.toLegacyText(data));
+    }
+
+    @Test
+    public void legacyTextRoundTrips() {
+        String text = "30.5,114.3;30.51,114.31;";
+        byte[] stored = text.getBytes(StandardCharsets.US_ASCII);
+        assertFalse(TrackCodec.isBinary(stored));
+        assertEquals(text, TrackCodec.toLegacyText(stored));
+
+        byte[] data = TrackCodec.fromLegacyText(text);
+        assertTrue(TrackCodec.isBinary(data));
+        assertEquals("30.500000,114.300000;30.510000,114.310000;", TrackCodec.toLegacyText(data));
+
+        TrackBuffer out = new TrackBuffer();
+        assertEquals(2, TrackCodec.decodeInto(data, out));
+        assertEquals(30.51, out.getLatitude(1), 1e-6);
+        assertEquals(114.31, out.getLongitude(1), 1e-6);
+    }
+
+    @Test
+    public void uploadedTextDecodesToSamePoints() {
+        TrackBuffer track = new TrackBuffer();
+        for (int i = 0; i < 500; i++) {
+            track.add(30.5 + i * 2e-6, 114.3 + Math.sin(i / 30.0) * 1e-3, i * 500L);
+        }
+        String uploaded = TrackCodec.toLegacyText(TrackCodec.encode(track));
+
+        TrackBuffer parsed = new TrackBuffer();
+        assertEquals(track.size(), TrackCodec.decodeInto(TrackCodec.fromTransportString(uploaded), parsed));
+        for (int i = 0; i < track.size(); i++) {
+            assertEquals(track.getLatitude(i), parsed.getLatitude(i), 1e-6);
+            assertEquals(track.getLongitude(i), parsed.getLongitude(i), 1e-6);
+        }
+    }
+
+    @Test
+    public void nullStaysNull() {
+        assertNull(TrackCodec.toLegacyText(null));
+    }
+}